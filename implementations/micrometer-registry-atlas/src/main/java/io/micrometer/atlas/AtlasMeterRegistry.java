@@ -25,10 +25,12 @@ import com.netflix.spectator.atlas.AtlasRegistry;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.config.NamingConvention;
 import io.micrometer.core.instrument.histogram.HistogramConfig;
+import io.micrometer.core.instrument.histogram.HistogramSnapshotCache;
 import io.micrometer.core.instrument.histogram.pause.PauseDetector;
 import io.micrometer.core.instrument.internal.DefaultMeter;
 import io.micrometer.core.instrument.step.StepFunctionCounter;
 import io.micrometer.core.instrument.step.StepFunctionTimer;
+import io.micrometer.core.instrument.util.TimeUtils;
 import io.micrometer.core.lang.Nullable;
 
 import java.text.DecimalFormat;
@@ -105,14 +107,16 @@ public class AtlasMeterRegistry extends MeterRegistry {
         }
 
         SpectatorDistributionSummary summary = new SpectatorDistributionSummary(id, internalSummary, clock, histogramConfig);
+        HistogramSnapshotCache snapshots = new HistogramSnapshotCache(clock, atlasConfig.step(), () -> summary.takeSnapshot(false));
 
         for (long sla : histogramConfig.getSlaBoundaries()) {
-            gauge(id.getName(), Tags.concat(getConventionTags(id), "sla", Long.toString(sla)), sla, summary::histogramCountAtValue);
+            gauge(id.getName(), Tags.concat(getConventionTags(id), "sla", Long.toString(sla)), summary,
+                s -> snapshots.histogramCountAtValue(sla));
         }
 
         for (double percentile : histogramConfig.getPercentiles()) {
             gauge(id.getName(), Tags.concat(getConventionTags(id), "percentile", percentileFormat.format(percentile)),
-                summary, s -> s.percentile(percentile));
+                summary, s -> snapshots.percentile(percentile));
         }
 
         return summary;
@@ -129,14 +133,16 @@ public class AtlasMeterRegistry extends MeterRegistry {
         }
 
         SpectatorTimer timer = new SpectatorTimer(id, internalTimer, clock, histogramConfig, pauseDetector, getBaseTimeUnit());
+        HistogramSnapshotCache snapshots = new HistogramSnapshotCache(clock, atlasConfig.step(), () -> timer.takeSnapshot(false));
 
         for (long sla : histogramConfig.getSlaBoundaries()) {
-            gauge(id.getName(), Tags.concat(getConventionTags(id), "sla", Duration.ofNanos(sla).toString()), sla, timer::histogramCountAtValue);
+            gauge(id.getName(), Tags.concat(getConventionTags(id), "sla", Duration.ofNanos(sla).toString()), timer,
+                t -> snapshots.histogramCountAtValue(sla));
         }
 
         for (double percentile : histogramConfig.getPercentiles()) {
             gauge(id.getName(), Tags.concat(getConventionTags(id), "percentile", percentileFormat.format(percentile)),
-                timer, t -> t.percentile(percentile, TimeUnit.SECONDS));
+                timer, t -> TimeUtils.nanosToUnit(snapshots.percentile(percentile), TimeUnit.SECONDS));
         }
 
         return timer;
@@ -179,16 +185,28 @@ public class AtlasMeterRegistry extends MeterRegistry {
     protected Meter newMeter(Meter.Id id, Meter.Type type, Iterable<io.micrometer.core.instrument.Measurement> measurements) {
         Id spectatorId = spectatorId(id);
         com.netflix.spectator.api.AbstractMeter<Id> spectatorMeter = new com.netflix.spectator.api.AbstractMeter<Id>(registry.clock(), spectatorId, spectatorId) {
+            /**
+             * Ids tagged with each statistic, indexed by statistic ordinal and created on first use, since the same
+             * ones are needed on every poll. A race to create one is benign.
+             */
+            private final Id[] idsByStatistic = new Id[Statistic.values().length];
+
             @Override
             public Iterable<com.netflix.spectator.api.Measurement> measure() {
                 return stream(measurements.spliterator(), false)
-                    .map(m -> {
-                        com.netflix.spectator.api.Statistic stat = AtlasUtils.toSpectatorStatistic(m.getStatistic());
-                        Id idWithStat = stat == null ? id : id.withTag("statistic", stat.toString());
-                        return new com.netflix.spectator.api.Measurement(idWithStat, clock.wallTime(), m.getValue());
-                    })
+                    .map(m -> new com.netflix.spectator.api.Measurement(idWithStatistic(m.getStatistic()), clock.wallTime(), m.getValue()))
                     .collect(toList());
             }
+
+            private Id idWithStatistic(Statistic statistic) {
+                Id idWithStat = idsByStatistic[statistic.ordinal()];
+                if (idWithStat == null) {
+                    com.netflix.spectator.api.Statistic stat = AtlasUtils.toSpectatorStatistic(statistic);
+                    idWithStat = stat == null ? id : id.withTag("statistic", stat.toString());
+                    idsByStatistic[statistic.ordinal()] = idWithStat;
+                }
+                return idWithStat;
+            }
         };
         registry.register(spectatorMeter);
         return new DefaultMeter(id, type, measurements);
@@ -17,6 +17,8 @@ package io.micrometer.cloudwatch;
 
 import io.micrometer.core.instrument.step.StepRegistryConfig;
 
+import java.time.Duration;
+
 /**
  * Configuration for CloudWatch exporting.
  *
@@ -26,6 +28,11 @@ public interface CloudWatchConfig extends StepRegistryConfig {
 
     int MAX_BATCH_SIZE = 20;
 
+    /**
+     * The largest PutMetricData request body CloudWatch accepts, in bytes.
+     */
+    int MAX_REQUEST_SIZE = 40 * 1024;
+
     /**
      * Accept configuration defaults
      */
@@ -56,4 +63,53 @@ public interface CloudWatchConfig extends StepRegistryConfig {
         return vInt;
     }
 
+    /**
+     * The maximum size in bytes of a single PutMetricData request. Batches are split further when
+     * their datums would exceed it, e.g. because of many or long dimensions. The default and maximum
+     * is {@link #MAX_REQUEST_SIZE}.
+     */
+    default int maxRequestSize() {
+        String v = get(prefix() + ".maxRequestSize");
+        if (v == null) {
+            return MAX_REQUEST_SIZE;
+        }
+        int vInt = Integer.parseInt(v);
+        if (vInt > MAX_REQUEST_SIZE)
+            throw new IllegalStateException(prefix() + ".maxRequestSize must be <= " + MAX_REQUEST_SIZE);
+
+        return vInt;
+    }
+
+    /**
+     * The maximum number of PutMetricData requests that may be in flight at once, across publishes.
+     * The default is 10.
+     */
+    default int maxInFlightRequests() {
+        String v = get(prefix() + ".maxInFlightRequests");
+        return v == null ? 10 : Integer.parseInt(v);
+    }
+
+    /**
+     * How long a publish may take to send all of its requests and see them complete before it gives up
+     * on the rest, so that a slow publish never piles onto the next one. The default is the step size.
+     */
+    default Duration publishTimeout() {
+        String v = get(prefix() + ".publishTimeout");
+        return v == null ? step() : Duration.parse(v);
+    }
+
+    /**
+     * Whether to publish each timer and distribution summary as a single datum carrying a statistic set of its
+     * sample count, sum, minimum and maximum, rather than as separate sum, count, avg and max datums. Statistic sets
+     * cut the number of datums, and with them PutMetricData requests, by roughly four times, and meters that recorded
+     * nothing during the step aren't published at all.
+     * <p>
+     * CloudWatch requires a statistic set to have a minimum, which isn't tracked, so the mean is reported in its
+     * place. It is never below the real minimum and is exact for a single sample, but the Minimum statistic, and any
+     * alarm on it, doesn't reflect the real minimum. The default is {@code false}.
+     */
+    default boolean statisticSets() {
+        String v = get(prefix() + ".statisticSets");
+        return v != null && Boolean.parseBoolean(v);
+    }
 }
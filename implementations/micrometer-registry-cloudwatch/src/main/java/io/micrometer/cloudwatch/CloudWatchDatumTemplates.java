@@ -0,0 +1,160 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.lang.Nullable;
+
+import java.text.DecimalFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The name, dimensions and unit of each datum a meter is published as under a naming convention, built once so that
+ * each publish only sets timestamps and values.
+ */
+class CloudWatchDatumTemplates {
+    private final Meter.Id id;
+    private final NamingConvention convention;
+    private final Map<String, Template> bySuffix = new ConcurrentHashMap<>();
+    private final Map<Double, Template> byPercentile = new ConcurrentHashMap<>();
+    private final Template[] byStatistic = new Template[Statistic.values().length];
+
+    @Nullable
+    private volatile Template meter;
+
+    CloudWatchDatumTemplates(Meter.Id id, NamingConvention convention) {
+        this.id = id;
+        this.convention = convention;
+    }
+
+    /**
+     * A datum for the meter itself, e.g. the statistic set of a timer.
+     *
+     * @param baseUnit The unit to publish in, overriding that of the meter.
+     */
+    Template meter(@Nullable String baseUnit) {
+        Template template = meter;
+        if (template == null) {
+            template = new Template(id.withBaseUnit(baseUnit), convention);
+            meter = template;
+        }
+        return template;
+    }
+
+    /**
+     * A datum for the meter's name followed by {@code suffix}, e.g. {@code my.timer.count}.
+     */
+    Template suffixed(String suffix) {
+        return suffixed(suffix, id.getBaseUnit());
+    }
+
+    /**
+     * Like {@link #suffixed(String)}, but published in {@code baseUnit} rather than the unit of the meter. The unit
+     * must be the same every time a given suffix is asked for.
+     */
+    Template suffixed(String suffix, @Nullable String baseUnit) {
+        return bySuffix.computeIfAbsent(suffix, s -> new Template(id.withSuffix(s).withBaseUnit(baseUnit), convention));
+    }
+
+    /**
+     * A datum for the meter's name followed by {@code <percentile>percentile}, e.g. {@code my.timer.0.99percentile}.
+     */
+    Template percentile(double percentile) {
+        return byPercentile.computeIfAbsent(percentile,
+            p -> new Template(id.withSuffix(new DecimalFormat("#.####").format(p) + "percentile"), convention));
+    }
+
+    /**
+     * A datum for the meter's name, tagged with {@code statistic}.
+     */
+    Template tagged(Statistic statistic) {
+        Template template = byStatistic[statistic.ordinal()];
+        if (template == null) {
+            template = new Template(id.withTag(statistic), convention);
+            byStatistic[statistic.ordinal()] = template;
+        }
+        return template;
+    }
+
+    static class Template {
+        private final String name;
+        private final List<Dimension> dimensions;
+        private final String unit;
+
+        private Template(Meter.Id id, NamingConvention convention) {
+            this.name = id.getConventionName(convention);
+            this.dimensions = Collections.unmodifiableList(id.getConventionTags(convention).stream()
+                .map(tag -> new Dimension().withName(tag.getKey()).withValue(tag.getValue()))
+                .collect(toList()));
+            this.unit = toStandardUnit(id.getBaseUnit()).toString();
+        }
+
+        String getName() {
+            return name;
+        }
+
+        List<Dimension> getDimensions() {
+            return dimensions;
+        }
+
+        String getUnit() {
+            return unit;
+        }
+
+        MetricDatum datum(Date timestamp, double value) {
+            return datum(timestamp).withValue(CloudWatchUtils.clampMetricValue(value));
+        }
+
+        MetricDatum datum(Date timestamp, StatisticSet statistics) {
+            return datum(timestamp).withStatisticValues(statistics);
+        }
+
+        private MetricDatum datum(Date timestamp) {
+            return new MetricDatum()
+                .withMetricName(name)
+                .withDimensions(dimensions)
+                .withTimestamp(timestamp)
+                .withUnit(unit);
+        }
+
+        private static StandardUnit toStandardUnit(@Nullable String unit) {
+            if (unit == null) {
+                return StandardUnit.None;
+            }
+            switch (unit.toLowerCase()) {
+                case "bytes":
+                    return StandardUnit.Bytes;
+                case "milliseconds":
+                    return StandardUnit.Milliseconds;
+                case "count":
+                    return StandardUnit.Count;
+            }
+            return StandardUnit.None;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import io.micrometer.core.instrument.step.StepRegistryConfig;
+
+/**
+ * Configuration for writing metrics in CloudWatch's Embedded Metric Format, for a log agent to ingest.
+ */
+public interface CloudWatchEmfConfig extends StepRegistryConfig {
+    /**
+     * Write to standard out rather than to a file.
+     */
+    String STDOUT = "stdout";
+
+    /**
+     * Accept configuration defaults
+     */
+    CloudWatchEmfConfig DEFAULT = k -> null;
+
+    @Override
+    default String prefix() {
+        return "cloudwatch.emf";
+    }
+
+    default String namespace() {
+        String v = get(prefix() + ".namespace");
+        if (v == null)
+            throw new IllegalStateException(prefix() + ".namespace must be set to report metrics to CloudWatch");
+        return v;
+    }
+
+    /**
+     * Where to write documents to: either {@link #STDOUT}, or the path of a file that is rotated once it reaches
+     * {@link #maxFileSize()}. The default is {@link #STDOUT}.
+     */
+    default String output() {
+        String v = get(prefix() + ".output");
+        return v == null ? STDOUT : v;
+    }
+
+    /**
+     * The size in bytes a file reaches before it is rotated. Files are only rotated between documents, so they
+     * may slightly exceed this. The default is 10MB.
+     */
+    default long maxFileSize() {
+        String v = get(prefix() + ".maxFileSize");
+        return v == null ? 10 * 1024 * 1024 : Long.parseLong(v);
+    }
+
+    /**
+     * The number of files kept, including the one being written to. The default is 5.
+     */
+    default int maxFiles() {
+        String v = get(prefix() + ".maxFiles");
+        return v == null ? 5 : Integer.parseInt(v);
+    }
+}
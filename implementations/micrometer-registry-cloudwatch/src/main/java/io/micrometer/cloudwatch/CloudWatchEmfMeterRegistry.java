@@ -0,0 +1,297 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.step.StepMeterRegistry;
+import io.micrometer.core.instrument.util.ConventionCache;
+import io.micrometer.core.instrument.util.DoubleFormat;
+import io.micrometer.core.lang.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes each step's metrics as CloudWatch Embedded Metric Format documents, one JSON document per line, to
+ * standard out or a rotating file. A log agent (e.g. the CloudWatch agent, or Lambda's log capture) ships the
+ * documents to CloudWatch Logs, which extracts the metrics from them, so publishing never calls the CloudWatch API.
+ * <p>
+ * Metrics that share a set of dimensions are written to the same document, up to 100 metrics per document. Because
+ * the format has no notion of statistic sets, timers and distribution summaries are written as separate count, sum
+ * and max metrics.
+ */
+public class CloudWatchEmfMeterRegistry extends StepMeterRegistry {
+    /**
+     * The most metrics CloudWatch accepts in a single document.
+     */
+    static final int MAX_METRICS_PER_DOCUMENT = 100;
+
+    private final CloudWatchEmfConfig config;
+    private final ConventionCache<CloudWatchDatumTemplates> datumTemplates = new ConventionCache<>(CloudWatchDatumTemplates::new);
+    private final StringBuilder document = new StringBuilder(4096);
+    private final Object writerLock = new Object();
+    private final Logger logger = LoggerFactory.getLogger(CloudWatchEmfMeterRegistry.class);
+
+    @Nullable
+    private Writer writer;
+
+    public CloudWatchEmfMeterRegistry(CloudWatchEmfConfig config, Clock clock) {
+        this(config, clock, Executors.defaultThreadFactory());
+    }
+
+    public CloudWatchEmfMeterRegistry(CloudWatchEmfConfig config, Clock clock, ThreadFactory threadFactory) {
+        this(config, clock, null, threadFactory);
+    }
+
+    //VisibleForTesting
+    CloudWatchEmfMeterRegistry(CloudWatchEmfConfig config, Clock clock, @Nullable Writer writer, ThreadFactory threadFactory) {
+        super(config, clock);
+        this.config = config;
+        this.writer = writer;
+        this.config().namingConvention(NamingConvention.identity);
+        start(threadFactory);
+    }
+
+    @Override
+    protected void publish() {
+        synchronized (writerLock) {
+            try {
+                Writer out = writer();
+                String namespace = config.namespace();
+                long timestamp = clock.wallTime();
+
+                for (List<Point> points : pointsByDimensions().values()) {
+                    for (int from = 0; from < points.size(); from += MAX_METRICS_PER_DOCUMENT) {
+                        List<Point> batch = points.subList(from, Math.min(points.size(), from + MAX_METRICS_PER_DOCUMENT));
+                        document.setLength(0);
+                        writeDocument(document, namespace, timestamp, batch);
+                        out.append(document);
+                        out.write('\n');
+                    }
+                }
+
+                out.flush();
+            } catch (IOException e) {
+                logger.warn("failed to write metrics in embedded metric format", e);
+                discardWriter();
+            }
+        }
+    }
+
+    /**
+     * Closes the output file, if metrics are written to one. It is reopened, and appended to, if publishing restarts.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        synchronized (writerLock) {
+            discardWriter();
+        }
+    }
+
+    /**
+     * Closes and forgets the output file, if metrics are written to one, so that the next publish reopens it rather
+     * than writing to a writer that may have been left broken.
+     */
+    private void discardWriter() {
+        if (writer instanceof RotatingFileWriter) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("failed to close " + config.output(), e);
+            }
+            writer = null;
+        }
+    }
+
+    private Writer writer() throws IOException {
+        if (writer == null) {
+            String output = config.output();
+            writer = CloudWatchEmfConfig.STDOUT.equals(output) ?
+                new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) :
+                new RotatingFileWriter(Paths.get(output), config.maxFileSize(), config.maxFiles());
+        }
+        return writer;
+    }
+
+    //VisibleForTesting
+    Map<List<Dimension>, List<Point>> pointsByDimensions() {
+        Map<List<Dimension>, List<Point>> pointsByDimensions = new LinkedHashMap<>();
+        for (Meter m : getMeters()) {
+            CloudWatchDatumTemplates templates = datumTemplates.get(m.getId(), namingConvention());
+            List<Point> points = new ArrayList<>();
+            if (m instanceof Timer) {
+                addPoints(points, (Timer) m, templates);
+            } else if (m instanceof DistributionSummary) {
+                addPoints(points, (DistributionSummary) m, templates);
+            } else if (m instanceof FunctionTimer) {
+                addPoints(points, (FunctionTimer) m, templates);
+            } else {
+                for (Measurement ms : m.measure()) {
+                    addPoint(points, templates.tagged(ms.getStatistic()), ms.getValue());
+                }
+            }
+
+            for (Point point : points) {
+                pointsByDimensions.computeIfAbsent(point.template.getDimensions(), d -> new ArrayList<>()).add(point);
+            }
+        }
+        return pointsByDimensions;
+    }
+
+    private void addPoints(List<Point> points, Timer timer, CloudWatchDatumTemplates templates) {
+        HistogramSnapshot snapshot = timer.takeSnapshot(false);
+        String unit = getBaseTimeUnit().name();
+        addPoint(points, templates.suffixed("count", "count"), snapshot.count());
+        addPoint(points, templates.suffixed("sum", unit), snapshot.total(getBaseTimeUnit()));
+        addPoint(points, templates.suffixed("max", unit), snapshot.max(getBaseTimeUnit()));
+        for (ValueAtPercentile v : snapshot.percentileValues()) {
+            addPoint(points, templates.percentile(v.percentile()), v.value(getBaseTimeUnit()));
+        }
+    }
+
+    private void addPoints(List<Point> points, DistributionSummary summary, CloudWatchDatumTemplates templates) {
+        HistogramSnapshot snapshot = summary.takeSnapshot(false);
+        addPoint(points, templates.suffixed("count", "count"), snapshot.count());
+        addPoint(points, templates.suffixed("sum"), snapshot.total());
+        addPoint(points, templates.suffixed("max"), snapshot.max());
+        for (ValueAtPercentile v : snapshot.percentileValues()) {
+            addPoint(points, templates.percentile(v.percentile()), v.value());
+        }
+    }
+
+    private void addPoints(List<Point> points, FunctionTimer timer, CloudWatchDatumTemplates templates) {
+        // we can't know anything about max and percentiles originating from a function timer
+        addPoint(points, templates.suffixed("count", "count"), timer.count());
+        addPoint(points, templates.suffixed("avg", getBaseTimeUnit().name()), timer.mean(getBaseTimeUnit()));
+    }
+
+    private static void addPoint(List<Point> points, CloudWatchDatumTemplates.Template template, double value) {
+        // JSON has no representation for NaN or infinity
+        if (Double.isFinite(value)) {
+            points.add(new Point(template, value));
+        }
+    }
+
+    /**
+     * Renders one document, whose root holds the dimension values and metric values, and whose {@code _aws} member
+     * tells CloudWatch which of the root's members are metrics and which are dimensions.
+     */
+    static void writeDocument(StringBuilder sb, String namespace, long timestamp, List<Point> points) {
+        List<Dimension> dimensions = points.get(0).template.getDimensions();
+
+        sb.append("{\"_aws\":{\"Timestamp\":").append(timestamp)
+            .append(",\"CloudWatchMetrics\":[{\"Namespace\":");
+        appendString(sb, namespace);
+
+        sb.append(",\"Dimensions\":[[");
+        for (int i = 0; i < dimensions.size(); i++) {
+            if (i > 0)
+                sb.append(',');
+            appendString(sb, dimensions.get(i).getName());
+        }
+
+        sb.append("]],\"Metrics\":[");
+        for (int i = 0; i < points.size(); i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"Name\":");
+            appendString(sb, points.get(i).template.getName());
+            sb.append(",\"Unit\":");
+            appendString(sb, points.get(i).template.getUnit());
+            sb.append('}');
+        }
+        sb.append("]}]}");
+
+        for (Dimension dimension : dimensions) {
+            sb.append(',');
+            appendString(sb, dimension.getName());
+            sb.append(':');
+            appendString(sb, dimension.getValue());
+        }
+
+        for (Point point : points) {
+            sb.append(',');
+            appendString(sb, point.template.getName());
+            sb.append(':');
+            DoubleFormat.append(sb, CloudWatchUtils.clampMetricValue(point.value));
+        }
+
+        sb.append('}');
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private NamingConvention namingConvention() {
+        return config().namingConvention();
+    }
+
+    @Override
+    protected TimeUnit getBaseTimeUnit() {
+        return TimeUnit.MILLISECONDS;
+    }
+
+    static class Point {
+        private final CloudWatchDatumTemplates.Template template;
+        private final double value;
+
+        Point(CloudWatchDatumTemplates.Template template, double value) {
+            this.template = template;
+            this.value = value;
+        }
+    }
+}
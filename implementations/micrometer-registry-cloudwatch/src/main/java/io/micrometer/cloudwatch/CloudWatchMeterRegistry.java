@@ -21,14 +21,16 @@ import com.amazonaws.services.cloudwatch.model.*;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.config.NamingConvention;
 import io.micrometer.core.instrument.step.StepMeterRegistry;
+import io.micrometer.core.instrument.util.ConventionCache;
 import io.micrometer.core.lang.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.DecimalFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
@@ -42,7 +44,8 @@ import static java.util.stream.StreamSupport.stream;
 public class CloudWatchMeterRegistry extends StepMeterRegistry {
     private final CloudWatchConfig config;
     private final AmazonCloudWatchAsync amazonCloudWatchAsync;
-    private final DecimalFormat percentileFormat = new DecimalFormat("#.####");
+    private final Semaphore inFlightRequests;
+    private final ConventionCache<CloudWatchDatumTemplates> datumTemplates = new ConventionCache<>(CloudWatchDatumTemplates::new);
     private final Logger logger = LoggerFactory.getLogger(CloudWatchMeterRegistry.class);
 
     public CloudWatchMeterRegistry(CloudWatchConfig config, Clock clock,
@@ -55,149 +58,172 @@ public class CloudWatchMeterRegistry extends StepMeterRegistry {
         super(config, clock);
         this.amazonCloudWatchAsync = amazonCloudWatchAsync;
         this.config = config;
+        this.inFlightRequests = new Semaphore(config.maxInFlightRequests());
         this.config().namingConvention(NamingConvention.identity);
         start(threadFactory);
     }
 
+    /**
+     * Sends each batch once fewer than {@link CloudWatchConfig#maxInFlightRequests()} requests are in flight, then
+     * waits for the batches to complete, so the next publish doesn't start while this one is still draining. Gives up
+     * on whatever remains after {@link CloudWatchConfig#publishTimeout()}.
+     */
     @Override
     protected void publish() {
-        for (List<MetricDatum> batch : MetricDatumPartition.partition(metricData(), config.batchSize())) {
-            sendMetricData(batch);
+        long deadline = System.nanoTime() + config.publishTimeout().toNanos();
+        List<List<MetricDatum>> batches = MetricDatumPartition.partition(metricData(), config.batchSize(), config.maxRequestSize());
+        CountDownLatch completed = new CountDownLatch(batches.size());
+
+        try {
+            for (int i = 0; i < batches.size(); i++) {
+                if (!inFlightRequests.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    logger.warn("timed out waiting for in-flight requests to complete, dropping {} of {} batches of metric data",
+                        batches.size() - i, batches.size());
+                    return;
+                }
+                sendMetricData(batches.get(i), completed);
+            }
+
+            if (!completed.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                logger.warn("timed out waiting for {} of {} batches of metric data to be sent", completed.getCount(), batches.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void sendMetricData(List<MetricDatum> metricData) {
+    private void sendMetricData(List<MetricDatum> metricData, CountDownLatch completed) {
         PutMetricDataRequest putMetricDataRequest = new PutMetricDataRequest()
                 .withNamespace(config.namespace())
                 .withMetricData(metricData);
-        amazonCloudWatchAsync.putMetricDataAsync(putMetricDataRequest, new AsyncHandler<PutMetricDataRequest, PutMetricDataResult>() {
-            @Override
-            public void onError(Exception exception) {
-                logger.error("Error sending metric data.", exception);
-            }
+        try {
+            amazonCloudWatchAsync.putMetricDataAsync(putMetricDataRequest, new AsyncHandler<PutMetricDataRequest, PutMetricDataResult>() {
+                @Override
+                public void onError(Exception exception) {
+                    logger.error("Error sending metric data.", exception);
+                    complete(completed);
+                }
+
+                @Override
+                public void onSuccess(PutMetricDataRequest request, PutMetricDataResult result) {
+                    logger.debug("Published metric with namespace:{}", request.getNamespace());
+                    complete(completed);
+                }
+            });
+        } catch (RuntimeException e) {
+            // e.g. the SDK's executor rejected the request
+            logger.error("Error sending metric data.", e);
+            complete(completed);
+        }
+    }
 
-            @Override
-            public void onSuccess(PutMetricDataRequest request, PutMetricDataResult result) {
-                logger.debug("Published metric with namespace:{}", request.getNamespace());
-            }
-        });
+    private void complete(CountDownLatch completed) {
+        inFlightRequests.release();
+        completed.countDown();
     }
 
-    private List<MetricDatum> metricData() {
+    //VisibleForTesting
+    List<MetricDatum> metricData() {
+        Date timestamp = new Date(clock.wallTime());
         return getMeters().stream().flatMap(m -> {
+            CloudWatchDatumTemplates templates = datumTemplates.get(m.getId(), namingConvention());
             if (m instanceof Timer) {
-                return metricData((Timer) m);
+                return metricData((Timer) m, templates, timestamp);
             }
             if (m instanceof DistributionSummary) {
-                return metricData((DistributionSummary) m);
+                return metricData((DistributionSummary) m, templates, timestamp);
             }
             if (m instanceof FunctionTimer) {
-                return metricData((FunctionTimer) m);
+                return metricData((FunctionTimer) m, templates, timestamp);
             }
-            return metricData(m);
+            return metricData(m, templates, timestamp);
         }).collect(toList());
     }
 
-    private Stream<MetricDatum> metricData(FunctionTimer timer) {
-        long wallTime = clock.wallTime();
-
+    private Stream<MetricDatum> metricData(FunctionTimer timer, CloudWatchDatumTemplates templates, Date timestamp) {
         // we can't know anything about max and percentiles originating from a function timer
         return Stream.of(
-                metricDatum(idWithSuffix(timer.getId(), "count"), wallTime, timer.count()),
-                metricDatum(idWithSuffix(timer.getId(), "avg"), wallTime, timer.mean(getBaseTimeUnit())));
+                templates.suffixed("count").datum(timestamp, timer.count()),
+                templates.suffixed("avg").datum(timestamp, timer.mean(getBaseTimeUnit())));
     }
 
-    private Stream<MetricDatum> metricData(Timer timer) {
-        final long wallTime = clock.wallTime();
+    private Stream<MetricDatum> metricData(Timer timer, CloudWatchDatumTemplates templates, Date timestamp) {
         final HistogramSnapshot snapshot = timer.takeSnapshot(false);
         final Stream.Builder<MetricDatum> metrics = Stream.builder();
+        final String unit = getBaseTimeUnit().name();
 
-        metrics.add(metricDatum(idWithSuffixAndUnit(timer.getId(), "sum", getBaseTimeUnit().name()), wallTime, snapshot.total(getBaseTimeUnit())));
-        metrics.add(metricDatum(idWithSuffixAndUnit(timer.getId(), "count", "count"), wallTime, snapshot.count()));
-        metrics.add(metricDatum(idWithSuffixAndUnit(timer.getId(), "avg", getBaseTimeUnit().name()), wallTime, snapshot.mean(getBaseTimeUnit())));
-        metrics.add(metricDatum(idWithSuffixAndUnit(timer.getId(), "max", getBaseTimeUnit().name()), wallTime, snapshot.max(getBaseTimeUnit())));
+        if (config.statisticSets()) {
+            // CloudWatch rejects a statistic set without samples, but the windowed percentiles still have values
+            if (snapshot.count() > 0) {
+                metrics.add(templates.meter(unit)
+                        .datum(timestamp, statisticSet(snapshot, getBaseTimeUnit())));
+            }
+        } else {
+            metrics.add(templates.suffixed("sum", unit).datum(timestamp, snapshot.total(getBaseTimeUnit())));
+            metrics.add(templates.suffixed("count", "count").datum(timestamp, snapshot.count()));
+            metrics.add(templates.suffixed("avg", unit).datum(timestamp, snapshot.mean(getBaseTimeUnit())));
+            metrics.add(templates.suffixed("max", unit).datum(timestamp, snapshot.max(getBaseTimeUnit())));
+        }
 
         for (ValueAtPercentile v : snapshot.percentileValues()) {
-            metrics.add(metricDatum(idWithSuffix(timer.getId(), percentileFormat.format(v.percentile()) + "percentile"),
-                    wallTime, v.value(getBaseTimeUnit())));
+            metrics.add(templates.percentile(v.percentile()).datum(timestamp, v.value(getBaseTimeUnit())));
         }
 
         return metrics.build();
     }
 
-    private Stream<MetricDatum> metricData(DistributionSummary summary) {
-        final long wallTime = clock.wallTime();
+    private Stream<MetricDatum> metricData(DistributionSummary summary, CloudWatchDatumTemplates templates, Date timestamp) {
         final HistogramSnapshot snapshot = summary.takeSnapshot(false);
         final Stream.Builder<MetricDatum> metrics = Stream.builder();
 
-        metrics.add(metricDatum(idWithSuffix(summary.getId(), "sum"), wallTime, snapshot.total()));
-        metrics.add(metricDatum(idWithSuffix(summary.getId(), "count"), wallTime, snapshot.count()));
-        metrics.add(metricDatum(idWithSuffix(summary.getId(), "avg"), wallTime, snapshot.mean()));
-        metrics.add(metricDatum(idWithSuffix(summary.getId(), "max"), wallTime, snapshot.max()));
+        if (config.statisticSets()) {
+            if (snapshot.count() > 0) {
+                metrics.add(templates.meter(summary.getId().getBaseUnit())
+                        .datum(timestamp, statisticSet(snapshot, null)));
+            }
+        } else {
+            metrics.add(templates.suffixed("sum").datum(timestamp, snapshot.total()));
+            metrics.add(templates.suffixed("count").datum(timestamp, snapshot.count()));
+            metrics.add(templates.suffixed("avg").datum(timestamp, snapshot.mean()));
+            metrics.add(templates.suffixed("max").datum(timestamp, snapshot.max()));
+        }
 
         for (ValueAtPercentile v : snapshot.percentileValues()) {
-            metrics.add(metricDatum(idWithSuffix(summary.getId(), percentileFormat.format(v.percentile()) + "percentile"),
-                    wallTime, v.value()));
+            metrics.add(templates.percentile(v.percentile()).datum(timestamp, v.value()));
         }
 
         return metrics.build();
     }
 
-    private Stream<MetricDatum> metricData(Meter m) {
-        long wallTime = clock.wallTime();
-        return stream(m.measure().spliterator(), false)
-                .map(ms -> metricDatum(m.getId().withTag(ms.getStatistic()), wallTime, ms.getValue()));
-    }
-
-    private MetricDatum metricDatum(Meter.Id id, long wallTime, double value) {
-        String metricName = id.getConventionName(config().namingConvention());
-        List<Tag> tags = id.getConventionTags(config().namingConvention());
-        return new MetricDatum()
-                .withMetricName(metricName)
-                .withDimensions(toDimensions(tags))
-                .withTimestamp(new Date(wallTime))
-                .withValue(CloudWatchUtils.clampMetricValue(value))
-                .withUnit(toStandardUnit(id.getBaseUnit()));
+    /**
+     * The count, sum, minimum and maximum of a timer or distribution summary, from which CloudWatch derives the
+     * average itself. The mean stands in for the minimum, as documented on {@link CloudWatchConfig#statisticSets()}.
+     *
+     * @param timeUnit The unit to report values in, or {@code null} for a distribution summary.
+     */
+    private StatisticSet statisticSet(HistogramSnapshot snapshot, @Nullable TimeUnit timeUnit) {
+        double sum = timeUnit == null ? snapshot.total() : snapshot.total(timeUnit);
+        double max = timeUnit == null ? snapshot.max() : snapshot.max(timeUnit);
+        double min = Math.min(timeUnit == null ? snapshot.mean() : snapshot.mean(timeUnit), max);
+
+        return new StatisticSet()
+                .withSampleCount((double) snapshot.count())
+                .withSum(CloudWatchUtils.clampMetricValue(sum))
+                .withMinimum(CloudWatchUtils.clampMetricValue(min))
+                .withMaximum(CloudWatchUtils.clampMetricValue(max));
     }
 
-    private StandardUnit toStandardUnit(@Nullable String unit) {
-        if (unit == null) {
-            return StandardUnit.None;
-        }
-        switch (unit.toLowerCase()) {
-            case "bytes":
-                return StandardUnit.Bytes;
-            case "milliseconds":
-                return StandardUnit.Milliseconds;
-            case "count":
-                return StandardUnit.Count;
-        }
-        return StandardUnit.None;
+    private Stream<MetricDatum> metricData(Meter m, CloudWatchDatumTemplates templates, Date timestamp) {
+        return stream(m.measure().spliterator(), false)
+                .map(ms -> templates.tagged(ms.getStatistic()).datum(timestamp, ms.getValue()));
     }
 
-
-    private List<Dimension> toDimensions(List<Tag> tags) {
-        return tags.stream()
-                .map(tag -> new Dimension().withName(tag.getKey()).withValue(tag.getValue()))
-                .collect(toList());
+    private NamingConvention namingConvention() {
+        return config().namingConvention();
     }
 
     @Override
     protected TimeUnit getBaseTimeUnit() {
         return TimeUnit.MILLISECONDS;
     }
-
-    /**
-     * Copy tags, unit, and description from an existing id, but change the name.
-     */
-    private Meter.Id idWithSuffix(Meter.Id id, String suffix) {
-        return idWithSuffixAndUnit(id, suffix, id.getBaseUnit());
-    }
-
-    /**
-     * Copy tags and description from an existing id, but change the name and unit.
-     */
-    private Meter.Id idWithSuffixAndUnit(Meter.Id id, String suffix, @Nullable String unit) {
-        return new Meter.Id(id.getName() + "." + suffix, id.getTags(), unit, id.getDescription(), id.getType());
-    }
 }
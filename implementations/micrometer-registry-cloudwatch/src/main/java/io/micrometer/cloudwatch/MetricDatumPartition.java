@@ -15,10 +15,13 @@
  */
 package io.micrometer.cloudwatch;
 
+import com.amazonaws.services.cloudwatch.model.Dimension;
 import com.amazonaws.services.cloudwatch.model.MetricDatum;
 import io.micrometer.core.instrument.util.MathUtils;
+import io.micrometer.core.lang.Nullable;
 
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,6 +30,11 @@ import java.util.List;
  * @author Dawid Kublik
  */
 public class MetricDatumPartition extends AbstractList<List<MetricDatum>> {
+    /**
+     * Action, version and namespace parameters, allowing for the longest namespace CloudWatch accepts.
+     */
+    private static final int REQUEST_OVERHEAD = 64 + 3 * 255;
+
     private final List<MetricDatum> list;
     private final int partitionSize;
     private final int partitionCount;
@@ -57,4 +65,82 @@ public class MetricDatumPartition extends AbstractList<List<MetricDatum>> {
     public static List<List<MetricDatum>> partition(List<MetricDatum> metricData, int partitionSize) {
         return new MetricDatumPartition(metricData, partitionSize);
     }
+
+    /**
+     * Partition into batches of at most {@code partitionSize} datums, each of which also fits in a request of at
+     * most {@code maxRequestSize} bytes. A datum that is by itself too large is still put in a batch of its own,
+     * for CloudWatch to reject.
+     */
+    public static List<List<MetricDatum>> partition(List<MetricDatum> metricData, int partitionSize, int maxRequestSize) {
+        List<List<MetricDatum>> partitions = new ArrayList<>();
+        int start = 0;
+        int requestSize = REQUEST_OVERHEAD;
+        for (int i = 0; i < metricData.size(); i++) {
+            int datumSize = estimateSize(metricData.get(i), i - start + 1);
+            if (i > start && (i - start == partitionSize || requestSize + datumSize > maxRequestSize)) {
+                partitions.add(metricData.subList(start, i));
+                start = i;
+                datumSize = estimateSize(metricData.get(i), 1);
+                requestSize = REQUEST_OVERHEAD;
+            }
+            requestSize += datumSize;
+        }
+        if (start < metricData.size()) {
+            partitions.add(metricData.subList(start, metricData.size()));
+        }
+        return partitions;
+    }
+
+    /**
+     * A conservative estimate of the number of bytes a datum adds to the form-encoded body of a PutMetricData
+     * request, e.g. {@code &MetricData.member.3.Dimensions.member.1.Name=region}.
+     *
+     * @param member The datum's 1-based position in its request.
+     */
+    static int estimateSize(MetricDatum datum, int member) {
+        int prefix = "&MetricData.member.".length() + Integer.toString(member).length() + 1;
+
+        int size = prefix + "MetricName=".length() + encodedLength(datum.getMetricName());
+        if (datum.getDimensions() != null) {
+            int dimension = 1;
+            for (Dimension d : datum.getDimensions()) {
+                int dimensionPrefix = prefix + "Dimensions.member.".length() + Integer.toString(dimension++).length() + 1;
+                size += dimensionPrefix + "Name=".length() + encodedLength(d.getName());
+                size += dimensionPrefix + "Value=".length() + encodedLength(d.getValue());
+            }
+        }
+
+        // timestamps are rendered like 2017-12-01T10%3A15%3A30.000Z
+        size += prefix + "Timestamp=".length() + 30;
+        if (datum.getUnit() != null) {
+            size += prefix + "Unit=".length() + datum.getUnit().length();
+        }
+
+        // doubles are rendered in at most 24 characters
+        if (datum.getValue() != null) {
+            size += prefix + "Value=".length() + 24;
+        }
+        if (datum.getStatisticValues() != null) {
+            size += 4 * (prefix + "StatisticValues.SampleCount=".length() + 24);
+        }
+        return size;
+    }
+
+    private static int encodedLength(@Nullable String s) {
+        if (s == null)
+            return 0;
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == '~') {
+                length++;
+            } else if (c < 0x80) {
+                length += 3;
+            } else {
+                // at most three UTF-8 bytes per char, each percent-encoded
+                length += 9;
+            }
+        }
+        return length;
+    }
 }
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes lines to a file, rotating it once it reaches a maximum size. Rotation only happens between lines, so
+ * every file holds complete lines. The file being written to keeps its name, and older files are suffixed with
+ * {@code .1} (the most recent) up to {@code .<maxFiles - 1>}. Line ends must be written with {@link #write(int)},
+ * which flushes each complete line to the file.
+ */
+class RotatingFileWriter extends Writer {
+    private final Path path;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    private Writer writer;
+    private long size;
+
+    RotatingFileWriter(Path path, long maxFileSize, int maxFiles) throws IOException {
+        if (maxFiles < 1)
+            throw new IllegalArgumentException("maxFiles must be at least 1, but was " + maxFiles);
+        this.path = path;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        open(true);
+    }
+
+    @Override
+    public synchronized void write(int c) throws IOException {
+        writer.write(c);
+        if (c == '\n') {
+            writer.flush();
+            if (size >= maxFileSize)
+                rotate();
+        }
+    }
+
+    @Override
+    public synchronized void write(char[] cbuf, int off, int len) throws IOException {
+        writer.write(cbuf, off, len);
+    }
+
+    @Override
+    public synchronized void write(String str, int off, int len) throws IOException {
+        writer.write(str, off, len);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        try {
+            if (maxFiles > 1) {
+                Files.deleteIfExists(rotated(maxFiles - 1));
+                for (int i = maxFiles - 2; i >= 1; i--) {
+                    Path older = rotated(i);
+                    if (Files.exists(older))
+                        Files.move(older, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // reopened even when a move fails, so that this writer keeps appending to the current file and retries
+            // the rotation after the next line instead of being left closed
+            open(maxFiles > 1);
+        }
+    }
+
+    private Path rotated(int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    private void open(boolean append) throws IOException {
+        size = append && Files.exists(path) ? Files.size(path) : 0;
+        OutputStream counting = new FilterOutputStream(new FileOutputStream(path.toFile(), append)) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                size++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                size += len;
+            }
+        };
+        writer = new BufferedWriter(new OutputStreamWriter(counting, StandardCharsets.UTF_8));
+    }
+}
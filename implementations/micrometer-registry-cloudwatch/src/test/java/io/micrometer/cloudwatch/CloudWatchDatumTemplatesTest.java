@@ -0,0 +1,62 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.NamingConvention;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudWatchDatumTemplatesTest {
+    private final Meter.Id id = new Meter.Id("my.summary", Tags.zip("region", "us-west"), "bytes", null, Meter.Type.DistributionSummary);
+    private final CloudWatchDatumTemplates templates = new CloudWatchDatumTemplates(id, NamingConvention.identity);
+
+    @Test
+    void templatesAreBuiltOnce() {
+        CloudWatchDatumTemplates.Template template = templates.percentile(0.95);
+        assertThat(templates.percentile(0.95)).isSameAs(template);
+    }
+
+    @Test
+    void datumOnlyVariesByTimestampAndValue() {
+        Date timestamp = new Date(1000);
+        MetricDatum datum = templates.percentile(0.95).datum(timestamp, 42);
+
+        assertThat(datum.getMetricName()).isEqualTo("my.summary.0.95percentile");
+        assertThat(datum.getDimensions()).containsExactly(new Dimension().withName("region").withValue("us-west"));
+        assertThat(datum.getUnit()).isEqualTo(StandardUnit.Bytes.toString());
+        assertThat(datum.getTimestamp()).isEqualTo(timestamp);
+        assertThat(datum.getValue()).isEqualTo(42);
+    }
+
+    @Test
+    void taggedAndOverriddenUnitTemplates() {
+        MetricDatum tagged = templates.tagged(Statistic.Count).datum(new Date(0), 1);
+        assertThat(tagged.getMetricName()).isEqualTo("my.summary");
+        assertThat(tagged.getDimensions()).extracting(Dimension::getName).containsExactly("region", "statistic");
+
+        MetricDatum meter = templates.meter("milliseconds").datum(new Date(0), 1);
+        assertThat(meter.getUnit()).isEqualTo(StandardUnit.Milliseconds.toString());
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudWatchEmfMeterRegistryTest {
+    private final CloudWatchEmfConfig config = new CloudWatchEmfConfig() {
+        @Override
+        @Nullable
+        public String get(String k) {
+            return null;
+        }
+
+        @Override
+        public String namespace() {
+            return "namespace";
+        }
+    };
+
+    private final MockClock clock = new MockClock();
+    private final StringWriter out = new StringWriter();
+    private final CloudWatchEmfMeterRegistry registry = new CloudWatchEmfMeterRegistry(config, clock, out, Executors.defaultThreadFactory());
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @AfterEach
+    void stop() {
+        registry.stop();
+    }
+
+    @Test
+    void metricsSharingDimensionsAreWrittenToOneDocument() throws IOException {
+        Timer timer = Timer.builder("my.timer").tags("region", "us-west").register(registry);
+        timer.record(Duration.ofMillis(10));
+        timer.record(Duration.ofMillis(30));
+        clock.add(config.step());
+
+        List<JsonNode> documents = publish();
+        assertThat(documents).hasSize(1);
+
+        JsonNode document = documents.get(0);
+        JsonNode directive = document.get("_aws").get("CloudWatchMetrics").get(0);
+        assertThat(document.get("_aws").get("Timestamp").asLong()).isEqualTo(clock.wallTime());
+        assertThat(directive.get("Namespace").asText()).isEqualTo("namespace");
+        assertThat(directive.get("Dimensions").toString()).isEqualTo("[[\"region\"]]");
+
+        List<String> metrics = new ArrayList<>();
+        directive.get("Metrics").forEach(m -> metrics.add(m.get("Name").asText() + ":" + m.get("Unit").asText()));
+        assertThat(metrics).containsExactly("my.timer.count:Count",
+            "my.timer.sum:Milliseconds", "my.timer.max:Milliseconds");
+
+        assertThat(document.get("region").asText()).isEqualTo("us-west");
+        assertThat(document.get("my.timer.count").asDouble()).isEqualTo(2);
+        assertThat(document.get("my.timer.sum").asDouble()).isEqualTo(40);
+        assertThat(document.get("my.timer.max").asDouble()).isEqualTo(30);
+    }
+
+    @Test
+    void eachDimensionSetIsWrittenToItsOwnDocument() throws IOException {
+        registry.counter("my.counter", "region", "us-west").increment();
+        registry.counter("my.counter", "region", "us-east").increment();
+        registry.counter("my.counter").increment();
+        clock.add(config.step());
+
+        List<JsonNode> documents = publish();
+        assertThat(documents).hasSize(3);
+        assertThat(documents).extracting(d -> d.has("region") ? d.get("region").asText() : null)
+            .containsExactlyInAnyOrder("us-west", "us-east", null);
+        assertThat(documents).allSatisfy(d -> assertThat(d.get("my.counter").asDouble()).isEqualTo(1));
+    }
+
+    @Test
+    void documentsHoldAtMostOneHundredMetrics() throws IOException {
+        for (int i = 0; i < 150; i++) {
+            registry.counter("counter" + i).increment();
+        }
+
+        List<JsonNode> documents = publish();
+        assertThat(documents).hasSize(2);
+        assertThat(documents.get(0).get("_aws").get("CloudWatchMetrics").get(0).get("Metrics").size()).isEqualTo(100);
+        assertThat(documents.get(1).get("_aws").get("CloudWatchMetrics").get(0).get("Metrics").size()).isEqualTo(50);
+    }
+
+    @Test
+    void nonFiniteValuesAreSkippedAndStringsEscaped() throws IOException {
+        registry.gauge("my.gauge", Double.NaN);
+        registry.gauge("my.\"quoted\"\ngauge", 1.0);
+
+        List<JsonNode> documents = publish();
+        assertThat(documents).hasSize(1);
+        assertThat(documents.get(0).has("my.gauge")).isFalse();
+        assertThat(documents.get(0).get("my.\"quoted\"\ngauge").asDouble()).isEqualTo(1.0);
+    }
+
+    private List<JsonNode> publish() throws IOException {
+        out.getBuffer().setLength(0);
+        registry.publish();
+
+        List<JsonNode> documents = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            if (!line.isEmpty())
+                documents.add(mapper.readTree(line));
+        }
+        return documents;
+    }
+}
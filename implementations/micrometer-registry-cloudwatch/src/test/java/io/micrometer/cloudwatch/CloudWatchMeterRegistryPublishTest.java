@@ -0,0 +1,123 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.cloudwatch.AbstractAmazonCloudWatchAsync;
+import com.amazonaws.services.cloudwatch.model.PutMetricDataRequest;
+import com.amazonaws.services.cloudwatch.model.PutMetricDataResult;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.lang.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudWatchMeterRegistryPublishTest {
+    private final ScheduledExecutorService completions = Executors.newScheduledThreadPool(4);
+    private final List<PutMetricDataRequest> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @AfterEach
+    void stop() {
+        completions.shutdownNow();
+    }
+
+    @Test
+    void inFlightRequestsAreBounded() {
+        CloudWatchMeterRegistry registry = registry(Duration.ofMillis(20), Duration.ofSeconds(10));
+        for (int i = 0; i < 100; i++) {
+            registry.counter("my.counter" + i);
+        }
+
+        registry.publish();
+
+        // all 5 batches complete before publish returns
+        assertThat(requests).hasSize(5);
+        assertThat(inFlight.get()).isZero();
+        assertThat(maxInFlight.get()).isEqualTo(2);
+        registry.stop();
+    }
+
+    @Test
+    void publishGivesUpAfterTimeout() {
+        CloudWatchMeterRegistry registry = registry(null, Duration.ofMillis(200));
+        for (int i = 0; i < 100; i++) {
+            registry.counter("my.counter" + i);
+        }
+
+        long start = System.nanoTime();
+        registry.publish();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(requests).hasSize(2);
+
+        // the requests still in flight hold back the next publish too
+        registry.publish();
+        assertThat(requests).hasSize(2);
+        registry.stop();
+    }
+
+    /**
+     * @param latency How long each request takes to complete, or {@code null} if requests never complete.
+     */
+    private CloudWatchMeterRegistry registry(@Nullable Duration latency, Duration publishTimeout) {
+        AbstractAmazonCloudWatchAsync client = new AbstractAmazonCloudWatchAsync() {
+            @Override
+            public Future<PutMetricDataResult> putMetricDataAsync(PutMetricDataRequest request,
+                                                                  AsyncHandler<PutMetricDataRequest, PutMetricDataResult> handler) {
+                requests.add(request);
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                if (latency != null) {
+                    completions.schedule(() -> {
+                        inFlight.decrementAndGet();
+                        handler.onSuccess(request, new PutMetricDataResult());
+                    }, latency.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                return new CompletableFuture<>();
+            }
+        };
+
+        return new CloudWatchMeterRegistry(new CloudWatchConfig() {
+            @Override
+            @Nullable
+            public String get(String k) {
+                return null;
+            }
+
+            @Override
+            public String namespace() {
+                return "namespace";
+            }
+
+            @Override
+            public int maxInFlightRequests() {
+                return 2;
+            }
+
+            @Override
+            public Duration publishTimeout() {
+                return publishTimeout;
+            }
+        }, new MockClock(), client);
+    }
+}
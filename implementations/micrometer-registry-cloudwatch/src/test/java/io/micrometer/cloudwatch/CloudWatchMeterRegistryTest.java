@@ -0,0 +1,140 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloudWatchMeterRegistryTest {
+    private boolean statisticSets = true;
+
+    private final CloudWatchConfig config = new CloudWatchConfig() {
+        @Override
+        @Nullable
+        public String get(String k) {
+            return null;
+        }
+
+        @Override
+        public String namespace() {
+            return "namespace";
+        }
+
+        @Override
+        public boolean statisticSets() {
+            return statisticSets;
+        }
+    };
+
+    private final MockClock clock = new MockClock();
+
+    //noinspection ConstantConditions
+    private final CloudWatchMeterRegistry registry = new CloudWatchMeterRegistry(config, clock, null);
+
+    @AfterEach
+    void stop() {
+        registry.stop();
+    }
+
+    @Test
+    void timerIsPublishedAsSeparateDatumsByDefault() {
+        statisticSets = false;
+        Timer timer = Timer.builder("my.timer").register(registry);
+        timer.record(Duration.ofMillis(10));
+        timer.record(Duration.ofMillis(30));
+        clock.add(config.step());
+
+        List<MetricDatum> data = registry.metricData();
+        assertThat(data).extracting(MetricDatum::getMetricName)
+            .containsExactly("my.timer.sum", "my.timer.count", "my.timer.avg", "my.timer.max");
+        assertThat(data).extracting(MetricDatum::getValue).containsExactly(40.0, 2.0, 20.0, 30.0);
+        assertThat(data).extracting(MetricDatum::getStatisticValues).containsOnly((StatisticSet) null);
+        assertThat(data.get(0).getUnit()).isEqualTo(StandardUnit.Milliseconds.toString());
+        assertThat(data.get(1).getUnit()).isEqualTo(StandardUnit.Count.toString());
+    }
+
+    @Test
+    void timerIsPublishedAsStatisticSet() {
+        Timer timer = Timer.builder("my.timer").tags("region", "us-west").register(registry);
+        timer.record(Duration.ofMillis(10));
+        timer.record(Duration.ofMillis(30));
+        clock.add(config.step());
+
+        List<MetricDatum> data = registry.metricData();
+        assertThat(data).hasSize(1);
+
+        MetricDatum datum = data.get(0);
+        assertThat(datum.getMetricName()).isEqualTo("my.timer");
+        assertThat(datum.getUnit()).isEqualTo(StandardUnit.Milliseconds.toString());
+        assertThat(datum.getDimensions()).hasSize(1);
+        assertThat(datum.getValue()).isNull();
+
+        StatisticSet statistics = datum.getStatisticValues();
+        assertThat(statistics.getSampleCount()).isEqualTo(2);
+        assertThat(statistics.getSum()).isEqualTo(40);
+        assertThat(statistics.getMaximum()).isEqualTo(30);
+        assertThat(statistics.getMinimum()).isEqualTo(20);
+    }
+
+    @Test
+    void summaryIsPublishedAsStatisticSetWithPercentiles() {
+        DistributionSummary summary = DistributionSummary.builder("my.summary")
+            .baseUnit("bytes")
+            .publishPercentiles(0.5)
+            .register(registry);
+        summary.record(100);
+        clock.add(config.step());
+
+        List<MetricDatum> data = registry.metricData();
+        assertThat(data).extracting(MetricDatum::getMetricName).containsExactly("my.summary", "my.summary.0.5percentile");
+
+        StatisticSet statistics = data.get(0).getStatisticValues();
+        assertThat(data.get(0).getUnit()).isEqualTo(StandardUnit.Bytes.toString());
+        assertThat(statistics.getSampleCount()).isEqualTo(1);
+        assertThat(statistics.getSum()).isEqualTo(100);
+        assertThat(statistics.getMinimum()).isEqualTo(100);
+        assertThat(statistics.getMaximum()).isEqualTo(100);
+    }
+
+    @Test
+    void idleTimerIsNotPublishedAsStatisticSet() {
+        Timer.builder("my.timer").register(registry);
+        DistributionSummary.builder("my.summary").register(registry);
+
+        assertThat(registry.metricData()).isEmpty();
+    }
+
+    @Test
+    void idleStepsStillPublishPercentiles() {
+        Timer.builder("my.timer").publishPercentiles(0.5).register(registry);
+        DistributionSummary.builder("my.summary").publishPercentiles(0.5).register(registry);
+
+        assertThat(registry.metricData()).extracting(MetricDatum::getMetricName)
+            .containsExactlyInAnyOrder("my.timer.0.5percentile", "my.summary.0.5percentile");
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricDatumPartitionTest {
+    @Test
+    void partitionByCount() {
+        List<List<MetricDatum>> partitions = MetricDatumPartition.partition(data(45, 0), 20, CloudWatchConfig.MAX_REQUEST_SIZE);
+        assertThat(partitions).extracting(List::size).containsExactly(20, 20, 5);
+    }
+
+    @Test
+    void partitionBySize() {
+        // ten dimensions with 100 character values make each datum more than 2KB
+        List<MetricDatum> data = data(20, 100);
+        int datumSize = MetricDatumPartition.estimateSize(data.get(0), 20);
+        assertThat(datumSize).isGreaterThan(2000);
+
+        List<List<MetricDatum>> partitions = MetricDatumPartition.partition(data, 20, CloudWatchConfig.MAX_REQUEST_SIZE);
+        assertThat(partitions.size()).isGreaterThan(1);
+        assertThat(partitions.stream().mapToInt(List::size).sum()).isEqualTo(20);
+        for (List<MetricDatum> partition : partitions) {
+            assertThat(partition.size() * datumSize).isLessThanOrEqualTo(CloudWatchConfig.MAX_REQUEST_SIZE);
+        }
+    }
+
+    @Test
+    void datumLargerThanRequestIsSentAlone() {
+        List<List<MetricDatum>> partitions = MetricDatumPartition.partition(data(3, 100), 20, 1000);
+        assertThat(partitions).extracting(List::size).containsExactly(1, 1, 1);
+    }
+
+    @Test
+    void encodedCharactersAreCountedAtTheirEncodedLength() {
+        MetricDatum plain = new MetricDatum().withMetricName("aaaa");
+        MetricDatum encoded = new MetricDatum().withMetricName("a/b:");
+        assertThat(MetricDatumPartition.estimateSize(encoded, 1) - MetricDatumPartition.estimateSize(plain, 1)).isEqualTo(4);
+    }
+
+    private static List<MetricDatum> data(int count, int dimensionValueLength) {
+        String value = String.join("", Collections.nCopies(dimensionValueLength, "v"));
+        return IntStream.range(0, count)
+            .mapToObj(i -> new MetricDatum()
+                .withMetricName("my.counter" + i)
+                .withValue(1.0)
+                .withDimensions(dimensionValueLength == 0 ? Collections.emptyList() : IntStream.range(0, 10)
+                    .mapToObj(d -> new Dimension().withName("dimension" + d).withValue(value))
+                    .collect(toList())))
+            .collect(toList());
+    }
+}
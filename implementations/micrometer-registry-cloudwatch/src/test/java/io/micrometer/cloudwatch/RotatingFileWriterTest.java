@@ -0,0 +1,112 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.cloudwatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RotatingFileWriterTest {
+    private final Path dir = Files.createTempDirectory("emf");
+    private final Path file = dir.resolve("metrics.log");
+
+    RotatingFileWriterTest() throws IOException {
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    void rotatesOnlyBetweenLines() throws IOException {
+        try (RotatingFileWriter writer = new RotatingFileWriter(file, 10, 3)) {
+            writeLine(writer, "first line");
+            writeLine(writer, "second");
+            writeLine(writer, "third");
+            writeLine(writer, "4th");
+        }
+
+        assertThat(read(file)).isEqualTo("4th\n");
+        assertThat(read(file.resolveSibling("metrics.log.1"))).isEqualTo("second\nthird\n");
+        assertThat(read(file.resolveSibling("metrics.log.2"))).isEqualTo("first line\n");
+        assertThat(file.resolveSibling("metrics.log.3")).doesNotExist();
+    }
+
+    @Test
+    void appendsToExistingFile() throws IOException {
+        Files.write(file, "existing\n".getBytes(StandardCharsets.UTF_8));
+
+        try (RotatingFileWriter writer = new RotatingFileWriter(file, 12, 2)) {
+            writeLine(writer, "one");
+            writeLine(writer, "two");
+        }
+
+        assertThat(read(file.resolveSibling("metrics.log.1"))).isEqualTo("existing\none\n");
+        assertThat(read(file)).isEqualTo("two\n");
+    }
+
+    @Test
+    void singleFileIsTruncated() throws IOException {
+        try (RotatingFileWriter writer = new RotatingFileWriter(file, 5, 1)) {
+            writeLine(writer, "first line");
+            writeLine(writer, "two");
+        }
+
+        assertThat(read(file)).isEqualTo("two\n");
+        assertThat(file.resolveSibling("metrics.log.1")).doesNotExist();
+    }
+
+    @Test
+    void failedRotationIsRetriedAfterTheNextLine() throws IOException {
+        Path rotated = file.resolveSibling("metrics.log.1");
+        Path blocker = Files.createDirectories(rotated.resolve("blocker"));
+
+        try (RotatingFileWriter writer = new RotatingFileWriter(file, 5, 2)) {
+            assertThatThrownBy(() -> writeLine(writer, "first line")).isInstanceOf(IOException.class);
+
+            Files.delete(blocker);
+            Files.delete(rotated);
+            writeLine(writer, "two");
+            writeLine(writer, "3");
+        }
+
+        assertThat(read(rotated)).isEqualTo("first line\ntwo\n");
+        assertThat(read(file)).isEqualTo("3\n");
+    }
+
+    private static void writeLine(RotatingFileWriter writer, String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+}
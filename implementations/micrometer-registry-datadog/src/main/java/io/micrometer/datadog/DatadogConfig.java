@@ -18,6 +18,8 @@ package io.micrometer.datadog;
 import io.micrometer.core.instrument.step.StepRegistryConfig;
 import io.micrometer.core.lang.Nullable;
 
+import java.time.Duration;
+
 /**
  * Configuration for Datadog exporting.
  *
@@ -74,5 +76,22 @@ public interface DatadogConfig extends StepRegistryConfig {
         return v == null || Boolean.valueOf(v);
     }
 
+    /**
+     * The maximum number of metric metadata updates sent to Datadog per second. Metadata is sent
+     * in the background, so a large backlog of new metrics never delays publishing.
+     */
+    default int metadataRequestsPerSecond() {
+        String v = get(prefix() + ".metadataRequestsPerSecond");
+        return v == null ? 10 : Integer.parseInt(v);
+    }
 
+    /**
+     * How long to wait before retrying a metadata update for a metric that Datadog doesn't
+     * know about yet, as newly created metrics are not immediately available for metadata
+     * modification.
+     */
+    default Duration metadataRetryDelay() {
+        String v = get(prefix() + ".metadataRetryDelay");
+        return v == null ? Duration.ofMinutes(1) : Duration.parse(v);
+    }
 }
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.datadog;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.ipc.http.HttpSender;
+import io.micrometer.core.lang.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Sends metric metadata to Datadog in the background, at a bounded rate, so that a large number of new metrics
+ * never delays publishing. Each metric's metadata is queued at most once until it is accepted. Updates for metrics
+ * that Datadog hasn't created yet are retried after {@link DatadogConfig#metadataRetryDelay()}.
+ */
+class DatadogMetadataSender {
+    private final Logger logger = LoggerFactory.getLogger(DatadogMetadataSender.class);
+
+    private final DatadogConfig config;
+    private final HttpSender httpSender;
+    private final Clock clock;
+
+    /**
+     * Metric names for which we have posted metadata concerning type and base unit
+     */
+    private final Set<String> verifiedMetadata = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    @Nullable
+    private ScheduledExecutorService scheduler;
+
+    DatadogMetadataSender(DatadogConfig config, HttpSender httpSender, Clock clock) {
+        this.config = config;
+        this.httpSender = httpSender;
+        this.clock = clock;
+    }
+
+    synchronized void start(ThreadFactory threadFactory) {
+        stop();
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        scheduler.scheduleWithFixedDelay(this::sendPending, 1, 1, TimeUnit.SECONDS);
+    }
+
+    synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+        httpSender.close();
+    }
+
+    /**
+     * Queue a metric's metadata to be sent, unless it has already been accepted or is already queued.
+     */
+    void enqueue(String metricName, Supplier<DatadogMetricMetadata> metadata) {
+        if (!verifiedMetadata.contains(metricName) && !pending.containsKey(metricName)) {
+            pending.putIfAbsent(metricName, new Pending(metadata.get()));
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Send up to {@link DatadogConfig#metadataRequestsPerSecond()} queued updates that are due.
+     */
+    void sendPending() {
+        long now = clock.wallTime();
+
+        List<String> names = new ArrayList<>();
+        List<HttpSender.Request> requests = new ArrayList<>();
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            if (requests.size() >= config.metadataRequestsPerSecond())
+                break;
+            if (entry.getValue().notBefore > now)
+                continue;
+
+            try {
+                requests.add(HttpSender.Request
+                    .put(URI.create(config.uri() + "/api/v1/metrics/" + URLEncoder.encode(entry.getKey(), "UTF-8")
+                        + "?api_key=" + config.apiKey() + "&application_key=" + config.applicationKey()).toURL())
+                    .header("Content-Type", "application/json")
+                    .body(entry.getValue().metadata.editMetadataBody()));
+                names.add(entry.getKey());
+            } catch (MalformedURLException | UnsupportedEncodingException e) {
+                logger.error("failed to send metric metadata for '" + entry.getKey() + "'", e);
+                pending.remove(entry.getKey());
+            }
+        }
+
+        if (requests.isEmpty())
+            return;
+
+        List<HttpSender.Outcome> outcomes = httpSender.sendAll(requests);
+        for (int i = 0; i < outcomes.size(); i++) {
+            String metricName = names.get(i);
+            HttpSender.Outcome outcome = outcomes.get(i);
+            HttpSender.Response response = outcome.response();
+
+            if (response != null && response.isSuccessful()) {
+                verifiedMetadata.add(metricName);
+                pending.remove(metricName);
+            } else if (response != null && response.code() >= 400 && response.body().contains("metric_name not found")) {
+                // Metrics that are newly created in Datadog are not immediately available for metadata
+                // modification, so try again once it has had time to be created.
+                pending.get(metricName).notBefore = now + config.metadataRetryDelay().toMillis();
+            } else {
+                // the metric is queued again the next time it is published
+                pending.remove(metricName);
+                if (response == null) {
+                    logger.warn("failed to send metric metadata", outcome.error());
+                } else if (response.code() >= 400) {
+                    logger.error("failed to send metric metadata: " + response.body());
+                } else {
+                    logger.error("failed to send metric metadata: http " + response.code());
+                }
+            }
+        }
+    }
+
+    private static class Pending {
+        private final DatadogMetricMetadata metadata;
+        private volatile long notBefore;
+
+        Pending(DatadogMetricMetadata metadata) {
+            this.metadata = metadata;
+        }
+    }
+}
@@ -17,30 +17,24 @@ package io.micrometer.datadog;
 
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.step.StepMeterRegistry;
-import io.micrometer.core.instrument.util.DoubleFormat;
+import io.micrometer.core.instrument.util.ConventionCache;
 import io.micrometer.core.instrument.util.MeterPartition;
+import io.micrometer.core.ipc.http.HttpSender;
 import io.micrometer.core.lang.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Stream;
 
-import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.StreamSupport.stream;
+import static java.util.stream.Collectors.toList;
 
 /**
  * @author Jon Schneider
@@ -50,11 +44,11 @@ public class DatadogMeterRegistry extends StepMeterRegistry {
 
     private final Logger logger = LoggerFactory.getLogger(DatadogMeterRegistry.class);
     private final DatadogConfig config;
+    private final HttpSender httpSender;
 
-    /**
-     * Metric names for which we have posted metadata concerning type and base unit
-     */
-    private final Set<String> verifiedMetadata = ConcurrentHashMap.newKeySet();
+    private final DatadogMetadataSender metadataSender;
+
+    private final ConventionCache<DatadogSeries> seriesByMeter;
 
     public DatadogMeterRegistry(DatadogConfig config, Clock clock) {
         this(config, clock, Executors.defaultThreadFactory());
@@ -73,252 +67,155 @@ public class DatadogMeterRegistry extends StepMeterRegistry {
         }
 
         this.config = config;
+        this.seriesByMeter = new ConventionCache<>((id, convention) -> new DatadogSeries(id, convention, config.hostTag()));
+        this.httpSender = httpSender("datadog.http", threadFactory).build();
+        this.metadataSender = new DatadogMetadataSender(config, httpSender("datadog.metadata.http", threadFactory).build(), clock);
 
         start(threadFactory);
     }
 
     @Override
-    protected void publish() {
-        Map<String, DatadogMetricMetadata> metadataToSend = new HashMap<>();
+    public void start(ThreadFactory threadFactory) {
+        super.start(threadFactory);
 
-        try {
-            HttpURLConnection con = null;
-
-            for (List<Meter> batch : MeterPartition.partition(this, config.batchSize())) {
-                try {
-                    con = (HttpURLConnection) postTimeSeriesEndpoint.openConnection();
-                    con.setConnectTimeout((int) config.connectTimeout().toMillis());
-                    con.setReadTimeout((int) config.readTimeout().toMillis());
-                    con.setRequestMethod("POST");
-                    con.setRequestProperty("Content-Type", "application/json");
-                    con.setDoOutput(true);
-
-                    /*
-                    Example post body from Datadog API docs. Host and tags are optional.
-                    "{ \"series\" :
-                            [{\"metric\":\"test.metric\",
-                              \"points\":[[$currenttime, 20]],
-                              \"host\":\"test.example.com\",
-                              \"tags\":[\"environment:test\"]}
-                            ]
-                    }"
-                    */
-
-                    String body = "{\"series\":[" +
-                        batch.stream().flatMap(m -> {
-                            if (m instanceof Timer) {
-                                return writeTimer((Timer) m, metadataToSend);
-                            }
-                            if (m instanceof DistributionSummary) {
-                                return writeSummary((DistributionSummary) m, metadataToSend);
-                            }
-                            if (m instanceof FunctionTimer) {
-                                return writeTimer((FunctionTimer) m, metadataToSend);
-                            }
-                            return writeMeter(m, metadataToSend);
-                        }).collect(joining(",")) +
-                        "]}";
-
-                    try (OutputStream os = con.getOutputStream()) {
-                        os.write(body.getBytes());
-                        os.flush();
-                    }
-
-                    int status = con.getResponseCode();
-
-                    if (status >= 200 && status < 300) {
-                        logger.info("successfully sent " + batch.size() + " metrics to datadog");
-                    } else if (status >= 400) {
-                        try (InputStream in = con.getErrorStream()) {
-                            logger.error("failed to send metrics: " + new BufferedReader(new InputStreamReader(in))
-                                .lines().collect(joining("\n")));
-                        }
-                    } else {
-                        logger.error("failed to send metrics: http " + status);
-                    }
-                } finally {
-                    quietlyCloseUrlConnection(con);
-                }
-            }
-        } catch (Exception e) {
-            logger.warn("failed to send metrics", e);
-        }
+        // we can't set metadata correctly without the application key
+        if (config.applicationKey() != null)
+            metadataSender.start(threadFactory);
+    }
 
-        metadataToSend.forEach(this::postMetricMetadata);
+    @Override
+    public void stop() {
+        super.stop();
+        metadataSender.stop();
+        httpSender.close();
     }
 
-    private void quietlyCloseUrlConnection(@Nullable HttpURLConnection con) {
-        try {
-            if (con != null) {
-                con.disconnect();
+    /**
+     * Each batch's series are written straight into its request body. A retried request writes them again, reading
+     * its meters a second time: step values are the same until the step ends and points keep the publish's timestamp,
+     * though gauges may have moved on. Metadata is queued at most once per metric, so writing it again does nothing.
+     */
+    @Override
+    protected void publish() {
+        long wallTimeSeconds = clock.wallTime() / 1000;
+        List<List<Meter>> batches = MeterPartition.partition(this, config.batchSize());
+        List<HttpSender.Request> requests = batches.stream()
+            .map(batch -> HttpSender.Request.post(postTimeSeriesEndpoint)
+                .header("Content-Type", "application/json")
+                .body(out -> writeSeries(batch, wallTimeSeconds, out)))
+            .collect(toList());
+
+        List<HttpSender.Outcome> outcomes = httpSender.sendAll(requests);
+        for (int i = 0; i < outcomes.size(); i++) {
+            HttpSender.Outcome outcome = outcomes.get(i);
+            HttpSender.Response response = outcome.response();
+            if (response == null) {
+                logger.warn("failed to send metrics", outcome.error());
+            } else if (response.isSuccessful()) {
+                logger.info("successfully sent " + batches.get(i).size() + " metrics to datadog");
+            } else if (response.code() >= 400) {
+                logger.error("failed to send metrics: " + response.body());
+            } else {
+                logger.error("failed to send metrics: http " + response.code());
             }
-        } catch (Exception ignore) {
         }
     }
 
-    private Stream<String> writeTimer(FunctionTimer timer, Map<String, DatadogMetricMetadata> metadata) {
-        long wallTime = clock.wallTime();
-
-        Meter.Id id = timer.getId();
+    /*
+    Example post body from Datadog API docs. Host and tags are optional.
+    "{ \"series\" :
+            [{\"metric\":\"test.metric\",
+              \"points\":[[$currenttime, 20]],
+              \"host\":\"test.example.com\",
+              \"tags\":[\"environment:test\"]}
+            ]
+    }"
+    */
+    private void writeSeries(List<Meter> batch, long wallTimeSeconds, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("{\"series\":[");
+
+        SeriesWriter series = new SeriesWriter(writer, wallTimeSeconds);
+        for (Meter m : batch) {
+            DatadogSeries meterSeries = seriesByMeter.get(m.getId(), config().namingConvention());
+            if (m instanceof Timer) {
+                writeTimer((Timer) m, meterSeries, series);
+            } else if (m instanceof DistributionSummary) {
+                writeSummary((DistributionSummary) m, meterSeries, series);
+            } else if (m instanceof FunctionTimer) {
+                writeTimer((FunctionTimer) m, meterSeries, series);
+            } else {
+                writeMeter(m, meterSeries, series);
+            }
+        }
 
-        addToMetadataList(metadata, id, "count", Statistic.Count, "occurrence");
-        addToMetadataList(metadata, id, "avg", Statistic.Value, null);
-        addToMetadataList(metadata, id, "sum", Statistic.TotalTime, null);
+        writer.write("]}");
+        writer.flush();
+    }
 
+    private void writeTimer(FunctionTimer timer, DatadogSeries meterSeries, SeriesWriter series) throws IOException {
         // we can't know anything about max and percentiles originating from a function timer
-        return Stream.of(
-            writeMetric(id, "count", wallTime, timer.count()),
-            writeMetric(id, "avg", wallTime, timer.mean(getBaseTimeUnit())),
-            writeMetric(id, "sum", wallTime, timer.totalTime(getBaseTimeUnit())));
+        series.write(meterSeries.suffixed("count"), timer.count(), Statistic.Count, "occurrence");
+        series.write(meterSeries.suffixed("avg"), timer.mean(getBaseTimeUnit()), Statistic.Value, null);
+        series.write(meterSeries.suffixed("sum"), timer.totalTime(getBaseTimeUnit()), Statistic.TotalTime, null);
     }
 
-    private Stream<String> writeTimer(Timer timer, Map<String, DatadogMetricMetadata> metadata) {
-        final long wallTime = clock.wallTime();
+    private void writeTimer(Timer timer, DatadogSeries meterSeries, SeriesWriter series) throws IOException {
         final HistogramSnapshot snapshot = timer.takeSnapshot(false);
-        final Stream.Builder<String> metrics = Stream.builder();
 
-        Meter.Id id = timer.getId();
-        metrics.add(writeMetric(id, "sum", wallTime, snapshot.total(getBaseTimeUnit())));
-        metrics.add(writeMetric(id, "count", wallTime, snapshot.count()));
-        metrics.add(writeMetric(id, "avg", wallTime, snapshot.mean(getBaseTimeUnit())));
-        metrics.add(writeMetric(id, "max", wallTime, snapshot.max(getBaseTimeUnit())));
-
-        addToMetadataList(metadata, id, "sum", Statistic.TotalTime, null);
-        addToMetadataList(metadata, id, "count", Statistic.Count, "occurrence");
-        addToMetadataList(metadata, id, "avg", Statistic.Value, null);
-        addToMetadataList(metadata, id, "max", Statistic.Max, null);
+        series.write(meterSeries.suffixed("sum"), snapshot.total(getBaseTimeUnit()), Statistic.TotalTime, null);
+        series.write(meterSeries.suffixed("count"), snapshot.count(), Statistic.Count, "occurrence");
+        series.write(meterSeries.suffixed("avg"), snapshot.mean(getBaseTimeUnit()), Statistic.Value, null);
+        series.write(meterSeries.suffixed("max"), snapshot.max(getBaseTimeUnit()), Statistic.Max, null);
 
         for (ValueAtPercentile v : snapshot.percentileValues()) {
-            String suffix = DoubleFormat.toString(v.percentile() * 100) + "percentile";
-            metrics.add(writeMetric(id, suffix, wallTime, v.value(getBaseTimeUnit())));
-
-            addToMetadataList(metadata, id, suffix, Statistic.Value, null);
+            series.write(meterSeries.percentile(v.percentile()), v.value(getBaseTimeUnit()), Statistic.Value, null);
         }
-
-        return metrics.build();
     }
 
-    private Stream<String> writeSummary(DistributionSummary summary, Map<String, DatadogMetricMetadata> metadata) {
-        final long wallTime = clock.wallTime();
+    private void writeSummary(DistributionSummary summary, DatadogSeries meterSeries, SeriesWriter series) throws IOException {
         final HistogramSnapshot snapshot = summary.takeSnapshot(false);
-        final Stream.Builder<String> metrics = Stream.builder();
-
-        Meter.Id id = summary.getId();
-        metrics.add(writeMetric(id, "sum", wallTime, snapshot.total()));
-        metrics.add(writeMetric(id, "count", wallTime, snapshot.count()));
-        metrics.add(writeMetric(id, "avg", wallTime, snapshot.mean()));
-        metrics.add(writeMetric(id, "max", wallTime, snapshot.max()));
 
-        addToMetadataList(metadata, id, "sum", Statistic.Total, null);
-        addToMetadataList(metadata, id, "count", Statistic.Count, "occurrence");
-        addToMetadataList(metadata, id, "avg", Statistic.Value, null);
-        addToMetadataList(metadata, id, "max", Statistic.Max, null);
+        series.write(meterSeries.suffixed("sum"), snapshot.total(), Statistic.Total, null);
+        series.write(meterSeries.suffixed("count"), snapshot.count(), Statistic.Count, "occurrence");
+        series.write(meterSeries.suffixed("avg"), snapshot.mean(), Statistic.Value, null);
+        series.write(meterSeries.suffixed("max"), snapshot.max(), Statistic.Max, null);
 
         for (ValueAtPercentile v : snapshot.percentileValues()) {
-            String suffix = DoubleFormat.toString(v.percentile() * 100) + "percentile";
-            metrics.add(writeMetric(id, suffix, wallTime, v.value()));
-
-            addToMetadataList(metadata, id, suffix, Statistic.Value, null);
+            series.write(meterSeries.percentile(v.percentile()), v.value(), Statistic.Value, null);
         }
-
-        return metrics.build();
-    }
-
-    private Stream<String> writeMeter(Meter m, Map<String, DatadogMetricMetadata> metadata) {
-        long wallTime = clock.wallTime();
-        return stream(m.measure().spliterator(), false)
-            .map(ms -> {
-                Meter.Id id = m.getId().withTag(ms.getStatistic());
-                addToMetadataList(metadata, id, null, ms.getStatistic(), null);
-                return writeMetric(id, null, wallTime, ms.getValue());
-            });
     }
 
-    private void addToMetadataList(Map<String, DatadogMetricMetadata> metadata, Meter.Id id, @Nullable String suffix,
-                                   Statistic stat, @Nullable String overrideBaseUnit) {
-        if (config.applicationKey() == null)
-            return; // we can't set metadata correctly without the application key
-
-        Meter.Id fullId = id;
-        if (suffix != null)
-            fullId = idWithSuffix(id, suffix);
-
-        String metricName = getConventionName(fullId);
-        if (!verifiedMetadata.contains(metricName)) {
-            metadata.put(metricName, new DatadogMetricMetadata(fullId, stat, config.descriptions(), overrideBaseUnit));
+    private void writeMeter(Meter m, DatadogSeries meterSeries, SeriesWriter series) throws IOException {
+        for (Measurement ms : m.measure()) {
+            series.write(meterSeries.tagged(ms.getStatistic()), ms.getValue(), ms.getStatistic(), null);
         }
     }
 
-    //VisibleForTesting
-    String writeMetric(Meter.Id id, @Nullable String suffix, long wallTime, double value) {
-        Meter.Id fullId = id;
-        if (suffix != null)
-            fullId = idWithSuffix(id, suffix);
-
-        Iterable<Tag> tags = fullId.getTags();
-
-        String host = config.hostTag() == null ? "" : stream(tags.spliterator(), false)
-            .filter(t -> requireNonNull(config.hostTag()).equals(t.getKey()))
-            .findAny()
-            .map(t -> ",\"host\":\"" + t.getValue() + "\"")
-            .orElse("");
-
-        String tagsArray = tags.iterator().hasNext() ?
-            ",\"tags\":[" +
-                stream(tags.spliterator(), false)
-                    .map(t -> "\"" + t.getKey() + ":" + t.getValue() + "\"")
-                    .collect(joining(",")) + "]" : "";
-
-        return "{\"metric\":\"" + getConventionName(fullId) + "\"," +
-            "\"points\":[[" + (wallTime / 1000) + ", " + value + "]]" + host + tagsArray + "}";
-    }
-
     /**
-     * Set up metric metadata once per time series
+     * Writes the comma-separated points of one series payload, queueing the metadata of each metric along the way.
      */
-    private void postMetricMetadata(String metricName, DatadogMetricMetadata metadata) {
-        // already posted the metadata for this metric
-        if (verifiedMetadata.contains(metricName))
-            return;
+    private class SeriesWriter {
+        private final Writer writer;
+        private final long wallTimeSeconds;
+        private boolean first = true;
+
+        SeriesWriter(Writer writer, long wallTimeSeconds) {
+            this.writer = writer;
+            this.wallTimeSeconds = wallTimeSeconds;
+        }
 
-        HttpURLConnection con = null;
-        try {
-            con = (HttpURLConnection) URI.create(config.uri() + "/api/v1/metrics/" + metricName
-                + "?api_key=" + config.apiKey() + "&application_key=" + config.applicationKey()).toURL().openConnection();
-            con.setConnectTimeout((int) config.connectTimeout().toMillis());
-            con.setReadTimeout((int) config.readTimeout().toMillis());
-            con.setRequestMethod("PUT");
-            con.setRequestProperty("Content-Type", "application/json");
-            con.setDoOutput(true);
-
-            try (OutputStream os = con.getOutputStream()) {
-                os.write(metadata.editMetadataBody().getBytes());
-                os.flush();
-            }
+        void write(DatadogSeries.Point point, double value, Statistic stat, @Nullable String overrideBaseUnit) throws IOException {
+            if (!first)
+                writer.write(',');
+            first = false;
+            point.write(writer, wallTimeSeconds, value);
 
-            int status = con.getResponseCode();
-
-            if (status >= 200 && status < 300) {
-                verifiedMetadata.add(metricName);
-            } else if (status >= 400) {
-                try (InputStream in = con.getErrorStream()) {
-                    String msg = new BufferedReader(new InputStreamReader(in))
-                        .lines().collect(joining("\n"));
-                    if (msg.contains("metric_name not found")) {
-                        // Do nothing. Metrics that are newly created in Datadog are not immediately available
-                        // for metadata modification. We will keep trying this request on subsequent publishes,
-                        // where it will eventually succeed.
-                    } else {
-                        logger.error("failed to send metric metadata: " + msg);
-                    }
-                }
-            } else {
-                logger.error("failed to send metric metadata: http " + status);
+            // we can't set metadata correctly without the application key
+            if (config.applicationKey() != null) {
+                metadataSender.enqueue(point.getName(),
+                    () -> new DatadogMetricMetadata(point.getId(), stat, config.descriptions(), overrideBaseUnit));
             }
-        } catch (IOException e) {
-            logger.warn("failed to send metric metadata", e);
-        } finally {
-            quietlyCloseUrlConnection(con);
         }
     }
 
@@ -326,11 +223,4 @@ public class DatadogMeterRegistry extends StepMeterRegistry {
     protected TimeUnit getBaseTimeUnit() {
         return TimeUnit.MILLISECONDS;
     }
-
-    /**
-     * Copy tags, unit, and description from an existing id, but change the name.
-     */
-    private Meter.Id idWithSuffix(Meter.Id id, String suffix) {
-        return new Meter.Id(id.getName() + "." + suffix, id.getTags(), id.getBaseUnit(), id.getDescription(), id.getType());
-    }
 }
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.datadog;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.util.DoubleFormat;
+import io.micrometer.core.lang.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The JSON a meter contributes to a series payload under a naming convention, rendered once so that only timestamps
+ * and values are written on each publish.
+ */
+class DatadogSeries {
+    private final Meter.Id id;
+    private final NamingConvention convention;
+    private final Map<String, Point> bySuffix = new ConcurrentHashMap<>();
+    private final Map<Double, Point> byPercentile = new ConcurrentHashMap<>();
+    private final Point[] byStatistic = new Point[Statistic.values().length];
+
+    @Nullable
+    private final String hostTag;
+
+    DatadogSeries(Meter.Id id, NamingConvention convention, @Nullable String hostTag) {
+        this.id = id;
+        this.convention = convention;
+        this.hostTag = hostTag;
+    }
+
+    /**
+     * A point for the meter's name followed by {@code suffix}, e.g. {@code my.timer.count}.
+     */
+    Point suffixed(String suffix) {
+        return bySuffix.computeIfAbsent(suffix, s -> new Point(id.withSuffix(s)));
+    }
+
+    /**
+     * A point for the meter's name followed by {@code <percentile>percentile}, e.g. {@code my.timer.99percentile}.
+     */
+    Point percentile(double percentile) {
+        return byPercentile.computeIfAbsent(percentile,
+            p -> new Point(id.withSuffix(DoubleFormat.toString(p * 100) + "percentile")));
+    }
+
+    /**
+     * A point for the meter's name, tagged with {@code statistic}.
+     */
+    Point tagged(Statistic statistic) {
+        Point point = byStatistic[statistic.ordinal()];
+        if (point == null) {
+            point = new Point(id.withTag(statistic));
+            byStatistic[statistic.ordinal()] = point;
+        }
+        return point;
+    }
+
+    class Point {
+        private final Meter.Id id;
+        private final String name;
+
+        /**
+         * {"metric":"my.timer.count","points":[[
+         */
+        private final String head;
+
+        /**
+         * ]],"host":"host1","tags":["host:host1","region:us-west"]}
+         */
+        private final String tail;
+
+        private Point(Meter.Id id) {
+            this.id = id;
+            this.name = id.getConventionName(convention);
+            this.head = "{\"metric\":\"" + name + "\",\"points\":[[";
+
+            StringBuilder tail = new StringBuilder("]]");
+            StringBuilder tags = new StringBuilder();
+            for (Tag tag : id.getTags()) {
+                if (tag.getKey().equals(hostTag))
+                    tail.append(",\"host\":\"").append(tag.getValue()).append('"');
+                tags.append(tags.length() == 0 ? ",\"tags\":[" : ",")
+                    .append('"').append(tag.getKey()).append(':').append(tag.getValue()).append('"');
+            }
+            if (tags.length() > 0)
+                tail.append(tags).append(']');
+            this.tail = tail.append('}').toString();
+        }
+
+        Meter.Id getId() {
+            return id;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        void write(Writer writer, long wallTimeSeconds, double value) throws IOException {
+            writer.write(head);
+            writer.write(Long.toString(wallTimeSeconds));
+            writer.write(", ");
+            writer.write(Double.toString(value));
+            writer.write(tail);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.datadog;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.ipc.http.HttpSender;
+import io.micrometer.core.lang.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatadogMetadataSenderTest {
+    private final List<String> updatedMetrics = new CopyOnWriteArrayList<>();
+    private volatile boolean metricsExist = true;
+
+    private HttpServer server;
+    private MockClock clock = new MockClock();
+    private DatadogMetadataSender sender;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v1/metrics/", exchange -> {
+            try {
+                String path = exchange.getRequestURI().getPath();
+                updatedMetrics.add(path.substring(path.lastIndexOf('/') + 1));
+
+                byte[] body = (metricsExist ? "{}" : "{\"errors\": [\"metric_name not found\"]}").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(metricsExist ? 200 : 404, body.length);
+                exchange.getResponseBody().write(body);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        DatadogConfig config = new DatadogConfig() {
+            @Override
+            public String uri() {
+                return "http://127.0.0.1:" + server.getAddress().getPort();
+            }
+
+            @Override
+            public String apiKey() {
+                return "api";
+            }
+
+            @Override
+            public String applicationKey() {
+                return "app";
+            }
+
+            @Override
+            public int metadataRequestsPerSecond() {
+                return 2;
+            }
+
+            @Override
+            @Nullable
+            public String get(String k) {
+                return null;
+            }
+        };
+
+        sender = new DatadogMetadataSender(config, HttpSender.builder().build(), clock);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void eachMetricIsSentOnceAccepted() {
+        sender.enqueue("my.counter", () -> metadata("my.counter"));
+        sender.enqueue("my.counter", () -> metadata("my.counter"));
+        sender.sendPending();
+
+        sender.enqueue("my.counter", () -> metadata("my.counter"));
+        sender.sendPending();
+
+        assertThat(updatedMetrics).containsExactly("my.counter");
+        assertThat(sender.pendingCount()).isZero();
+    }
+
+    @Test
+    void rateLimited() {
+        for (int i = 0; i < 5; i++) {
+            String name = "my.counter" + i;
+            sender.enqueue(name, () -> metadata(name));
+        }
+
+        sender.sendPending();
+        assertThat(updatedMetrics).hasSize(2);
+        assertThat(sender.pendingCount()).isEqualTo(3);
+
+        sender.sendPending();
+        sender.sendPending();
+        assertThat(updatedMetrics).hasSize(5);
+    }
+
+    @Test
+    void retryMetricsNotYetCreatedAfterDelay() {
+        metricsExist = false;
+        sender.enqueue("my.counter", () -> metadata("my.counter"));
+        sender.sendPending();
+        sender.sendPending();
+        assertThat(updatedMetrics).hasSize(1);
+
+        metricsExist = true;
+        clock.add(Duration.ofMinutes(1));
+        sender.sendPending();
+        assertThat(updatedMetrics).hasSize(2);
+        assertThat(sender.pendingCount()).isZero();
+    }
+
+    private static DatadogMetricMetadata metadata(String name) {
+        return new DatadogMetricMetadata(new Meter.Id(name, Collections.emptyList(), null, null, Meter.Type.Counter),
+            Statistic.Count, false, null);
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.datadog;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tags;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatadogSeriesTest {
+    private final DatadogNamingConvention convention = new DatadogNamingConvention();
+    private final Meter.Id id = new Meter.Id("my.timer", Tags.zip("host", "host1", "region", "us-west"), null, null, Meter.Type.Timer);
+
+    @Test
+    void suffixedPoint() throws IOException {
+        DatadogSeries series = new DatadogSeries(id, convention, "host");
+        assertThat(write(series.suffixed("count"), 3)).isEqualTo("{\"metric\":\"my.timer.count\",\"points\":[[1, 3.0]]," +
+            "\"host\":\"host1\",\"tags\":[\"host:host1\",\"region:us-west\"]}");
+    }
+
+    @Test
+    void percentilePoint() throws IOException {
+        DatadogSeries series = new DatadogSeries(id, convention, null);
+        assertThat(write(series.percentile(0.99), 1.5)).isEqualTo("{\"metric\":\"my.timer.99percentile\"," +
+            "\"points\":[[1, 1.5]],\"tags\":[\"host:host1\",\"region:us-west\"]}");
+    }
+
+    @Test
+    void taggedPoint() throws IOException {
+        DatadogSeries series = new DatadogSeries(new Meter.Id("my.gauge", Collections.emptyList(), null, null, Meter.Type.Gauge), convention, null);
+        assertThat(write(series.tagged(Statistic.Value), 1)).isEqualTo("{\"metric\":\"my.gauge\"," +
+            "\"points\":[[1, 1.0]],\"tags\":[\"statistic:value\"]}");
+    }
+
+    @Test
+    void pointsAreRenderedOnce() {
+        DatadogSeries series = new DatadogSeries(id, convention, null);
+        DatadogSeries.Point point = series.suffixed("count");
+        assertThat(series.suffixed("count")).isSameAs(point);
+    }
+
+    private static String write(DatadogSeries.Point point, double value) throws IOException {
+        StringWriter writer = new StringWriter();
+        point.write(writer, 1, value);
+        return writer.toString();
+    }
+}
@@ -15,7 +15,7 @@
  */
 package io.micrometer.graphite;
 
-import io.micrometer.core.instrument.dropwizard.DropwizardConfig;
+import io.micrometer.core.instrument.step.StepRegistryConfig;
 import io.micrometer.core.lang.Nullable;
 
 import java.util.concurrent.TimeUnit;
@@ -23,7 +23,7 @@ import java.util.concurrent.TimeUnit;
 /**
  * @author Jon Schneider
  */
-public interface GraphiteConfig extends DropwizardConfig {
+public interface GraphiteConfig extends StepRegistryConfig {
     /**
      * Accept configuration defaults
      */
@@ -55,11 +55,18 @@ public interface GraphiteConfig extends DropwizardConfig {
         return new String[0];
     }
 
+    /**
+     * The unit of time that the rates of counters, timers and distribution summaries are reported per. The default
+     * is seconds.
+     */
     default TimeUnit rateUnits() {
         String v = get(prefix() + ".rateUnits");
         return v == null ? TimeUnit.SECONDS : TimeUnit.valueOf(v.toUpperCase());
     }
 
+    /**
+     * The unit of time that timer and long task timer durations are reported in. The default is milliseconds.
+     */
     default TimeUnit durationUnits() {
         String v = get(prefix() + ".durationUnits");
         return v == null ? TimeUnit.MILLISECONDS : TimeUnit.valueOf(v.toUpperCase());
@@ -76,11 +83,24 @@ public interface GraphiteConfig extends DropwizardConfig {
     }
 
     /**
-     * Returns true if publishing is enabled. Default is {@code true}.
+     * The number of points written to the connection at once, which for {@link GraphiteProtocol#Pickled} is the
+     * number of points per pickle. Carbon rejects pickles larger than 1MB, so this is lower than for other
+     * registries. The default is 1,000.
+     */
+    @Override
+    default int batchSize() {
+        String v = get(prefix() + ".batchSize");
+        return v == null ? 1000 : Integer.parseInt(v);
+    }
+
+    /**
+     * The maximum size in bytes of a datagram when publishing over {@link GraphiteProtocol#Udp}. Lines are
+     * packed into datagrams up to this size, so it should be no larger than the network path allows without
+     * fragmentation. The default is 1400 bytes.
      */
-    default boolean enabled() {
-        String v = get(prefix() + ".enabled");
-        return v == null || Boolean.valueOf(v);
+    default int udpPacketSize() {
+        String v = get(prefix() + ".udpPacketSize");
+        return v == null ? 1400 : Integer.parseInt(v);
     }
 
     /**
@@ -15,70 +15,197 @@
  */
 package io.micrometer.graphite;
 
-import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.graphite.*;
-import io.micrometer.core.instrument.Clock;
-import io.micrometer.core.instrument.dropwizard.DropwizardMeterRegistry;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.step.StepMeterRegistry;
+import io.micrometer.core.instrument.util.ConventionCache;
+import io.micrometer.core.instrument.util.DoubleFormat;
 import io.micrometer.core.instrument.util.HierarchicalNameMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.net.InetSocketAddress;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
-public class GraphiteMeterRegistry extends DropwizardMeterRegistry {
+/**
+ * Publishes each step's meters to Graphite, reading them directly rather than mirroring them into another metrics
+ * library. Each meter's hierarchical name, and the names of the points it is published as, are built once and
+ * reused on every publish.
+ */
+public class GraphiteMeterRegistry extends StepMeterRegistry {
+    /**
+     * Suffixes for measurements of meters without a more specific type, e.g. {@code total_time}, indexed by
+     * statistic ordinal.
+     */
+    private static final String[] STATISTIC_SUFFIXES = Arrays.stream(Statistic.values())
+        .map(statistic -> statistic.toString().replaceAll("(.)(\\p{Upper})", "$1_$2").toLowerCase())
+        .toArray(String[]::new);
 
-    private final GraphiteReporter reporter;
     private final GraphiteConfig config;
+    private final HierarchicalNameMapper nameMapper;
+    private final GraphiteSender sender;
+    private final ConventionCache<PointNames> pointNames;
+    private final Logger logger = LoggerFactory.getLogger(GraphiteMeterRegistry.class);
 
     public GraphiteMeterRegistry(GraphiteConfig config, Clock clock) {
         this(config, clock, new GraphiteHierarchicalNameMapper(config.tagsAsPrefix()));
     }
 
     public GraphiteMeterRegistry(GraphiteConfig config, Clock clock, HierarchicalNameMapper nameMapper) {
-        this(config, clock, nameMapper, new MetricRegistry());
-    }
-
-    public GraphiteMeterRegistry(GraphiteConfig config, Clock clock, HierarchicalNameMapper nameMapper,
-                                 MetricRegistry metricRegistry) {
-        this(config, clock, nameMapper, metricRegistry, defaultGraphiteReporter(config, metricRegistry));
+        this(config, clock, nameMapper, Executors.defaultThreadFactory());
     }
 
     public GraphiteMeterRegistry(GraphiteConfig config, Clock clock, HierarchicalNameMapper nameMapper,
-                                 MetricRegistry metricRegistry, GraphiteReporter reporter) {
-        super(config, metricRegistry, nameMapper, clock);
+                                 ThreadFactory threadFactory) {
+        super(config, clock);
 
         this.config = config;
+        this.nameMapper = nameMapper;
+        this.pointNames = new ConventionCache<>((id, convention) -> new PointNames(nameMapper.toHierarchicalName(id, convention)));
         this.config().namingConvention(new GraphiteNamingConvention());
-        this.reporter = reporter;
+        this.sender = sender(config);
 
         if (config.enabled())
-            start();
+            start(threadFactory);
     }
 
-    private static GraphiteReporter defaultGraphiteReporter(GraphiteConfig config, MetricRegistry metricRegistry) {
-        GraphiteSender sender;
-        switch (config.protocol()) {
-            case Plaintext:
-                sender = new Graphite(new InetSocketAddress(config.host(), config.port()));
-                break;
-            case Udp:
-                sender = new GraphiteUDP(new InetSocketAddress(config.host(), config.port()));
-                break;
-            case Pickled:
-            default:
-                sender = new PickledGraphite(new InetSocketAddress(config.host(), config.port()));
-        }
+    private static GraphiteSender sender(GraphiteConfig config) {
+        if (config.protocol() == GraphiteProtocol.Udp)
+            return new GraphiteUdpSender(config.host(), config.port(), config.udpPacketSize());
 
-        return GraphiteReporter.forRegistry(metricRegistry)
-            .convertRatesTo(config.rateUnits())
-            .convertDurationsTo(config.durationUnits())
-            .build(sender);
+        boolean pickled = config.protocol() != GraphiteProtocol.Plaintext;
+        return new GraphiteTcpSender(config.host(), config.port(), (int) config.connectTimeout().toMillis(), pickled, config.batchSize());
     }
 
+    @Override
     public void stop() {
-        this.reporter.stop();
+        super.stop();
+        try {
+            sender.close();
+        } catch (IOException e) {
+            logger.warn("failed to close the connection to graphite", e);
+        }
+    }
+
+    @Override
+    protected void publish() {
+        long timestamp = clock.wallTime() / 1000;
+
+        try {
+            for (Meter meter : getMeters()) {
+                PointNames names = pointNames.get(meter.getId(), config().namingConvention());
+                if (meter instanceof Timer) {
+                    writeTimer((Timer) meter, names, timestamp);
+                } else if (meter instanceof DistributionSummary) {
+                    writeSummary((DistributionSummary) meter, names, timestamp);
+                } else if (meter instanceof FunctionTimer) {
+                    writeFunctionTimer((FunctionTimer) meter, names, timestamp);
+                } else if (meter instanceof Counter) {
+                    writeCount(names, ((Counter) meter).count(), timestamp);
+                } else if (meter instanceof FunctionCounter) {
+                    writeCount(names, ((FunctionCounter) meter).count(), timestamp);
+                } else if (meter instanceof Gauge) {
+                    write(names.name, ((Gauge) meter).value(), timestamp);
+                } else {
+                    for (Measurement measurement : meter.measure()) {
+                        write(names.statistic(measurement.getStatistic()), measurement.getValue(), timestamp);
+                    }
+                }
+            }
+            sender.flush();
+        } catch (IOException | RuntimeException e) {
+            // caught broadly, since an exception escaping publish would stop the scheduled publisher for good
+            sender.discard();
+            logger.warn("failed to send metrics to graphite", e);
+        }
+    }
+
+    private void writeTimer(Timer timer, PointNames names, long timestamp) throws IOException {
+        HistogramSnapshot snapshot = timer.takeSnapshot(false);
+        TimeUnit durationUnits = config.durationUnits();
+        writeCount(names, snapshot.count(), timestamp);
+        write(names.suffixed("sum"), snapshot.total(durationUnits), timestamp);
+        write(names.suffixed("max"), snapshot.max(durationUnits), timestamp);
+        write(names.suffixed("mean"), snapshot.mean(durationUnits), timestamp);
+        for (ValueAtPercentile v : snapshot.percentileValues()) {
+            write(names.percentile(v.percentile()), v.value(durationUnits), timestamp);
+        }
+    }
+
+    private void writeSummary(DistributionSummary summary, PointNames names, long timestamp) throws IOException {
+        HistogramSnapshot snapshot = summary.takeSnapshot(false);
+        writeCount(names, snapshot.count(), timestamp);
+        write(names.suffixed("sum"), snapshot.total(), timestamp);
+        write(names.suffixed("max"), snapshot.max(), timestamp);
+        write(names.suffixed("mean"), snapshot.mean(), timestamp);
+        for (ValueAtPercentile v : snapshot.percentileValues()) {
+            write(names.percentile(v.percentile()), v.value(), timestamp);
+        }
     }
 
-    public void start() {
-        this.reporter.start(config.step().getSeconds(), TimeUnit.SECONDS);
+    private void writeFunctionTimer(FunctionTimer timer, PointNames names, long timestamp) throws IOException {
+        // we can't know anything about max and percentiles originating from a function timer
+        writeCount(names, timer.count(), timestamp);
+        write(names.suffixed("sum"), timer.totalTime(config.durationUnits()), timestamp);
+        write(names.suffixed("mean"), timer.mean(config.durationUnits()), timestamp);
+    }
+
+    /**
+     * Writes the number of events in the last step, and their rate per {@link GraphiteConfig#rateUnits()}.
+     */
+    private void writeCount(PointNames names, double count, long timestamp) throws IOException {
+        write(names.suffixed("count"), count, timestamp);
+        write(names.suffixed("rate"), count * config.rateUnits().toNanos(1) / config.step().toNanos(), timestamp);
+    }
+
+    private void write(String name, double value, long timestamp) throws IOException {
+        // Graphite has no representation for NaN or infinity
+        if (Double.isFinite(value)) {
+            sender.write(name, value, timestamp);
+        }
+    }
+
+    @Override
+    protected TimeUnit getBaseTimeUnit() {
+        return config.durationUnits();
+    }
+
+    /**
+     * The names of the points a meter is published as, e.g. {@code myTimer.count} and {@code myTimer.p99}.
+     */
+    private static class PointNames {
+        private final String name;
+        private final Map<String, String> bySuffix = new ConcurrentHashMap<>();
+        private final Map<Double, String> byPercentile = new ConcurrentHashMap<>();
+        private final String[] byStatistic = new String[Statistic.values().length];
+
+        PointNames(String name) {
+            this.name = name;
+        }
+
+        String suffixed(String suffix) {
+            return bySuffix.computeIfAbsent(suffix, s -> name + "." + s);
+        }
+
+        /**
+         * Named as Dropwizard's reporter did, e.g. {@code p50}, {@code p99} and {@code p999}.
+         */
+        String percentile(double percentile) {
+            return byPercentile.computeIfAbsent(percentile,
+                p -> name + ".p" + DoubleFormat.toString(p * 100).replace(".", ""));
+        }
+
+        String statistic(Statistic statistic) {
+            String statisticName = byStatistic[statistic.ordinal()];
+            if (statisticName == null) {
+                statisticName = name + "." + STATISTIC_SUFFIXES[statistic.ordinal()];
+                byStatistic[statistic.ordinal()] = statisticName;
+            }
+            return statisticName;
+        }
     }
 }
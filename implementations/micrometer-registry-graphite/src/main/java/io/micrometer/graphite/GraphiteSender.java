@@ -0,0 +1,51 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.graphite;
+
+import io.micrometer.core.instrument.util.DoubleFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes points to Graphite in one of its wire formats. Points may be buffered until {@link #flush()}.
+ */
+abstract class GraphiteSender implements Closeable {
+    /**
+     * @param name      The full hierarchical name of the point.
+     * @param value     A finite value.
+     * @param timestamp Seconds since the epoch.
+     */
+    abstract void write(String name, double value, long timestamp) throws IOException;
+
+    /**
+     * Write any buffered points.
+     */
+    abstract void flush() throws IOException;
+
+    /**
+     * Discard any points buffered by a publish that failed, so that they aren't sent along with the next one.
+     */
+    abstract void discard();
+
+    /**
+     * Appends a point in the plaintext protocol, {@code <name> <value> <timestamp>}, without its terminating newline.
+     */
+    static void appendLine(StringBuilder sb, String name, double value, long timestamp) {
+        sb.append(name).append(' ');
+        DoubleFormat.append(sb, value).append(' ').append(timestamp);
+    }
+}
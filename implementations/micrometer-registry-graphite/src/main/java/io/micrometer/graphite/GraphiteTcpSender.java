@@ -0,0 +1,151 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.graphite;
+
+import io.micrometer.core.instrument.util.DoubleFormat;
+import io.micrometer.core.lang.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes points over a TCP connection that is kept open between publishes, either as plaintext lines or as
+ * pickles. Points are written in batches, each pickled batch being a single length-prefixed pickle of a list of
+ * {@code (name, (timestamp, value))} tuples, as carbon's pickle receiver expects. If a write fails, the connection
+ * is closed and reopened on the next write. The host is resolved again each time the connection is opened, so a
+ * carbon host that wasn't resolvable, or whose address has changed, is reached once its name resolves.
+ */
+class GraphiteTcpSender extends GraphiteSender {
+    private final String host;
+    private final int port;
+    private final int connectTimeoutMillis;
+    private final boolean pickled;
+    private final int batchSize;
+    private final StringBuilder batch = new StringBuilder(4096);
+    private int batched;
+
+    @Nullable
+    private Socket socket;
+
+    @Nullable
+    private OutputStream out;
+
+    GraphiteTcpSender(String host, int port, int connectTimeoutMillis, boolean pickled, int batchSize) {
+        this.host = host;
+        this.port = port;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.pickled = pickled;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    synchronized void write(String name, double value, long timestamp) throws IOException {
+        if (pickled) {
+            if (batched == 0)
+                batch.append("(l");
+            appendPickle(batch, name, value, timestamp);
+        } else {
+            appendLine(batch, name, value, timestamp);
+            batch.append('\n');
+        }
+
+        if (++batched >= batchSize)
+            flush();
+    }
+
+    @Override
+    synchronized void flush() throws IOException {
+        if (batched == 0)
+            return;
+
+        if (pickled)
+            batch.append('.');
+        byte[] payload = batch.toString().getBytes(StandardCharsets.UTF_8);
+        batch.setLength(0);
+        batched = 0;
+
+        try {
+            OutputStream out = out();
+            if (pickled) {
+                out.write(payload.length >>> 24);
+                out.write(payload.length >>> 16);
+                out.write(payload.length >>> 8);
+                out.write(payload.length);
+            }
+            out.write(payload);
+            out.flush();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    synchronized void discard() {
+        batch.setLength(0);
+        batched = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        discard();
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing more can be done with the connection
+            }
+            socket = null;
+            out = null;
+        }
+    }
+
+    private OutputStream out() throws IOException {
+        if (out == null) {
+            Socket s = new Socket();
+            try {
+                // an unresolved address makes connect throw UnknownHostException, and is retried on the next write
+                s.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+            } catch (IOException e) {
+                s.close();
+                throw e;
+            }
+            socket = s;
+            out = new BufferedOutputStream(s.getOutputStream(), 8192);
+        }
+        return out;
+    }
+
+    /**
+     * Appends {@code (name, (timestamp, value))} to the list on top of the stack, in pickle protocol 0. The value
+     * is sent as a string, which carbon converts to a float as it does for plaintext.
+     */
+    private static void appendPickle(StringBuilder sb, String name, double value, long timestamp) {
+        sb.append("(S'");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '\'' || c == '\\')
+                sb.append('\\');
+            sb.append(c);
+        }
+        sb.append("'\n(L").append(timestamp).append("L\nS'");
+        DoubleFormat.append(sb, value).append("'\ntta");
+    }
+}
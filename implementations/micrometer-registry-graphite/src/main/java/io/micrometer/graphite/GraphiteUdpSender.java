@@ -0,0 +1,54 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.graphite;
+
+import io.micrometer.core.ipc.udp.UdpLineSender;
+
+import java.io.IOException;
+
+/**
+ * Writes plaintext lines to carbon's UDP listener, packed into datagrams by a {@link UdpLineSender}.
+ */
+class GraphiteUdpSender extends GraphiteSender {
+    private final UdpLineSender sender;
+    private final StringBuilder line = new StringBuilder(256);
+
+    GraphiteUdpSender(String host, int port, int packetSize) {
+        this.sender = new UdpLineSender(host, port, packetSize);
+    }
+
+    @Override
+    synchronized void write(String name, double value, long timestamp) throws IOException {
+        line.setLength(0);
+        appendLine(line, name, value, timestamp);
+        sender.write(line);
+    }
+
+    @Override
+    void flush() throws IOException {
+        sender.flush();
+    }
+
+    @Override
+    void discard() {
+        sender.discard();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sender.close();
+    }
+}
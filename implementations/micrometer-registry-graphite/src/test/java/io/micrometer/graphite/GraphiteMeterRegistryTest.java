@@ -15,7 +15,9 @@
  */
 package io.micrometer.graphite;
 
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.lang.Nullable;
 import io.netty.channel.ChannelOption;
 import org.junit.jupiter.api.Test;
@@ -25,12 +27,21 @@ import reactor.core.publisher.Flux;
 import reactor.ipc.netty.options.ClientOptions;
 import reactor.ipc.netty.udp.UdpServer;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import static java.util.stream.Collectors.toList;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -113,4 +124,60 @@ class GraphiteMeterRegistryTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void pointsAreNamedAfterTheMeter() throws IOException {
+        try (ServerSocket server = new ServerSocket(0)) {
+            GraphiteMeterRegistry registry = new GraphiteMeterRegistry(new GraphiteConfig() {
+                @Override
+                @Nullable
+                public String get(String k) {
+                    return null;
+                }
+
+                @Override
+                public boolean enabled() {
+                    return false;
+                }
+
+                @Override
+                public GraphiteProtocol protocol() {
+                    return GraphiteProtocol.Plaintext;
+                }
+
+                @Override
+                public int port() {
+                    return server.getLocalPort();
+                }
+            }, mockClock);
+
+            Timer timer = Timer.builder("my.timer").tags("region", "us-west").publishPercentiles(0.5, 0.999).register(registry);
+            timer.record(Duration.ofMillis(10));
+            timer.record(Duration.ofMillis(30));
+            DistributionSummary.builder("my.summary").register(registry).record(3);
+            registry.gauge("my.gauge", Double.NaN);
+            mockClock.add(Duration.ofMinutes(1));
+
+            registry.publish();
+            registry.stop();
+
+            try (Socket socket = server.accept();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                List<String> lines = reader.lines().collect(toList());
+                assertThat(lines).contains(
+                    "myTimer.region.us-west.count 2 60",
+                    "myTimer.region.us-west.rate 0.033333 60",
+                    "myTimer.region.us-west.sum 40 60",
+                    "myTimer.region.us-west.max 30 60",
+                    "myTimer.region.us-west.mean 20 60",
+                    "mySummary.count 1 60",
+                    "mySummary.sum 3 60");
+                assertThat(lines.stream().anyMatch(line -> line.startsWith("myTimer.region.us-west.p50 "))).isTrue();
+                assertThat(lines.stream().anyMatch(line -> line.startsWith("myTimer.region.us-west.p999 "))).isTrue();
+
+                // NaN can't be represented
+                assertThat(lines.stream().noneMatch(line -> line.startsWith("myGauge"))).isTrue();
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.graphite;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GraphiteTcpSenderTest {
+    private final ServerSocket server = new ServerSocket(0);
+    private final int port = server.getLocalPort();
+
+    GraphiteTcpSenderTest() throws IOException {
+    }
+
+    @AfterEach
+    void closeServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void plaintextLinesShareOneConnection() throws IOException {
+        GraphiteTcpSender sender = new GraphiteTcpSender("localhost", port, 1000, false, 2);
+        sender.write("a.b", 1.5, 100);
+        sender.write("c", 2, 100);
+        sender.write("d", -0.25, 101);
+        sender.flush();
+        sender.close();
+
+        try (Socket socket = server.accept()) {
+            assertThat(readAll(socket.getInputStream())).isEqualTo("a.b 1.5 100\nc 2 100\nd -0.25 101\n");
+        }
+    }
+
+    @Test
+    void pickledBatchesAreLengthPrefixed() throws IOException {
+        GraphiteTcpSender sender = new GraphiteTcpSender("localhost", port, 1000, true, 2);
+        sender.write("a", 1, 100);
+        sender.write("it's", 2.5, 100);
+        sender.write("c", 3, 101);
+        sender.flush();
+        sender.close();
+
+        try (Socket socket = server.accept()) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertThat(readPickle(in)).isEqualTo("(l(S'a'\n(L100L\nS'1'\ntta(S'it\\'s'\n(L100L\nS'2.5'\ntta.");
+            assertThat(readPickle(in)).isEqualTo("(l(S'c'\n(L101L\nS'3'\ntta.");
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void reconnectsAfterFailedWrite() throws IOException {
+        GraphiteTcpSender sender = new GraphiteTcpSender("localhost", port, 1000, false, 10);
+        server.close();
+
+        sender.write("a", 1, 100);
+        assertThatThrownBy(sender::flush).isInstanceOf(IOException.class);
+
+        try (ServerSocket restarted = new ServerSocket(port)) {
+            sender.write("b", 2, 100);
+            sender.flush();
+            sender.close();
+
+            try (Socket socket = restarted.accept()) {
+                // the batch that failed is dropped rather than resent
+                assertThat(readAll(socket.getInputStream())).isEqualTo("b 2 100\n");
+            }
+        }
+    }
+
+    @Test
+    void unresolvableHostFailsEachFlushWithoutStoppingTheSender() throws IOException {
+        GraphiteTcpSender sender = new GraphiteTcpSender("carbon.invalid", port, 1000, false, 10);
+
+        sender.write("a", 1, 100);
+        assertThatThrownBy(sender::flush).isInstanceOf(UnknownHostException.class);
+        sender.write("b", 2, 100);
+        assertThatThrownBy(sender::flush).isInstanceOf(UnknownHostException.class);
+        sender.close();
+    }
+
+    private static String readPickle(DataInputStream in) throws IOException {
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        byte[] buf = new byte[1024];
+        for (int n; (n = in.read(buf)) != -1; ) {
+            sb.append(new String(buf, 0, n, StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+}
@@ -95,4 +95,44 @@ public interface InfluxConfig extends StepRegistryConfig {
         String v = get(prefix() + ".compressed");
         return v == null || Boolean.valueOf(v);
     }
+
+    /**
+     * The transport used to write to Influx. The default is {@link InfluxProtocol#HTTP}. With
+     * {@link InfluxProtocol#UDP}, the database and retention policy are those configured for the
+     * UDP listener, and {@link #db()}, {@link #uri()} and credentials are ignored.
+     */
+    default InfluxProtocol protocol() {
+        String v = get(prefix() + ".protocol");
+        if (v == null)
+            return InfluxProtocol.HTTP;
+        return InfluxProtocol.valueOf(v.toUpperCase());
+    }
+
+    /**
+     * The host of the UDP listener to write to when the protocol is {@link InfluxProtocol#UDP}.
+     * The default is "localhost".
+     */
+    default String udpHost() {
+        String v = get(prefix() + ".udpHost");
+        return v == null ? "localhost" : v;
+    }
+
+    /**
+     * The port of the UDP listener to write to when the protocol is {@link InfluxProtocol#UDP}.
+     * The default is 8089, the port of InfluxDB's UDP listener.
+     */
+    default int udpPort() {
+        String v = get(prefix() + ".udpPort");
+        return v == null ? 8089 : Integer.parseInt(v);
+    }
+
+    /**
+     * The maximum size in bytes of a datagram when the protocol is {@link InfluxProtocol#UDP}.
+     * Lines are packed into datagrams up to this size. The default is 1400 bytes, which fits
+     * within the MTU of most networks. A line longer than this is sent in a datagram of its own.
+     */
+    default int udpPacketSize() {
+        String v = get(prefix() + ".udpPacketSize");
+        return v == null ? 1400 : Integer.parseInt(v);
+    }
 }
@@ -18,7 +18,11 @@ package io.micrometer.influx;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.config.NamingConvention;
 import io.micrometer.core.instrument.step.StepMeterRegistry;
+import io.micrometer.core.instrument.util.ConventionCache;
+import io.micrometer.core.instrument.util.DoubleFormat;
 import io.micrometer.core.instrument.util.MeterPartition;
+import io.micrometer.core.ipc.http.HttpSender;
+import io.micrometer.core.ipc.udp.UdpLineSender;
 import io.micrometer.core.lang.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,32 +30,48 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.*;
 import java.nio.charset.StandardCharsets;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
-import java.util.Locale;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Stream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
 /**
  * @author Jon Schneider
  */
 public class InfluxMeterRegistry extends StepMeterRegistry {
+    /**
+     * Field keys for measurements of meters without a more specific type, e.g. {@code total_time}, indexed by
+     * statistic ordinal.
+     */
+    private static final String[] STATISTIC_FIELD_KEYS = Arrays.stream(Statistic.values())
+        .map(statistic -> statistic.toString().replaceAll("(.)(\\p{Upper})", "$1_$2").toLowerCase())
+        .toArray(String[]::new);
+
     private final InfluxConfig config;
+    private final HttpSender httpSender;
+
+    @Nullable
+    private final UdpLineSender udpSender;
     private final Logger logger = LoggerFactory.getLogger(InfluxMeterRegistry.class);
-    private final DecimalFormat format = new DecimalFormat("#.####", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+    private final ConventionCache<String> measurementsAndTags = new ConventionCache<>(InfluxMeterRegistry::measurementAndTags);
+
+    /**
+     * Whether the database has been created, in which case there is no need to try again on every publish.
+     */
+    private final AtomicBoolean databaseCreated = new AtomicBoolean(false);
 
     public InfluxMeterRegistry(InfluxConfig config, Clock clock, ThreadFactory threadFactory) {
         super(config, clock);
         this.config().namingConvention(new InfluxNamingConvention(NamingConvention.snakeCase));
         this.config = config;
+        this.httpSender = httpSender("influx.http", threadFactory).build();
+        this.udpSender = config.protocol() == InfluxProtocol.UDP ?
+            new UdpLineSender(config.udpHost(), config.udpPort(), config.udpPacketSize()) : null;
         start(threadFactory);
     }
 
@@ -60,35 +80,50 @@ public class InfluxMeterRegistry extends StepMeterRegistry {
     }
 
     private void createDatabaseIfNecessary() {
-        HttpURLConnection con = null;
+        if (databaseCreated.get())
+            return;
+
         try {
             URL queryEndpoint = URI.create(config.uri() + "/query?q=" + URLEncoder.encode("CREATE DATABASE \"" + config.db() + "\"", "UTF-8")).toURL();
 
-            con = (HttpURLConnection) queryEndpoint.openConnection();
-            con.setConnectTimeout((int) config.connectTimeout().toMillis());
-            con.setReadTimeout((int) config.readTimeout().toMillis());
-            con.setRequestMethod("POST");
-
-            int status = con.getResponseCode();
+            HttpSender.Response response = httpSender.send(HttpSender.Request.post(queryEndpoint));
 
-            if (status >= 200 && status < 300) {
+            if (response.isSuccessful()) {
+                databaseCreated.set(true);
                 logger.debug("influx database {} is ready to receive metrics", config.db());
-            } else if (status >= 400) {
-                try (InputStream in = con.getErrorStream()) {
-                    logger.error("unable to create database '{}': {}", config.db(), new BufferedReader(new InputStreamReader(in))
-                        .lines().collect(joining("\n")));
-                }
+            } else if (response.code() >= 400) {
+                logger.error("unable to create database '{}': {}", config.db(), response.body());
             }
         } catch (IOException e) {
             logger.warn("unable to create database '{}'", config.db(), e);
         }
-        finally {
-            quietlyCloseUrlConnection(con);
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        httpSender.close();
+        if (udpSender != null) {
+            try {
+                udpSender.close();
+            } catch (IOException e) {
+                logger.warn("failed to close the udp channel", e);
+            }
         }
     }
 
+    /**
+     * Over HTTP, each batch's lines are written straight into its request body. A retried request writes them again,
+     * reading its meters a second time: step values are the same until the step ends and lines keep the publish's
+     * timestamp, though gauges may have moved on.
+     */
     @Override
     protected void publish() {
+        if (udpSender != null) {
+            publishUdp(udpSender);
+            return;
+        }
+
         createDatabaseIfNecessary();
 
         try {
@@ -97,200 +132,203 @@ public class InfluxMeterRegistry extends StepMeterRegistry {
                 write += "&rp=" + config.retentionPolicy();
             }
             URL influxEndpoint = URI.create(config.uri() + write).toURL();
-            HttpURLConnection con = null;
 
-            for (List<Meter> batch : MeterPartition.partition(this, config.batchSize())) {
-                try {
-                    con = (HttpURLConnection) influxEndpoint.openConnection();
-                    con.setConnectTimeout((int) config.connectTimeout().toMillis());
-                    con.setReadTimeout((int) config.readTimeout().toMillis());
-                    con.setRequestMethod("POST");
-                    con.setRequestProperty("Content-Type", "plain/text");
-                    con.setDoOutput(true);
+            long time = clock.wallTime();
+            List<List<Meter>> batches = MeterPartition.partition(this, config.batchSize());
+            List<HttpSender.Request> requests = batches.stream()
+                .map(batch -> {
+                    HttpSender.Request request = HttpSender.Request.post(influxEndpoint)
+                        .header("Content-Type", "plain/text")
+                        .gzip(config.compressed())
+                        .body(out -> writeLines(batch, time, out));
 
                     if (config.userName() != null && config.password() != null) {
                         String encoded = Base64.getEncoder().encodeToString((config.userName() + ":" +
                             config.password()).getBytes(StandardCharsets.UTF_8));
-                        con.setRequestProperty("Authorization", "Basic " + encoded);
-                    }
-
-                    List<String> bodyLines = batch.stream()
-                        .map(m -> {
-                            if (m instanceof Timer) {
-                                return writeTimer((Timer) m);
-                            }
-                            if (m instanceof DistributionSummary) {
-                                return writeSummary((DistributionSummary) m);
-                            }
-                            if (m instanceof FunctionTimer) {
-                                return writeTimer((FunctionTimer) m);
-                            }
-                            if (m instanceof TimeGauge) {
-                                return writeGauge(m.getId(), ((TimeGauge) m).value(getBaseTimeUnit()));
-                            }
-                            if (m instanceof Gauge) {
-                                return writeGauge(m.getId(), ((Gauge) m).value());
-                            }
-                            if (m instanceof FunctionCounter) {
-                                return writeCounter(m.getId(), ((FunctionCounter) m).count());
-                            }
-                            if (m instanceof Counter) {
-                                return writeCounter(m.getId(), ((Counter) m).count());
-                            }
-                            if (m instanceof LongTaskTimer) {
-                                return writeLongTaskTimer((LongTaskTimer) m);
-                            }
-                            return writeMeter(m);
-                        })
-                        .collect(toList());
-
-                    String body = String.join("\n", bodyLines);
-
-                    if (config.compressed())
-                        con.setRequestProperty("Content-Encoding", "gzip");
-
-                    try (OutputStream os = con.getOutputStream()) {
-                        if (config.compressed()) {
-                            try (GZIPOutputStream gz = new GZIPOutputStream(os)) {
-                                gz.write(body.getBytes());
-                                gz.flush();
-                            }
-                        } else {
-                            os.write(body.getBytes());
-                        }
-                        os.flush();
-                    }
-
-                    int status = con.getResponseCode();
-
-                    if (status >= 200 && status < 300) {
-                        logger.info("successfully sent {} metrics to influx", batch.size());
-                    } else if (status >= 400) {
-                        try (InputStream in = con.getErrorStream()) {
-                            logger.error("failed to send metrics: " + new BufferedReader(new InputStreamReader(in))
-                                .lines().collect(joining("\n")));
-                        }
-                    } else {
-                        logger.error("failed to send metrics: http " + status);
+                        request.header("Authorization", "Basic " + encoded);
                     }
 
-                }
-                finally {
-                    quietlyCloseUrlConnection(con);
+                    return request;
+                })
+                .collect(toList());
+
+            List<HttpSender.Outcome> outcomes = httpSender.sendAll(requests);
+            for (int i = 0; i < outcomes.size(); i++) {
+                HttpSender.Outcome outcome = outcomes.get(i);
+                HttpSender.Response response = outcome.response();
+                if (response == null) {
+                    logger.warn("failed to send metrics", outcome.error());
+                } else if (response.isSuccessful()) {
+                    logger.info("successfully sent {} metrics to influx", batches.get(i).size());
+                } else if (response.code() >= 400) {
+                    logger.error("failed to send metrics: " + response.body());
+                } else {
+                    logger.error("failed to send metrics: http " + response.code());
                 }
             }
         } catch (MalformedURLException e) {
             throw new IllegalArgumentException("Malformed InfluxDB publishing endpoint, see '" + config.prefix() + ".uri'", e);
-        } catch (IOException e) {
-            logger.warn("failed to send metrics", e);
         }
     }
 
-    private void quietlyCloseUrlConnection(@Nullable HttpURLConnection con) {
+    private void publishUdp(UdpLineSender udpSender) {
+        long time = clock.wallTime();
+        StringBuilder line = new StringBuilder(256);
+        List<Meter> meters = getMeters();
         try {
-            if(con != null) {
-                con.disconnect();
+            for (Meter m : meters) {
+                writeMeterLine(m, time, line);
+                udpSender.write(line);
+                line.setLength(0);
             }
-        }
-        catch (Exception ignore) {
+            udpSender.flush();
+            logger.debug("successfully sent {} metrics to influx over udp", meters.size());
+        } catch (IOException | RuntimeException e) {
+            // caught broadly, since an exception escaping publish would stop the scheduled publisher for good
+            udpSender.discard();
+            logger.warn("failed to send metrics", e);
         }
     }
 
-    class Field {
-        final String key;
-        final double value;
-
-        Field(String key, double value) {
-            this.key = key;
-            this.value = value;
+    private void writeLines(List<Meter> batch, long time, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        StringBuilder line = new StringBuilder(256);
+        boolean first = true;
+        for (Meter m : batch) {
+            if (!first)
+                writer.write('\n');
+            first = false;
+
+            writeMeterLine(m, time, line);
+            writer.append(line);
+            line.setLength(0);
         }
+        writer.flush();
+    }
 
-        @Override
-        public String toString() {
-            return key + "=" + format.format(value);
+    private void writeMeterLine(Meter m, long time, StringBuilder line) {
+        if (m instanceof Timer) {
+            writeTimer((Timer) m, time, line);
+        } else if (m instanceof DistributionSummary) {
+            writeSummary((DistributionSummary) m, time, line);
+        } else if (m instanceof FunctionTimer) {
+            writeTimer((FunctionTimer) m, time, line);
+        } else if (m instanceof TimeGauge) {
+            writeGauge(m.getId(), ((TimeGauge) m).value(getBaseTimeUnit()), time, line);
+        } else if (m instanceof Gauge) {
+            writeGauge(m.getId(), ((Gauge) m).value(), time, line);
+        } else if (m instanceof FunctionCounter) {
+            writeCounter(m.getId(), ((FunctionCounter) m).count(), time, line);
+        } else if (m instanceof Counter) {
+            writeCounter(m.getId(), ((Counter) m).count(), time, line);
+        } else if (m instanceof LongTaskTimer) {
+            writeLongTaskTimer((LongTaskTimer) m, time, line);
+        } else {
+            writeMeter(m, time, line);
         }
     }
 
-    private String writeMeter(Meter m) {
-        Stream.Builder<Field> fields = Stream.builder();
+    /**
+     * Appends {@code key=value}, preceded by a comma unless it is the first field of the line. Values are rounded
+     * to four fraction digits, ties to even, and always use a '.' as the decimal separator, regardless of the default
+     * locale.
+     */
+    static StringBuilder field(StringBuilder line, String key, double value) {
+        if (line.length() > 0 && line.charAt(line.length() - 1) != ' ')
+            line.append(',');
+        return DoubleFormat.append(line.append(key).append('='), value, 4);
+    }
 
+    private void writeMeter(Meter m, long time, StringBuilder line) {
+        start(m.getId(), "unknown", line);
         for (Measurement measurement : m.measure()) {
-            String fieldKey = measurement.getStatistic().toString()
-                .replaceAll("(.)(\\p{Upper})", "$1_$2").toLowerCase();
-            fields.add(new Field(fieldKey, measurement.getValue()));
+            field(line, STATISTIC_FIELD_KEYS[measurement.getStatistic().ordinal()], measurement.getValue());
         }
-
-        return influxLineProtocol(m.getId(), "unknown", fields.build(), clock.wallTime());
+        end(time, line);
     }
 
-    private String writeLongTaskTimer(LongTaskTimer timer) {
-        Stream<Field> fields = Stream.of(
-            new Field("active_tasks", timer.activeTasks()),
-            new Field("duration", timer.duration(getBaseTimeUnit()))
-        );
-
-        return influxLineProtocol(timer.getId(), "long_task_timer", fields, clock.wallTime());
+    private void writeLongTaskTimer(LongTaskTimer timer, long time, StringBuilder line) {
+        start(timer.getId(), "long_task_timer", line);
+        field(line, "active_tasks", timer.activeTasks());
+        field(line, "duration", timer.duration(getBaseTimeUnit()));
+        end(time, line);
     }
 
-    private String writeCounter(Meter.Id id, double count) {
-        return influxLineProtocol(id, "counter", Stream.of(new Field("value", count)), clock.wallTime());
+    private void writeCounter(Meter.Id id, double count, long time, StringBuilder line) {
+        start(id, "counter", line);
+        field(line, "value", count);
+        end(time, line);
     }
 
-    private String writeGauge(Meter.Id id, double value) {
-        return influxLineProtocol(id, "gauge", Stream.of(new Field("value", value)), clock.wallTime());
+    private void writeGauge(Meter.Id id, double value, long time, StringBuilder line) {
+        start(id, "gauge", line);
+        field(line, "value", value);
+        end(time, line);
     }
 
-    private String writeTimer(FunctionTimer timer) {
-        Stream<Field> fields = Stream.of(
-            new Field("sum", timer.totalTime(getBaseTimeUnit())),
-            new Field("count", timer.count()),
-            new Field("mean", timer.mean(getBaseTimeUnit()))
-        );
-
-        return influxLineProtocol(timer.getId(), "histogram", fields, clock.wallTime());
+    private void writeTimer(FunctionTimer timer, long time, StringBuilder line) {
+        start(timer.getId(), "histogram", line);
+        field(line, "sum", timer.totalTime(getBaseTimeUnit()));
+        field(line, "count", timer.count());
+        field(line, "mean", timer.mean(getBaseTimeUnit()));
+        end(time, line);
     }
 
-    private String writeTimer(Timer timer) {
+    private void writeTimer(Timer timer, long time, StringBuilder line) {
         final HistogramSnapshot snapshot = timer.takeSnapshot(false);
-        final Stream.Builder<Field> fields = Stream.builder();
 
-        fields.add(new Field("sum", snapshot.total(getBaseTimeUnit())));
-        fields.add(new Field("count", snapshot.count()));
-        fields.add(new Field("mean", snapshot.mean(getBaseTimeUnit())));
-        fields.add(new Field("upper", snapshot.max(getBaseTimeUnit())));
+        start(timer.getId(), "histogram", line);
+        field(line, "sum", snapshot.total(getBaseTimeUnit()));
+        field(line, "count", snapshot.count());
+        field(line, "mean", snapshot.mean(getBaseTimeUnit()));
+        field(line, "upper", snapshot.max(getBaseTimeUnit()));
 
         for (ValueAtPercentile v : snapshot.percentileValues()) {
-            fields.add(new Field(format.format(v.percentile()) + "_percentile", v.value(getBaseTimeUnit())));
+            percentileField(line, v.percentile(), v.value(getBaseTimeUnit()));
         }
-
-        return influxLineProtocol(timer.getId(), "histogram", fields.build(), clock.wallTime());
+        end(time, line);
     }
 
-    private String writeSummary(DistributionSummary summary) {
+    private void writeSummary(DistributionSummary summary, long time, StringBuilder line) {
         final HistogramSnapshot snapshot = summary.takeSnapshot(false);
-        final Stream.Builder<Field> fields = Stream.builder();
 
-        fields.add(new Field("sum", snapshot.total()));
-        fields.add(new Field("count", snapshot.count()));
-        fields.add(new Field("mean", snapshot.mean()));
-        fields.add(new Field("upper", snapshot.max()));
+        start(summary.getId(), "histogram", line);
+        field(line, "sum", snapshot.total());
+        field(line, "count", snapshot.count());
+        field(line, "mean", snapshot.mean());
+        field(line, "upper", snapshot.max());
 
         for (ValueAtPercentile v : snapshot.percentileValues()) {
-            fields.add(new Field(format.format(v.percentile()) + "_percentile", v.value()));
+            percentileField(line, v.percentile(), v.value());
         }
+        end(time, line);
+    }
 
-        return influxLineProtocol(summary.getId(), "histogram", fields.build(), clock.wallTime());
+    private static void percentileField(StringBuilder line, double percentile, double value) {
+        line.append(',');
+        DoubleFormat.append(line, percentile, 4).append("_percentile=");
+        DoubleFormat.append(line, value, 4);
     }
 
-    private String influxLineProtocol(Meter.Id id, String metricType, Stream<Field> fields, long time) {
-        String tags = getConventionTags(id).stream()
-            .map(t -> "," + t.getKey() + "=" + t.getValue())
-            .collect(joining(""));
+    /**
+     * Appends the measurement and tags, which are rendered once per meter and naming convention, followed by the
+     * metric type, e.g. {@code my_timer,region=us-west,metric_type=histogram }.
+     */
+    private void start(Meter.Id id, String metricType, StringBuilder line) {
+        line.append(measurementsAndTags.get(id, config().namingConvention()))
+            .append(",metric_type=").append(metricType).append(' ');
+    }
+
+    private static String measurementAndTags(Meter.Id id, NamingConvention convention) {
+        StringBuilder rendered = new StringBuilder(id.getConventionName(convention));
+        for (Tag tag : id.getConventionTags(convention)) {
+            rendered.append(',').append(tag.getKey()).append('=').append(tag.getValue());
+        }
+        return rendered.toString();
+    }
 
-        return getConventionName(id)
-            + tags + ",metric_type=" + metricType + " "
-            + fields.map(Field::toString).collect(joining(","))
-            + " " + time;
+    private static void end(long time, StringBuilder line) {
+        line.append(' ').append(time);
     }
 
     @Override
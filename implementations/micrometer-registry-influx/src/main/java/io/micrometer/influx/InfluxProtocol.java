@@ -0,0 +1,32 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.influx;
+
+/**
+ * The transport used to write line protocol to InfluxDB.
+ */
+public enum InfluxProtocol {
+    /**
+     * Write to InfluxDB's HTTP API, which acknowledges every batch.
+     */
+    HTTP,
+
+    /**
+     * Write to InfluxDB's UDP listener or Telegraf's socket listener. Points are not acknowledged, so they may be
+     * lost, but publishing never waits on the server.
+     */
+    UDP
+}
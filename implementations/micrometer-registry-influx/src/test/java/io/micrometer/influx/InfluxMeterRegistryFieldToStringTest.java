@@ -15,7 +15,6 @@
  */
 package io.micrometer.influx;
 
-import io.micrometer.core.instrument.MockClock;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
@@ -35,30 +34,34 @@ class InfluxMeterRegistryFieldToStringTest {
 	@Test
     void testWithEnglishLocale() {
 		Locale.setDefault(Locale.ENGLISH);
-		InfluxMeterRegistry instance = new InfluxMeterRegistry(k -> null, new MockClock());
-
-		InfluxMeterRegistry.Field field = instance.new Field("value", 0.01);
-
-		assertThat(field.toString()).isEqualTo("value=0.01");
+		assertThat(InfluxMeterRegistry.field(new StringBuilder(), "value", 0.01).toString()).isEqualTo("value=0.01");
 	}
 
 	@Test
     void testWithEnglishLocaleWithLargerResolution() {
 		Locale.setDefault(Locale.ENGLISH);
-		InfluxMeterRegistry instance = new InfluxMeterRegistry(k -> null, new MockClock());
-
-		InfluxMeterRegistry.Field field = instance.new Field("value", 0.00009);
+		assertThat(InfluxMeterRegistry.field(new StringBuilder(), "value", 0.00009).toString()).isEqualTo("value=0.0001");
+	}
 
-		assertThat(field.toString()).isEqualTo("value=0.0001");
+	@Test
+    void tiesAreRoundedHalfEven() {
+		assertThat(InfluxMeterRegistry.field(new StringBuilder(), "value", 0.03125).toString()).isEqualTo("value=0.0312");
+		assertThat(InfluxMeterRegistry.field(new StringBuilder(), "value", 0.09375).toString()).isEqualTo("value=0.0938");
 	}
 
 	@Test
     void testWithSwedishLocale() {
 		Locale.setDefault(new Locale("sv", "SE"));
 
-		InfluxMeterRegistry instance = new InfluxMeterRegistry(k -> null, new MockClock());
-		InfluxMeterRegistry.Field field = instance.new Field("value", 0.01);
+		assertThat(InfluxMeterRegistry.field(new StringBuilder(), "value", 0.01).toString()).isEqualTo("value=0.01");
+	}
+
+	@Test
+    void subsequentFieldsAreCommaSeparated() {
+		StringBuilder line = new StringBuilder("my_gauge,metric_type=gauge ");
+		InfluxMeterRegistry.field(line, "sum", 1.5);
+		InfluxMeterRegistry.field(line, "count", 2);
 
-		assertThat(field.toString()).isEqualTo("value=0.01");
+		assertThat(line.toString()).isEqualTo("my_gauge,metric_type=gauge sum=1.5,count=2");
 	}
 }
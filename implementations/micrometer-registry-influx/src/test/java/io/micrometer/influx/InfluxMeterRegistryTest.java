@@ -0,0 +1,205 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.influx;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.lang.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InfluxMeterRegistryTest {
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final List<String> writes = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private InfluxMeterRegistry registry;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/query", exchange -> {
+            try {
+                queries.add(exchange.getRequestURI().getQuery());
+                exchange.sendResponseHeaders(200, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.createContext("/write", exchange -> {
+            try {
+                writes.add(read(new GZIPInputStream(exchange.getRequestBody())));
+                exchange.sendResponseHeaders(204, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        registry = new InfluxMeterRegistry(new InfluxConfig() {
+            @Override
+            public String uri() {
+                return "http://127.0.0.1:" + server.getAddress().getPort();
+            }
+
+            @Override
+            public boolean enabled() {
+                return false;
+            }
+
+            @Override
+            @Nullable
+            public String get(String k) {
+                return null;
+            }
+        }, new MockClock());
+        registry.stop();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void databaseIsCreatedOnce() {
+        registry.publish();
+        registry.publish();
+
+        assertThat(queries).hasSize(1).allSatisfy(query -> assertThat(query).contains("DATABASE+\"mydb\""));
+        assertThat(writes).hasSize(2);
+    }
+
+    @Test
+    void linesAreStreamedCompressed() {
+        registry.gauge("my.gauge", 1.5);
+        registry.counter("my.counter", "region", "us-west");
+
+        registry.publish();
+
+        assertThat(writes).hasSize(1);
+        assertThat(writes.get(0).split("\n")).contains(
+            "my_gauge,metric_type=gauge value=1.5 0",
+            "my_counter,region=us-west,metric_type=counter value=0 0");
+    }
+
+    @Test
+    void writeOverUdp() throws IOException {
+        try (DatagramSocket listener = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            listener.setSoTimeout(5000);
+
+            InfluxMeterRegistry udpRegistry = new InfluxMeterRegistry(new InfluxConfig() {
+                @Override
+                public InfluxProtocol protocol() {
+                    return InfluxProtocol.UDP;
+                }
+
+                @Override
+                public String udpHost() {
+                    return InetAddress.getLoopbackAddress().getHostAddress();
+                }
+
+                @Override
+                public int udpPort() {
+                    return listener.getLocalPort();
+                }
+
+                @Override
+                public boolean enabled() {
+                    return false;
+                }
+
+                @Override
+                @Nullable
+                public String get(String k) {
+                    return null;
+                }
+            }, new MockClock());
+
+            try {
+                udpRegistry.gauge("my.gauge", 1.5);
+                udpRegistry.publish();
+
+                DatagramPacket packet = new DatagramPacket(new byte[1500], 1500);
+                listener.receive(packet);
+                assertThat(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8))
+                    .isEqualTo("my_gauge,metric_type=gauge value=1.5 0\n");
+                assertThat(queries).isEmpty();
+            } finally {
+                udpRegistry.stop();
+            }
+        }
+    }
+
+    @Test
+    void unresolvedUdpHostDoesNotFailPublish() {
+        InfluxMeterRegistry udpRegistry = new InfluxMeterRegistry(new InfluxConfig() {
+            @Override
+            public InfluxProtocol protocol() {
+                return InfluxProtocol.UDP;
+            }
+
+            @Override
+            public String udpHost() {
+                return "influx.invalid";
+            }
+
+            @Override
+            public boolean enabled() {
+                return false;
+            }
+
+            @Override
+            @Nullable
+            public String get(String k) {
+                return null;
+            }
+        }, new MockClock());
+
+        try {
+            udpRegistry.gauge("my.gauge", 1.5);
+            udpRegistry.publish();
+            udpRegistry.publish();
+        } finally {
+            udpRegistry.stop();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
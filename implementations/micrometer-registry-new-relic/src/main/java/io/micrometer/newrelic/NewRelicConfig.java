@@ -51,4 +51,12 @@ public interface NewRelicConfig extends StepRegistryConfig {
         String v = get(prefix() + ".uri");
         return (v == null) ? "https://insights-collector.newrelic.com" : v;
     }
+
+    /**
+     * @return {@code true} if metrics publish batches should be GZIP compressed, {@code false} otherwise.
+     */
+    default boolean compressed() {
+        String v = get(prefix() + ".compressed");
+        return v == null || Boolean.valueOf(v);
+    }
 }
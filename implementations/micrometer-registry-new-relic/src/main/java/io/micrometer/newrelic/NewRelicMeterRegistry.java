@@ -15,40 +15,66 @@
  */
 package io.micrometer.newrelic;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 import io.micrometer.core.annotation.Incubating;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.config.NamingConvention;
 import io.micrometer.core.instrument.step.StepMeterRegistry;
+import io.micrometer.core.instrument.util.ConventionCache;
 import io.micrometer.core.instrument.util.DoubleFormat;
+import io.micrometer.core.ipc.http.HttpSender;
 import io.micrometer.core.lang.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
-import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 
 /**
  * @author Jon Schneider
  */
 @Incubating(since = "1.0.0-rc.5")
 public class NewRelicMeterRegistry extends StepMeterRegistry {
+    private static final SerializedString EVENT_TYPE = new SerializedString("eventType");
+    private static final SerializedString STATISTIC = new SerializedString("statistic");
+    private static final SerializedString VALUE = new SerializedString("value");
+    private static final SerializedString PHI = new SerializedString("phi");
+
+    private static final SerializedString COUNT = new SerializedString("count");
+    private static final SerializedString SUM = new SerializedString("sum");
+    private static final SerializedString AVG = new SerializedString("avg");
+    private static final SerializedString MEAN = new SerializedString("mean");
+    private static final SerializedString MAX = new SerializedString("max");
+    private static final SerializedString PERCENTILE = new SerializedString("percentile");
+
+    /**
+     * Statistic attributes for measurements of meters without a more specific type, indexed by statistic ordinal.
+     */
+    private static final SerializedString[] STATISTICS = Arrays.stream(Statistic.values())
+        .map(statistic -> new SerializedString(statistic.toString()))
+        .toArray(SerializedString[]::new);
+
     private final NewRelicConfig config;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpSender httpSender;
+
+    // the sender owns the request stream, so it must not be closed once the events are written
+    private final JsonFactory jsonFactory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final ConventionCache<EventAttributes> eventAttributes = new ConventionCache<>(EventAttributes::new);
+    private final Map<Double, SerializedString> phis = new ConcurrentHashMap<>();
     private final Logger logger = LoggerFactory.getLogger(NewRelicMeterRegistry.class);
 
     public NewRelicMeterRegistry(NewRelicConfig config, Clock clock) {
@@ -59,149 +85,253 @@ public class NewRelicMeterRegistry extends StepMeterRegistry {
         super(config, clock);
         this.config = config;
         config().namingConvention(NamingConvention.camelCase);
+        this.httpSender = httpSender("newrelic.http", threadFactory).build();
         start(threadFactory);
     }
 
+    @Override
+    public void stop() {
+        super.stop();
+        httpSender.close();
+    }
+
+    /**
+     * Events are gathered into batches that hold only their values and references to each meter's pre-rendered
+     * attributes, and each batch is written straight into its request body as the request is sent. Up to
+     * {@link NewRelicConfig#numThreads()} batches are sent at once, over connections that are kept alive between
+     * publishes.
+     */
     @Override
     protected void publish() {
         try {
             URL insightsEndpoint = URI.create(config.uri() + "/v1/accounts/" + config.accountId() + "/events").toURL();
 
             // New Relic's Insights API limits us to 1000 events per call
-            final int batchSize = Math.min(config.batchSize(), 1000);
-
-            List<Event> events = new ArrayList<>();
+            EventBatches batches = new EventBatches(Math.min(config.batchSize(), 1000));
 
             for (Meter meter : getMeters()) {
-                Meter.Id id = meter.getId();
+                EventAttributes attributes = eventAttributes.get(meter.getId(), config().namingConvention());
 
                 if (meter instanceof Timer) {
                     HistogramSnapshot t = ((Timer) meter).takeSnapshot(false);
 
-                    events.add(event(id, "count", t.count()));
-                    events.add(event(id, "sum", t.total(getBaseTimeUnit())));
-                    events.add(event(id, "avg", t.mean(getBaseTimeUnit())));
-                    events.add(event(id, "max", t.max(getBaseTimeUnit())));
+                    batches.addCount(attributes, COUNT, t.count());
+                    batches.add(attributes, SUM, t.total(getBaseTimeUnit()));
+                    batches.add(attributes, AVG, t.mean(getBaseTimeUnit()));
+                    batches.add(attributes, MAX, t.max(getBaseTimeUnit()));
 
                     for (ValueAtPercentile valueAtPercentile : t.percentileValues()) {
-                        events.add(event(id, "percentile", valueAtPercentile.value(getBaseTimeUnit()), "phi",
-                            DoubleFormat.toString(valueAtPercentile.percentile())));
+                        batches.add(attributes, PERCENTILE, valueAtPercentile.value(getBaseTimeUnit()), phi(valueAtPercentile.percentile()));
                     }
                 } else if (meter instanceof FunctionTimer) {
                     FunctionTimer t = (FunctionTimer) meter;
-                    events.add(event(id, "count", t.count()));
-                    events.add(event(id, "sum", t.count()));
-                    events.add(event(id, "mean", t.mean(getBaseTimeUnit())));
+                    batches.add(attributes, COUNT, t.count());
+                    batches.add(attributes, SUM, t.totalTime(getBaseTimeUnit()));
+                    batches.add(attributes, MEAN, t.mean(getBaseTimeUnit()));
                 } else if (meter instanceof DistributionSummary) {
                     HistogramSnapshot t = ((DistributionSummary) meter).takeSnapshot(false);
 
-                    events.add(event(id, "count", t.count()));
-                    events.add(event(id, "sum", t.total()));
-                    events.add(event(id, "avg", t.mean()));
-                    events.add(event(id, "max", t.max()));
+                    batches.addCount(attributes, COUNT, t.count());
+                    batches.add(attributes, SUM, t.total());
+                    batches.add(attributes, AVG, t.mean());
+                    batches.add(attributes, MAX, t.max());
 
                     for (ValueAtPercentile valueAtPercentile : t.percentileValues()) {
-                        events.add(event(id, "percentile", valueAtPercentile.value(), "phi",
-                            DoubleFormat.toString(valueAtPercentile.percentile())));
+                        batches.add(attributes, PERCENTILE, valueAtPercentile.value(), phi(valueAtPercentile.percentile()));
                     }
                 } else {
                     for (Measurement measurement : meter.measure()) {
-                        events.add(event(id, measurement.getStatistic().toString(), measurement.getValue()));
+                        batches.add(attributes, STATISTICS[measurement.getStatistic().ordinal()], measurement.getValue());
                     }
                 }
-
-                if (events.size() > batchSize) {
-                    sendEvents(insightsEndpoint, events.subList(0, batchSize));
-                    events = new ArrayList<>(events.subList(batchSize, events.size()));
-                } else if (events.size() == batchSize) {
-                    sendEvents(insightsEndpoint, events);
-                    events = new ArrayList<>();
-                }
             }
 
-            // drain the remaining event list
-            if (!events.isEmpty()) {
-                sendEvents(insightsEndpoint, events);
-            }
+            sendEvents(insightsEndpoint, batches.batches);
         } catch (MalformedURLException e) {
             throw new IllegalArgumentException("Malformed New Relic insights endpoint, see '" + config.prefix() + ".uri'", e);
         }
     }
 
-    private Event event(Meter.Id id, String statistic, Number value, String... additionalTags) {
-        Event event = new Event();
-
-        event.put("eventType", getConventionName(id));
-        event.put("statistic", statistic);
-        event.put("value", value);
+    private SerializedString phi(double percentile) {
+        return phis.computeIfAbsent(percentile, p -> new SerializedString(DoubleFormat.toString(p)));
+    }
 
-        for (int i = 0; i < additionalTags.length; i += 2) {
-            event.put(additionalTags[i], additionalTags[i + 1]);
+    private void sendEvents(URL insightsEndpoint, List<EventBatch> batches) {
+        List<HttpSender.Request> requests = batches.stream()
+            .map(batch -> HttpSender.Request.post(insightsEndpoint)
+                .header("Content-Type", "application/json")
+                .header("X-Insert-Key", config.apiKey())
+                .gzip(config.compressed())
+                .body(out -> {
+                    try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                        batch.writeTo(generator);
+                    }
+                }))
+            .collect(toList());
+
+        List<HttpSender.Outcome> outcomes = httpSender.sendAll(requests);
+        for (int i = 0; i < outcomes.size(); i++) {
+            HttpSender.Outcome outcome = outcomes.get(i);
+            HttpSender.Response response = outcome.response();
+            if (response == null) {
+                logger.warn("failed to send metrics", outcome.error());
+            } else if (response.isSuccessful()) {
+                logger.info("successfully sent {} events to New Relic", batches.get(i).size);
+            } else if (response.code() >= 400) {
+                logger.error("failed to send metrics: " + response.body());
+            } else {
+                logger.error("failed to send metrics: http " + response.code());
+            }
         }
+    }
 
-        id.getTags().forEach(t -> event.put(t.getKey(), t.getValue()));
-
-        return event;
+    @Override
+    protected TimeUnit getBaseTimeUnit() {
+        return TimeUnit.SECONDS;
     }
 
-    // TODO HTTP/1.1 Persistent connections are supported
-    private void sendEvents(URL insightsEndpoint, List<Event> events) {
+    /**
+     * The event type and tag attributes shared by every event of a meter, rendered once per naming convention.
+     * A tag whose key is also the name of one of the event's own attributes replaces that attribute, so that no
+     * event is written with a duplicate key.
+     */
+    private static class EventAttributes {
+        private final SerializedString eventType;
+        private final SerializedString[] tagKeys;
+        private final SerializedString[] tagValues;
+        private final boolean tagsEventType;
+        private final boolean tagsStatistic;
+        private final boolean tagsValue;
+        private final boolean tagsPhi;
+
+        EventAttributes(Meter.Id id, NamingConvention convention) {
+            this.eventType = new SerializedString(id.getConventionName(convention));
+
+            List<SerializedString> keys = new ArrayList<>();
+            List<SerializedString> values = new ArrayList<>();
+            for (Tag tag : id.getTags()) {
+                keys.add(new SerializedString(tag.getKey()));
+                values.add(new SerializedString(tag.getValue()));
+            }
+            this.tagKeys = keys.toArray(new SerializedString[0]);
+            this.tagValues = values.toArray(new SerializedString[0]);
 
-        HttpURLConnection con = null;
+            this.tagsEventType = hasTag(id, EVENT_TYPE);
+            this.tagsStatistic = hasTag(id, STATISTIC);
+            this.tagsValue = hasTag(id, VALUE);
+            this.tagsPhi = hasTag(id, PHI);
+        }
 
-        try {
-            con = (HttpURLConnection) insightsEndpoint.openConnection();
-            con.setConnectTimeout((int) config.connectTimeout().toMillis());
-            con.setReadTimeout((int) config.readTimeout().toMillis());
-            con.setRequestMethod("POST");
-            con.setRequestProperty("Content-Type", "application/json");
-            con.setRequestProperty("X-Insert-Key", config.apiKey());
+        private static boolean hasTag(Meter.Id id, SerializedString key) {
+            return id.getTag(key.getValue()) != null;
+        }
+    }
 
-            con.setDoOutput(true);
+    /**
+     * Starts a new batch whenever the last one is full.
+     */
+    private static class EventBatches {
+        private final int batchSize;
+        private final List<EventBatch> batches = new ArrayList<>();
 
-            String body = mapper.writeValueAsString(events);
+        @Nullable
+        private EventBatch current;
 
-            try (OutputStream os = con.getOutputStream()) {
-                os.write(body.getBytes());
-                os.flush();
-            }
+        EventBatches(int batchSize) {
+            this.batchSize = batchSize;
+        }
 
-            int status = con.getResponseCode();
+        void add(EventAttributes attributes, SerializedString statistic, double value) {
+            add(attributes, statistic, value, null);
+        }
 
-            if (status >= 200 && status < 300) {
-                logger.info("successfully sent {} events to New Relic", events.size());
-            } else if (status >= 400) {
-                try (InputStream in = con.getErrorStream()) {
-                    logger.error("failed to send metrics: " + new BufferedReader(new InputStreamReader(in))
-                        .lines().collect(joining("\n")));
-                }
-            } else {
-                logger.error("failed to send metrics: http " + status);
-            }
+        void add(EventAttributes attributes, SerializedString statistic, double value, @Nullable SerializedString phi) {
+            // JSON has no representation for NaN or infinity
+            if (!Double.isFinite(value))
+                return;
 
-        } catch (Throwable e) {
-            logger.warn("failed to send metrics", e);
+            batch().add(attributes, statistic, Double.doubleToRawLongBits(value), false, phi);
         }
-        finally {
-            quietlyCloseUrlConnection(con);
+
+        void addCount(EventAttributes attributes, SerializedString statistic, long count) {
+            batch().add(attributes, statistic, count, true, null);
         }
-    }
 
-    private void quietlyCloseUrlConnection(@Nullable HttpURLConnection con) {
-        try {
-            if(con != null) {
-                con.disconnect();
+        private EventBatch batch() {
+            EventBatch batch = current;
+            if (batch == null || batch.size == batchSize) {
+                batch = new EventBatch(batchSize);
+                batches.add(batch);
+                current = batch;
             }
-        }
-        catch (Exception ignore) {
+            return batch;
         }
     }
 
-    @Override
-    protected TimeUnit getBaseTimeUnit() {
-        return TimeUnit.SECONDS;
-    }
+    /**
+     * Events held as parallel arrays, so that gathering them allocates nothing per event.
+     */
+    private static class EventBatch {
+        private final EventAttributes[] attributes;
+        private final SerializedString[] statistics;
+        private final SerializedString[] phis;
+
+        /**
+         * Counts as they are, and other values as the bits of a double.
+         */
+        private final long[] values;
+        private final boolean[] counts;
+        private int size;
+
+        EventBatch(int capacity) {
+            this.attributes = new EventAttributes[capacity];
+            this.statistics = new SerializedString[capacity];
+            this.phis = new SerializedString[capacity];
+            this.values = new long[capacity];
+            this.counts = new boolean[capacity];
+        }
+
+        void add(EventAttributes attributes, SerializedString statistic, long value, boolean count, @Nullable SerializedString phi) {
+            this.attributes[size] = attributes;
+            this.statistics[size] = statistic;
+            this.phis[size] = phi;
+            this.values[size] = value;
+            this.counts[size] = count;
+            size++;
+        }
+
+        void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeStartArray();
+            for (int i = 0; i < size; i++) {
+                EventAttributes a = attributes[i];
 
-    private class Event extends HashMap<String, Object> {
+                generator.writeStartObject();
+                if (!a.tagsEventType) {
+                    generator.writeFieldName(EVENT_TYPE);
+                    generator.writeString(a.eventType);
+                }
+                if (!a.tagsStatistic) {
+                    generator.writeFieldName(STATISTIC);
+                    generator.writeString(statistics[i]);
+                }
+                if (!a.tagsValue) {
+                    generator.writeFieldName(VALUE);
+                    if (counts[i])
+                        generator.writeNumber(values[i]);
+                    else
+                        generator.writeNumber(Double.longBitsToDouble(values[i]));
+                }
+                if (phis[i] != null && !a.tagsPhi) {
+                    generator.writeFieldName(PHI);
+                    generator.writeString(phis[i]);
+                }
+                for (int t = 0; t < a.tagKeys.length; t++) {
+                    generator.writeFieldName(a.tagKeys[t]);
+                    generator.writeString(a.tagValues[t]);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
     }
 }
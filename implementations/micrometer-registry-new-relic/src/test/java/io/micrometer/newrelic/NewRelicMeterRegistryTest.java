@@ -0,0 +1,179 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.newrelic;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NewRelicMeterRegistryTest {
+    private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+    private final ObjectMapper mapper = new ObjectMapper().enable(DeserializationFeature.FAIL_ON_READING_DUP_TREE_KEY);
+    private final MockClock clock = new MockClock();
+
+    private HttpServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/accounts/12345/events", exchange -> {
+            try (InputStream body = new GZIPInputStream(exchange.getRequestBody())) {
+                requests.add(mapper.readTree(body));
+                exchange.sendResponseHeaders(200, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void eventsCarryTheMetersAttributes() {
+        NewRelicMeterRegistry registry = registry(1000);
+        Timer timer = Timer.builder("my.timer").tags("region", "us-west").publishPercentiles(0.5).register(registry);
+        timer.record(Duration.ofSeconds(2));
+        registry.gauge("my.gauge", Double.NaN);
+        clock.add(Duration.ofMinutes(1));
+
+        registry.publish();
+
+        assertThat(requests).hasSize(1);
+        List<String> timerEvents = new ArrayList<>();
+        for (JsonNode event : requests.get(0)) {
+            assertThat(event.get("eventType").asText()).isNotEqualTo("myGauge");
+            if (event.get("eventType").asText().equals("myTimer")) {
+                assertThat(event.get("region").asText()).isEqualTo("us-west");
+                timerEvents.add(event.get("statistic").asText() + "=" + event.get("value").asDouble() +
+                    (event.has("phi") ? " phi=" + event.get("phi").asText() : ""));
+            }
+        }
+
+        assertThat(timerEvents).contains("count=1.0", "sum=2.0", "avg=2.0", "max=2.0");
+        assertThat(timerEvents.stream().anyMatch(e -> e.startsWith("percentile=") && e.endsWith(" phi=0.5"))).isTrue();
+    }
+
+    @Test
+    void histogramCountsAreWrittenAsIntegers() {
+        NewRelicMeterRegistry registry = registry(1000);
+        Timer timer = Timer.builder("my.timer").register(registry);
+        timer.record(Duration.ofSeconds(1));
+        timer.record(Duration.ofSeconds(3));
+        clock.add(Duration.ofMinutes(1));
+
+        registry.publish();
+
+        for (JsonNode event : requests.get(0)) {
+            JsonNode value = event.get("value");
+            if (event.get("statistic").asText().equals("count")) {
+                assertThat(value.isIntegralNumber()).isTrue();
+                assertThat(value.asLong()).isEqualTo(2);
+            } else {
+                assertThat(value.isFloatingPointNumber()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void tagsReplaceEventAttributesOfTheSameName() {
+        NewRelicMeterRegistry registry = registry(1000);
+        Counter.builder("my.counter").tags("statistic", "custom", "region", "us-west").register(registry).increment();
+        clock.add(Duration.ofMinutes(1));
+
+        // a duplicate key would fail to parse
+        registry.publish();
+
+        assertThat(requests).hasSize(1);
+        JsonNode event = requests.get(0).get(0);
+        assertThat(event.get("eventType").asText()).isEqualTo("myCounter");
+        assertThat(event.get("statistic").asText()).isEqualTo("custom");
+        assertThat(event.get("value").asDouble()).isEqualTo(1.0);
+        assertThat(event.get("region").asText()).isEqualTo("us-west");
+    }
+
+    @Test
+    void eventsAreSplitIntoBatches() {
+        NewRelicMeterRegistry registry = registry(2);
+        registry.gauge("a", 1);
+        registry.gauge("b", 2);
+        registry.gauge("c", 3);
+
+        registry.publish();
+
+        int events = 0;
+        for (JsonNode batch : requests) {
+            assertThat(batch.size()).isLessThanOrEqualTo(2);
+            events += batch.size();
+        }
+        assertThat(events).isEqualTo(3);
+        assertThat(requests.size()).isGreaterThanOrEqualTo(2);
+    }
+
+    private NewRelicMeterRegistry registry(int batchSize) {
+        NewRelicMeterRegistry registry = new NewRelicMeterRegistry(new NewRelicConfig() {
+            @Override
+            public String uri() {
+                return "http://127.0.0.1:" + server.getAddress().getPort();
+            }
+
+            @Override
+            public String accountId() {
+                return "12345";
+            }
+
+            @Override
+            public String apiKey() {
+                return "key";
+            }
+
+            @Override
+            public int batchSize() {
+                return batchSize;
+            }
+
+            @Override
+            @Nullable
+            public String get(String k) {
+                return null;
+            }
+        }, clock);
+        registry.stop();
+        return registry;
+    }
+}
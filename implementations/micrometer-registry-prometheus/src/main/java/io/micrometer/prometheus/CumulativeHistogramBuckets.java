@@ -0,0 +1,87 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.prometheus;
+
+import io.micrometer.core.instrument.CountAtValue;
+import io.micrometer.core.instrument.histogram.HistogramConfig;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations into the fixed set of buckets given by {@link HistogramConfig#getHistogramBuckets(boolean)},
+ * over the lifetime of the meter. Prometheus requires cumulative {@code _bucket} counts that never roll over, which
+ * we can serve with one striped counter per bucket instead of maintaining a second, never-expiring HdrHistogram.
+ */
+final class CumulativeHistogramBuckets {
+    private static final CountAtValue[] EMPTY = new CountAtValue[0];
+
+    private final long[] buckets;
+    private final LongAdder[] counts;
+
+    CumulativeHistogramBuckets(HistogramConfig histogramConfig) {
+        this.buckets = histogramConfig.isPublishingHistogram() ?
+            histogramConfig.getHistogramBuckets(true).stream().mapToLong(Long::longValue).toArray() :
+            new long[0];
+        this.counts = new LongAdder[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void record(long value) {
+        if (buckets.length == 0)
+            return;
+        int i = Arrays.binarySearch(buckets, value);
+        increment(i < 0 ? -i - 1 : i);
+    }
+
+    void record(double value) {
+        if (buckets.length == 0)
+            return;
+
+        // index of the smallest bucket that is greater than or equal to the value
+        int low = 0;
+        int high = buckets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buckets[mid] < value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        increment(low);
+    }
+
+    private void increment(int bucket) {
+        // values beyond the largest bucket are only reflected in the +Inf bucket, which is the total count
+        if (bucket < counts.length)
+            counts[bucket].increment();
+    }
+
+    CountAtValue[] snapshot() {
+        if (buckets.length == 0)
+            return EMPTY;
+
+        CountAtValue[] snapshot = new CountAtValue[buckets.length];
+        long cumulativeCount = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulativeCount += counts[i].sum();
+            snapshot[i] = CountAtValue.of(buckets[i], cumulativeCount);
+        }
+        return snapshot;
+    }
+}
@@ -47,4 +47,46 @@ public interface PrometheusConfig extends MeterRegistryConfig {
         String v = get(prefix() + ".step");
         return v == null ? Duration.ofMinutes(1) : Duration.parse(v);
     }
+
+    /**
+     * The address that {@link PrometheusScrapeServer} binds to. The default is the wildcard address.
+     */
+    default String host() {
+        String v = get(prefix() + ".host");
+        return v == null ? "0.0.0.0" : v;
+    }
+
+    /**
+     * The port that {@link PrometheusScrapeServer} listens on. Use {@code 0} to bind to an ephemeral port.
+     */
+    default int port() {
+        String v = get(prefix() + ".port");
+        return v == null ? 9464 : Integer.parseInt(v);
+    }
+
+    /**
+     * The context path under which {@link PrometheusScrapeServer} serves the scrape payload.
+     */
+    default String path() {
+        String v = get(prefix() + ".path");
+        return v == null ? "/prometheus" : v;
+    }
+
+    /**
+     * The number of worker threads {@link PrometheusScrapeServer} uses to render scrapes. Scrapes that arrive while
+     * all workers are busy and the backlog is full are rendered on the accepting thread, which slows down
+     * acceptance of new connections rather than growing an unbounded queue.
+     */
+    default int serverThreads() {
+        String v = get(prefix() + ".serverThreads");
+        return v == null ? 2 : Integer.parseInt(v);
+    }
+
+    /**
+     * The maximum number of scrapes waiting for a free worker thread in {@link PrometheusScrapeServer}.
+     */
+    default int serverBacklog() {
+        String v = get(prefix() + ".serverBacklog");
+        return v == null ? 16 : Integer.parseInt(v);
+    }
 }
@@ -19,12 +19,10 @@ import io.micrometer.core.instrument.AbstractDistributionSummary;
 import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.CountAtValue;
 import io.micrometer.core.instrument.histogram.HistogramConfig;
-import io.micrometer.core.instrument.histogram.TimeWindowHistogram;
 import io.micrometer.core.instrument.util.MeterEquivalence;
 import io.micrometer.core.instrument.util.TimeDecayingMax;
 import io.micrometer.core.lang.Nullable;
 
-import java.time.Duration;
 import java.util.concurrent.atomic.DoubleAdder;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -32,17 +30,12 @@ public class PrometheusDistributionSummary extends AbstractDistributionSummary {
     private LongAdder count = new LongAdder();
     private DoubleAdder amount = new DoubleAdder();
     private TimeDecayingMax max;
-    private final TimeWindowHistogram percentilesHistogram;
+    private final CumulativeHistogramBuckets percentileBuckets;
 
     PrometheusDistributionSummary(Id id, Clock clock, HistogramConfig histogramConfig) {
         super(id, clock, histogramConfig);
         this.max = new TimeDecayingMax(clock, histogramConfig);
-        this.percentilesHistogram = new TimeWindowHistogram(clock,
-            HistogramConfig.builder()
-                .histogramExpiry(Duration.ofDays(1825)) // effectively never roll over
-                .histogramBufferLength(1)
-                .build()
-                .merge(histogramConfig));
+        this.percentileBuckets = new CumulativeHistogramBuckets(histogramConfig);
     }
 
     @Override
@@ -50,7 +43,7 @@ public class PrometheusDistributionSummary extends AbstractDistributionSummary {
         count.increment();
         this.amount.add(amount);
         max.record(amount);
-        percentilesHistogram.recordDouble(amount);
+        percentileBuckets.record(amount);
     }
 
     @Override
@@ -84,6 +77,6 @@ public class PrometheusDistributionSummary extends AbstractDistributionSummary {
      * rolling histogram. Prometheus requires a histogram that accumulates values over the lifetime of the app.
      */
     public CountAtValue[] percentileBuckets() {
-        return percentilesHistogram.takeSnapshot(0, 0, 0, true).histogramCounts();
+        return percentileBuckets.snapshot();
     }
 }
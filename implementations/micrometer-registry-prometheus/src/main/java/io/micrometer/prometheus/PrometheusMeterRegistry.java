@@ -70,7 +70,7 @@ public class PrometheusMeterRegistry extends MeterRegistry {
     public String scrape() {
         Writer writer = new StringWriter();
         try {
-            TextFormat.write004(writer, registry.metricFamilySamples());
+            scrape(writer);
         } catch (IOException e) {
             // This actually never happens since StringWriter::write() doesn't throw any IOException
             throw new RuntimeException(e);
@@ -78,6 +78,16 @@ public class PrometheusMeterRegistry extends MeterRegistry {
         return writer.toString();
     }
 
+    /**
+     * Write the scrape payload directly to {@code writer}, without materializing it as a {@link String} first.
+     *
+     * @param writer Destination of the text exposition format.
+     * @throws IOException if writing to {@code writer} fails.
+     */
+    public void scrape(Writer writer) throws IOException {
+        TextFormat.write004(writer, registry.metricFamilySamples());
+    }
+
     @Override
     public Counter newCounter(Meter.Id id) {
         MicrometerCollector collector = collectorByName(id, Collector.Type.COUNTER);
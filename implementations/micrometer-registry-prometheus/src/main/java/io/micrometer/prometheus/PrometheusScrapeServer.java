@@ -0,0 +1,159 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.prometheus;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.lang.Nullable;
+import io.prometheus.client.exporter.common.TextFormat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A minimal HTTP server exposing a {@link PrometheusMeterRegistry} for scraping, for applications that don't
+ * otherwise run a servlet container. Built on the JDK's own HTTP server, so connections are kept alive between
+ * scrapes. The exposition is streamed to the socket (gzip-compressed when the scraper accepts it) rather than
+ * being rendered to a {@link String} first.
+ */
+public class PrometheusScrapeServer {
+    private final PrometheusMeterRegistry registry;
+    private final PrometheusConfig config;
+    private final ThreadFactory threadFactory;
+
+    @Nullable
+    private HttpServer server;
+
+    @Nullable
+    private ExecutorService workers;
+
+    public PrometheusScrapeServer(PrometheusMeterRegistry registry, PrometheusConfig config) {
+        this(registry, config, Executors.defaultThreadFactory());
+    }
+
+    public PrometheusScrapeServer(PrometheusMeterRegistry registry, PrometheusConfig config, ThreadFactory threadFactory) {
+        this.registry = registry;
+        this.config = config;
+        this.threadFactory = threadFactory;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null)
+            stop();
+
+        workers = new ThreadPoolExecutor(config.serverThreads(), config.serverThreads(), 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(config.serverBacklog()), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        server = HttpServer.create(new InetSocketAddress(config.host(), config.port()), 0);
+        server.createContext(config.path(), this::scrape);
+        server.setExecutor(workers);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+    }
+
+    /**
+     * @return The port the server is bound to, which differs from {@link PrometheusConfig#port()} when it is {@code 0}.
+     * @throws IllegalStateException if the server hasn't been started.
+     */
+    public synchronized int getPort() {
+        if (server == null)
+            throw new IllegalStateException("The scrape server has not been started");
+        return server.getAddress().getPort();
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            boolean gzip = acceptsGzip(exchange.getRequestHeaders().get("Accept-Encoding"));
+            exchange.getResponseHeaders().set("Content-Type", TextFormat.CONTENT_TYPE_004);
+            if (gzip)
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+
+            if ("HEAD".equalsIgnoreCase(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            // a length of 0 selects chunked transfer encoding, so the payload never has to be buffered in full
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            if (gzip)
+                body = new GZIPOutputStream(body, 8192);
+
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 8192)) {
+                registry.scrape(writer);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @param encodings The values of the request's {@code Accept-Encoding} headers.
+     * @return Whether gzip is among the accepted codings, with a quality other than {@code q=0}.
+     */
+    static boolean acceptsGzip(@Nullable List<String> encodings) {
+        if (encodings == null)
+            return false;
+        for (String encoding : encodings) {
+            for (String token : encoding.split(",")) {
+                String[] parts = token.split(";");
+                if (!parts[0].trim().toLowerCase(Locale.ROOT).equals("gzip"))
+                    continue;
+
+                boolean refused = false;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim().toLowerCase(Locale.ROOT);
+                    if (param.startsWith("q=")) {
+                        try {
+                            refused = Double.parseDouble(param.substring(2).trim()) <= 0;
+                        } catch (NumberFormatException e) {
+                            // a malformed quality is ignored, as if gzip were accepted without one
+                        }
+                    }
+                }
+                if (!refused)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
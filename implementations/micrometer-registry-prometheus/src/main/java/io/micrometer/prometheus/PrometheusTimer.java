@@ -20,12 +20,10 @@ import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.CountAtValue;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.histogram.HistogramConfig;
-import io.micrometer.core.instrument.histogram.TimeWindowLatencyHistogram;
 import io.micrometer.core.instrument.histogram.pause.PauseDetector;
 import io.micrometer.core.instrument.util.TimeDecayingMax;
 import io.micrometer.core.instrument.util.TimeUtils;
 
-import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -33,18 +31,12 @@ public class PrometheusTimer extends AbstractTimer implements Timer {
     private final LongAdder count = new LongAdder();
     private final LongAdder totalTime = new LongAdder();
     private final TimeDecayingMax max;
-    private final TimeWindowLatencyHistogram percentilesHistogram;
+    private final CumulativeHistogramBuckets percentileBuckets;
 
     PrometheusTimer(Id id, Clock clock, HistogramConfig histogramConfig, PauseDetector pauseDetector) {
         super(id, clock, histogramConfig, pauseDetector, TimeUnit.SECONDS);
         this.max = new TimeDecayingMax(clock, histogramConfig);
-
-        this.percentilesHistogram = new TimeWindowLatencyHistogram(clock,
-            HistogramConfig.builder()
-                .histogramExpiry(Duration.ofDays(1825)) // effectively never roll over
-                .histogramBufferLength(1)
-                .build()
-                .merge(histogramConfig), pauseDetector);
+        this.percentileBuckets = new CumulativeHistogramBuckets(histogramConfig);
     }
 
     @Override
@@ -52,7 +44,7 @@ public class PrometheusTimer extends AbstractTimer implements Timer {
         count.increment();
         long nanoAmount = TimeUnit.NANOSECONDS.convert(amount, unit);
         totalTime.add(nanoAmount);
-        percentilesHistogram.recordLong(nanoAmount);
+        percentileBuckets.record(nanoAmount);
         max.record(nanoAmount, TimeUnit.NANOSECONDS);
     }
 
@@ -74,8 +66,13 @@ public class PrometheusTimer extends AbstractTimer implements Timer {
     /**
      * For Prometheus we cannot use the histogram counts from HistogramSnapshot, as it is based on a
      * rolling histogram. Prometheus requires a histogram that accumulates values over the lifetime of the app.
+     * <p>
+     * Buckets count only the samples actually recorded. Unlike the timer's percentiles, they don't include the
+     * samples the {@link PauseDetector} adds to compensate for coordinated omission, so under long pauses
+     * {@code histogram_quantile} over these buckets may be lower than the timer's own percentiles. In return, the
+     * largest bucket never counts more samples than {@link #count()}.
      */
     public CountAtValue[] percentileBuckets() {
-        return percentilesHistogram.takeSnapshot(0, 0, 0, true).histogramCounts();
+        return percentileBuckets.snapshot();
     }
 }
@@ -203,6 +203,23 @@ class PrometheusMeterRegistryTest {
             .contains("s1_bucket{le=\"100.0\",} 1.0");
     }
 
+    @Test
+    void percentileBucketsAreCumulative() {
+        DistributionSummary s = DistributionSummary.builder("s1")
+            .sla(10, 20)
+            .register(registry);
+
+        s.record(5);
+        s.record(10);
+        s.record(15);
+        s.record(25);
+
+        assertThat(registry.scrape())
+            .contains("s1_bucket{le=\"10.0\",} 2.0")
+            .contains("s1_bucket{le=\"20.0\",} 3.0")
+            .contains("s1_count 4.0");
+    }
+
     @Issue("#247")
     @Test
     void distributionPercentileBuckets() {
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.prometheus;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.lang.Nullable;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrometheusScrapeServerTest {
+    private PrometheusConfig config = new PrometheusConfig() {
+        @Override
+        public String host() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public int port() {
+            return 0;
+        }
+
+        @Override
+        @Nullable
+        public String get(String k) {
+            return null;
+        }
+    };
+
+    private PrometheusMeterRegistry registry = new PrometheusMeterRegistry(config, new CollectorRegistry(), new MockClock());
+    private PrometheusScrapeServer server = new PrometheusScrapeServer(registry, config);
+
+    @BeforeEach
+    void start() throws IOException {
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void scrape() throws IOException {
+        registry.counter("my.counter").increment();
+
+        HttpURLConnection con = open();
+        assertThat(con.getResponseCode()).isEqualTo(200);
+        assertThat(con.getContentType()).startsWith("text/plain");
+        assertThat(read(con.getInputStream())).contains("my_counter_total 1.0");
+    }
+
+    @Test
+    void gzipWhenAccepted() throws IOException {
+        registry.counter("my.counter").increment();
+
+        HttpURLConnection con = open();
+        con.setRequestProperty("Accept-Encoding", "gzip");
+        assertThat(con.getHeaderField("Content-Encoding")).isEqualTo("gzip");
+        assertThat(read(new GZIPInputStream(con.getInputStream()))).isEqualTo(registry.scrape());
+    }
+
+    @Test
+    void notGzippedWhenRefused() throws IOException {
+        HttpURLConnection con = open();
+        con.setRequestProperty("Accept-Encoding", "gzip;q=0, identity");
+        assertThat(con.getHeaderField("Content-Encoding")).isNull();
+        assertThat(read(con.getInputStream())).isEqualTo(registry.scrape());
+    }
+
+    @Test
+    void acceptsGzip() {
+        assertThat(PrometheusScrapeServer.acceptsGzip(null)).isFalse();
+        assertThat(PrometheusScrapeServer.acceptsGzip(singletonList("deflate, GZIP"))).isTrue();
+        assertThat(PrometheusScrapeServer.acceptsGzip(singletonList("gzip;q=0.5"))).isTrue();
+        assertThat(PrometheusScrapeServer.acceptsGzip(asList("br", "gzip ; Q=1.0"))).isTrue();
+        assertThat(PrometheusScrapeServer.acceptsGzip(singletonList("gzip;q=0"))).isFalse();
+        assertThat(PrometheusScrapeServer.acceptsGzip(singletonList("gzip;q=0.000"))).isFalse();
+        assertThat(PrometheusScrapeServer.acceptsGzip(singletonList("gzipped, x-gzip2"))).isFalse();
+    }
+
+    @Test
+    void acceptsGzipRegardlessOfDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertThat(PrometheusScrapeServer.acceptsGzip(singletonList("GZIP"))).isTrue();
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void onlyGetAndHeadAreAllowed() throws IOException {
+        HttpURLConnection con = open();
+        con.setRequestMethod("POST");
+        assertThat(con.getResponseCode()).isEqualTo(405);
+    }
+
+    private HttpURLConnection open() throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + config.path()).openConnection();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -43,6 +43,16 @@ public interface SignalFxConfig extends StepRegistryConfig {
         return v == null ? "https://ingest.signalfx.com" : v;
     }
 
+    /**
+     * The maximum size in bytes of the data points sent in a single request. A publish is split into as many
+     * requests as needed to stay within it, each of which also holds at most {@link #batchSize()} data points.
+     * The default is 1MB.
+     */
+    default int maxRequestSize() {
+        String v = get(prefix() + ".maxRequestSize");
+        return v == null ? 1024 * 1024 : Integer.parseInt(v);
+    }
+
     @Override
     default Duration step() {
         return Duration.ofSeconds(10);
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.signalfx;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.util.DoubleFormat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.signalfx.metrics.protobuf.SignalFxProtocolBuffers.*;
+
+/**
+ * The data points a meter contributes to a session under a naming convention, built once with their metric name,
+ * type and dimensions, so that only values and timestamps are set on each publish.
+ */
+class SignalFxDataPoints {
+    private final Meter.Id id;
+    private final NamingConvention convention;
+    private final List<Dimension> dimensions;
+    private final DataPoint[] byType = new DataPoint[MetricType.values().length];
+    private final Map<String, DataPoint> bySuffix = new ConcurrentHashMap<>();
+    private final Map<Double, DataPoint> byPercentile = new ConcurrentHashMap<>();
+
+    SignalFxDataPoints(Meter.Id id, NamingConvention convention) {
+        this.id = id;
+        this.convention = convention;
+
+        List<Tag> tags = id.getConventionTags(convention);
+        List<Dimension> dimensions = new ArrayList<>(tags.size());
+        for (Tag tag : tags) {
+            dimensions.add(Dimension.newBuilder()
+                .setKey(tag.getKey())
+                .setValue(tag.getValue())
+                .build());
+        }
+        this.dimensions = Collections.unmodifiableList(dimensions);
+    }
+
+    /**
+     * A data point for the meter's name, e.g. {@code my.gauge}.
+     */
+    DataPoint named(MetricType metricType) {
+        DataPoint dataPoint = byType[metricType.ordinal()];
+        if (dataPoint == null) {
+            dataPoint = dataPoint(id, metricType);
+            byType[metricType.ordinal()] = dataPoint;
+        }
+        return dataPoint;
+    }
+
+    /**
+     * A data point for the meter's name followed by {@code suffix}, e.g. {@code my.timer.count}. The metric type
+     * of a suffix is fixed by the first call for it.
+     */
+    DataPoint suffixed(String suffix, MetricType metricType) {
+        return bySuffix.computeIfAbsent(suffix, s -> dataPoint(id.withSuffix(s), metricType));
+    }
+
+    /**
+     * A gauge data point for the meter's name followed by {@code <percentile>percentile}, e.g.
+     * {@code my.timer.99percentile}.
+     */
+    DataPoint percentile(double percentile) {
+        return byPercentile.computeIfAbsent(percentile,
+            p -> dataPoint(id.withSuffix(DoubleFormat.toString(p * 100) + "percentile"), MetricType.GAUGE));
+    }
+
+    private DataPoint dataPoint(Meter.Id id, MetricType metricType) {
+        return DataPoint.newBuilder()
+            .setMetric(id.getConventionName(convention))
+            .setMetricType(metricType)
+            .addAllDimensions(dimensions)
+            .build();
+    }
+}
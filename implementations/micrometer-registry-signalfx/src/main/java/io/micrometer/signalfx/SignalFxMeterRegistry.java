@@ -25,15 +25,13 @@ import com.signalfx.metrics.protobuf.SignalFxProtocolBuffers;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.config.NamingConvention;
 import io.micrometer.core.instrument.step.StepMeterRegistry;
-import io.micrometer.core.instrument.util.DoubleFormat;
-import io.micrometer.core.instrument.util.MeterPartition;
+import io.micrometer.core.instrument.util.ConventionCache;
 import io.micrometer.core.lang.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -50,6 +48,7 @@ public class SignalFxMeterRegistry extends StepMeterRegistry {
     private final Logger logger = LoggerFactory.getLogger(SignalFxMeterRegistry.class);
     private final SignalFxConfig config;
     private final AggregateMetricSender metricSender;
+    private final ConventionCache<SignalFxDataPoints> dataPointsByMeter = new ConventionCache<>(SignalFxDataPoints::new);
 
     public SignalFxMeterRegistry(SignalFxConfig config, Clock clock) {
         this(config, clock, Executors.defaultThreadFactory());
@@ -84,40 +83,39 @@ public class SignalFxMeterRegistry extends StepMeterRegistry {
 
     @Override
     protected void publish() {
-        final long timestamp = clock.wallTime();
-
-        for (List<Meter> batch : MeterPartition.partition(this, config.batchSize())) {
-            try (AggregateMetricSender.Session session = metricSender.createSession()) {
-                for (Meter meter : batch) {
-                    if (meter instanceof Counter) {
-                        addCounter((Counter) meter, session, timestamp);
-                    } else if (meter instanceof Timer) {
-                        addTimer((Timer) meter, session, timestamp);
-                    } else if (meter instanceof DistributionSummary) {
-                        addDistributionSummary((DistributionSummary) meter, session, timestamp);
-                    } else if (meter instanceof TimeGauge) {
-                        addTimeGauge((TimeGauge) meter, session, timestamp);
-                    } else if (meter instanceof Gauge) {
-                        addGauge((Gauge) meter, session, timestamp);
-                    } else if (meter instanceof FunctionTimer) {
-                        addFunctionTimer((FunctionTimer) meter, session, timestamp);
-                    } else if (meter instanceof FunctionCounter) {
-                        addFunctionCounter((FunctionCounter) meter, session, timestamp);
-                    } else if (meter instanceof LongTaskTimer) {
-                        addLongTaskTimer((LongTaskTimer) meter, session, timestamp);
-                    } else {
-                        addMeter(meter, session, timestamp);
-                    }
+        Session session = new Session(clock.wallTime());
+
+        for (Meter meter : getMeters()) {
+            SignalFxDataPoints dataPoints = dataPointsByMeter.get(meter.getId(), config().namingConvention());
+            try {
+                if (meter instanceof Counter) {
+                    addCounter((Counter) meter, dataPoints, session);
+                } else if (meter instanceof Timer) {
+                    addTimer((Timer) meter, dataPoints, session);
+                } else if (meter instanceof DistributionSummary) {
+                    addDistributionSummary((DistributionSummary) meter, dataPoints, session);
+                } else if (meter instanceof TimeGauge) {
+                    addTimeGauge((TimeGauge) meter, dataPoints, session);
+                } else if (meter instanceof Gauge) {
+                    addGauge((Gauge) meter, dataPoints, session);
+                } else if (meter instanceof FunctionTimer) {
+                    addFunctionTimer((FunctionTimer) meter, dataPoints, session);
+                } else if (meter instanceof FunctionCounter) {
+                    addFunctionCounter((FunctionCounter) meter, dataPoints, session);
+                } else if (meter instanceof LongTaskTimer) {
+                    addLongTaskTimer((LongTaskTimer) meter, dataPoints, session);
+                } else {
+                    addMeter(meter, dataPoints, session);
                 }
-
-                logger.info("successfully sent " + batch.size() + " metrics to Signalfx");
             } catch (Exception e) {
-                logger.warn("failed to send metrics", e);
+                logger.warn("failed to read metrics of " + meter.getId().getName(), e);
             }
         }
+
+        session.send();
     }
 
-    private void addMeter(Meter meter, AggregateMetricSender.Session session, long timestamp) {
+    private void addMeter(Meter meter, SignalFxDataPoints dataPoints, Session session) {
         for (Measurement measurement : meter.measure()) {
             String statSuffix = NamingConvention.camelCase.tagKey(measurement.getStatistic().toString());
 
@@ -126,97 +124,147 @@ public class SignalFxMeterRegistry extends StepMeterRegistry {
                 case TotalTime:
                 case Count:
                 case Duration:
-                    addDatapoint(meter, COUNTER, statSuffix, session, measurement.getValue(), timestamp);
+                    session.add(dataPoints.suffixed(statSuffix, COUNTER), measurement.getValue());
                     break;
                 case Max:
                 case Value:
                 case Unknown:
                 case ActiveTasks:
-                    addDatapoint(meter, GAUGE, statSuffix, session, measurement.getValue(), timestamp);
+                    session.add(dataPoints.suffixed(statSuffix, GAUGE), measurement.getValue());
                     break;
             }
         }
     }
 
-    private void addDatapoint(Meter meter, SignalFxProtocolBuffers.MetricType metricType, @Nullable String statSuffix, AggregateMetricSender.Session session, Number value, long timestamp) {
-        SignalFxProtocolBuffers.Datum.Builder datumBuilder = SignalFxProtocolBuffers.Datum.newBuilder();
-        SignalFxProtocolBuffers.Datum datum = (value instanceof Double ?
-            datumBuilder.setDoubleValue((Double) value) :
-            datumBuilder.setIntValue((Long) value)
-        ).build();
-
-        String metricName = config().namingConvention().name(statSuffix == null ? meter.getId().getName() : meter.getId().getName() + "." + statSuffix,
-            meter.getId().getType(), meter.getId().getBaseUnit());
-
-        SignalFxProtocolBuffers.DataPoint.Builder dataPointBuilder = SignalFxProtocolBuffers.DataPoint.newBuilder()
-            .setMetric(metricName)
-            .setMetricType(metricType)
-            .setValue(datum)
-            .setTimestamp(timestamp);
-
-        for (Tag tag : getConventionTags(meter.getId())) {
-            dataPointBuilder.addDimensions(SignalFxProtocolBuffers.Dimension.newBuilder()
-                .setKey(tag.getKey())
-                .setValue(tag.getValue())
-                .build());
-        }
-
-        session.setDatapoint(dataPointBuilder.build());
-    }
-
-    private void addLongTaskTimer(LongTaskTimer longTaskTimer, AggregateMetricSender.Session session, long timestamp) {
-        addDatapoint(longTaskTimer, GAUGE, "activeTasks", session, longTaskTimer.activeTasks(), timestamp);
-        addDatapoint(longTaskTimer, COUNTER, "duration", session, longTaskTimer.duration(getBaseTimeUnit()), timestamp);
+    private void addLongTaskTimer(LongTaskTimer longTaskTimer, SignalFxDataPoints dataPoints, Session session) {
+        session.add(dataPoints.suffixed("activeTasks", GAUGE), (long) longTaskTimer.activeTasks());
+        session.add(dataPoints.suffixed("duration", COUNTER), longTaskTimer.duration(getBaseTimeUnit()));
     }
 
-    private void addTimeGauge(TimeGauge timeGauge, AggregateMetricSender.Session session, long timestamp) {
-        addDatapoint(timeGauge, GAUGE, null, session, timeGauge.value(getBaseTimeUnit()), timestamp);
+    private void addTimeGauge(TimeGauge timeGauge, SignalFxDataPoints dataPoints, Session session) {
+        session.add(dataPoints.named(GAUGE), timeGauge.value(getBaseTimeUnit()));
     }
 
-    private void addGauge(Gauge gauge, AggregateMetricSender.Session session, long timestamp) {
-        addDatapoint(gauge, GAUGE, null, session, gauge.value(), timestamp);
+    private void addGauge(Gauge gauge, SignalFxDataPoints dataPoints, Session session) {
+        session.add(dataPoints.named(GAUGE), gauge.value());
     }
 
-    private void addCounter(Counter counter, AggregateMetricSender.Session session, long timestamp) {
-        addDatapoint(counter, COUNTER, null, session, counter.count(), timestamp);
+    private void addCounter(Counter counter, SignalFxDataPoints dataPoints, Session session) {
+        session.add(dataPoints.named(COUNTER), counter.count());
     }
 
-    private void addFunctionCounter(FunctionCounter counter, AggregateMetricSender.Session session, long timestamp) {
-        addDatapoint(counter, COUNTER, null, session, counter.count(), timestamp);
+    private void addFunctionCounter(FunctionCounter counter, SignalFxDataPoints dataPoints, Session session) {
+        session.add(dataPoints.named(COUNTER), counter.count());
     }
 
-    private void addTimer(Timer timer, AggregateMetricSender.Session session, long timestamp) {
+    private void addTimer(Timer timer, SignalFxDataPoints dataPoints, Session session) {
         HistogramSnapshot snapshot = timer.takeSnapshot(false);
 
-        addDatapoint(timer, COUNTER, "count", session, snapshot.count(), timestamp);
-        addDatapoint(timer, COUNTER, "totalTime", session, snapshot.total(getBaseTimeUnit()), timestamp);
-        addDatapoint(timer, GAUGE, "avg", session, snapshot.mean(getBaseTimeUnit()), timestamp);
-        addDatapoint(timer, GAUGE, "max", session, snapshot.max(getBaseTimeUnit()), timestamp);
+        session.add(dataPoints.suffixed("count", COUNTER), snapshot.count());
+        session.add(dataPoints.suffixed("totalTime", COUNTER), snapshot.total(getBaseTimeUnit()));
+        session.add(dataPoints.suffixed("avg", GAUGE), snapshot.mean(getBaseTimeUnit()));
+        session.add(dataPoints.suffixed("max", GAUGE), snapshot.max(getBaseTimeUnit()));
 
         for (ValueAtPercentile v : snapshot.percentileValues()) {
-            String suffix = DoubleFormat.toString(v.percentile() * 100) + "percentile";
-            addDatapoint(timer, GAUGE, suffix, session, v.value(getBaseTimeUnit()), timestamp);
+            session.add(dataPoints.percentile(v.percentile()), v.value(getBaseTimeUnit()));
         }
     }
 
-    private void addFunctionTimer(FunctionTimer timer, AggregateMetricSender.Session session, long timestamp) {
-        addDatapoint(timer, COUNTER, "count", session, timer.count(), timestamp);
-        addDatapoint(timer, COUNTER, "totalTime", session, timer.totalTime(getBaseTimeUnit()), timestamp);
-        addDatapoint(timer, GAUGE, "avg", session, timer.mean(getBaseTimeUnit()), timestamp);
+    private void addFunctionTimer(FunctionTimer timer, SignalFxDataPoints dataPoints, Session session) {
+        session.add(dataPoints.suffixed("count", COUNTER), timer.count());
+        session.add(dataPoints.suffixed("totalTime", COUNTER), timer.totalTime(getBaseTimeUnit()));
+        session.add(dataPoints.suffixed("avg", GAUGE), timer.mean(getBaseTimeUnit()));
     }
 
-    private void addDistributionSummary(DistributionSummary summary, AggregateMetricSender.Session session, long timestamp) {
+    private void addDistributionSummary(DistributionSummary summary, SignalFxDataPoints dataPoints, Session session) {
         HistogramSnapshot snapshot = summary.takeSnapshot(false);
 
-        addDatapoint(summary, COUNTER, "count", session, snapshot.count(), timestamp);
-        addDatapoint(summary, COUNTER, "totalTime", session, snapshot.total(), timestamp);
-        addDatapoint(summary, GAUGE, "avg", session, snapshot.mean(), timestamp);
-        addDatapoint(summary, GAUGE, "max", session, snapshot.max(), timestamp);
+        session.add(dataPoints.suffixed("count", COUNTER), snapshot.count());
+        session.add(dataPoints.suffixed("totalTime", COUNTER), snapshot.total());
+        session.add(dataPoints.suffixed("avg", GAUGE), snapshot.mean());
+        session.add(dataPoints.suffixed("max", GAUGE), snapshot.max());
 
         for (ValueAtPercentile v : snapshot.percentileValues()) {
-            String suffix = DoubleFormat.toString(v.percentile() * 100) + "percentile";
-            addDatapoint(summary, GAUGE, suffix, session, v.value(), timestamp);
+            session.add(dataPoints.percentile(v.percentile()), v.value());
+        }
+    }
+
+    /**
+     * Stamps prebuilt data points with a value and the publish timestamp, reusing the same builders for every one
+     * of them, and sends them in as many sessions as it takes to keep each within {@link SignalFxConfig#batchSize()}
+     * data points and {@link SignalFxConfig#maxRequestSize()} encoded bytes.
+     */
+    private class Session {
+        private final long timestamp;
+        private final SignalFxProtocolBuffers.DataPoint.Builder dataPointBuilder = SignalFxProtocolBuffers.DataPoint.newBuilder();
+        private final SignalFxProtocolBuffers.Datum.Builder datumBuilder = SignalFxProtocolBuffers.Datum.newBuilder();
+
+        @Nullable
+        private AggregateMetricSender.Session session;
+        private int dataPoints;
+        private int bytes;
+
+        Session(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        void add(SignalFxProtocolBuffers.DataPoint dataPoint, double value) {
+            add(dataPoint, datumBuilder.clear().setDoubleValue(value).build());
+        }
+
+        void add(SignalFxProtocolBuffers.DataPoint dataPoint, long value) {
+            add(dataPoint, datumBuilder.clear().setIntValue(value).build());
+        }
+
+        private void add(SignalFxProtocolBuffers.DataPoint dataPoint, SignalFxProtocolBuffers.Datum datum) {
+            // the dimensions list of the prebuilt data point is shared rather than copied by the builder
+            SignalFxProtocolBuffers.DataPoint stamped = dataPointBuilder.clear()
+                .mergeFrom(dataPoint)
+                .setValue(datum)
+                .setTimestamp(timestamp)
+                .build();
+
+            int size = encodedSize(stamped);
+            if (session != null && (dataPoints >= config.batchSize() || bytes + size > config.maxRequestSize())) {
+                send();
+            }
+            if (session == null) {
+                session = metricSender.createSession();
+            }
+
+            session.setDatapoint(stamped);
+            dataPoints++;
+            bytes += size;
+        }
+
+        void send() {
+            if (session == null)
+                return;
+
+            try {
+                session.close();
+                logger.info("successfully sent " + dataPoints + " metrics to Signalfx");
+            } catch (Exception e) {
+                logger.warn("failed to send metrics", e);
+            } finally {
+                session = null;
+                dataPoints = 0;
+                bytes = 0;
+            }
+        }
+    }
+
+    /**
+     * The size of a data point as a repeated field of the upload message: a one byte field tag, the varint
+     * encoded length and the data point itself.
+     */
+    static int encodedSize(SignalFxProtocolBuffers.DataPoint dataPoint) {
+        int size = dataPoint.getSerializedSize();
+        int lengthSize = 1;
+        for (int length = size >>> 7; length != 0; length >>>= 7) {
+            lengthSize++;
         }
+        return 1 + lengthSize + size;
     }
 
     @Override
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.signalfx;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.lang.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static com.signalfx.metrics.protobuf.SignalFxProtocolBuffers.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SignalFxMeterRegistryTest {
+    private final List<DataPointUploadMessage> uploads = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v2/datapoint", exchange -> {
+            try {
+                InputStream body = exchange.getRequestBody();
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    body = new GZIPInputStream(body);
+                }
+                uploads.add(DataPointUploadMessage.parseFrom(body));
+                exchange.sendResponseHeaders(200, 2);
+                exchange.getResponseBody().write("OK".getBytes());
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void dataPointsAreStampedWithValueAndTimestamp() {
+        MockClock clock = new MockClock();
+        SignalFxMeterRegistry registry = registry(1024 * 1024, clock);
+        registry.gauge("my.gauge", Tags.zip("region", "us-west"), 1.5);
+        registry.more().longTaskTimer("my.ltt");
+
+        registry.publish();
+        clock.add(SignalFxConfig.DEFAULT.step());
+        registry.publish();
+
+        assertThat(uploads).hasSize(2);
+        for (DataPointUploadMessage upload : uploads) {
+            DataPoint gauge = upload.getDatapointsList().stream()
+                .filter(dp -> dp.getMetric().equals("my.gauge")).findFirst().get();
+            assertThat(gauge.getMetricType()).isEqualTo(MetricType.GAUGE);
+            assertThat(gauge.getValue().getDoubleValue()).isEqualTo(1.5);
+            assertThat(gauge.getDimensionsList()).containsExactly(
+                Dimension.newBuilder().setKey("region").setValue("us-west").build());
+
+            DataPoint activeTasks = upload.getDatapointsList().stream()
+                .filter(dp -> dp.getMetric().equals("my.ltt.activeTasks")).findFirst().get();
+            assertThat(activeTasks.getValue().getIntValue()).isEqualTo(0);
+        }
+
+        assertThat(uploads.get(0).getDatapoints(0).getTimestamp()).isEqualTo(0);
+        assertThat(uploads.get(1).getDatapoints(0).getTimestamp()).isEqualTo(SignalFxConfig.DEFAULT.step().toMillis());
+    }
+
+    @Test
+    void sessionsAreSplitByEncodedSize() {
+        SignalFxMeterRegistry registry = registry(100, new MockClock());
+        for (int i = 0; i < 10; i++) {
+            registry.gauge("my.gauge" + i, Tags.zip("region", "us-west"), i);
+        }
+
+        registry.publish();
+
+        assertThat(uploads.size()).isGreaterThan(1);
+        assertThat(uploads.stream().flatMap(upload -> upload.getDatapointsList().stream()).map(DataPoint::getMetric)
+            .collect(Collectors.toList())).hasSize(10);
+        for (DataPointUploadMessage upload : uploads) {
+            assertThat(upload.getDatapointsList().stream().mapToInt(SignalFxMeterRegistry::encodedSize).sum())
+                .isLessThanOrEqualTo(100);
+        }
+    }
+
+    @Test
+    void dataPointsAreBuiltOnce() {
+        SignalFxDataPoints dataPoints = new SignalFxDataPoints(new SignalFxMeterRegistry(config(1024 * 1024), new MockClock())
+            .counter("my.counter", "region", "us-west").getId(), new SignalFxNamingConvention());
+
+        DataPoint count = dataPoints.suffixed("count", MetricType.COUNTER);
+        assertThat(count.getMetric()).isEqualTo("my.counter.count");
+        assertThat(dataPoints.suffixed("count", MetricType.COUNTER)).isSameAs(count);
+        assertThat(dataPoints.named(MetricType.COUNTER)).isSameAs(dataPoints.named(MetricType.COUNTER));
+        assertThat(dataPoints.percentile(0.99).getMetric()).isEqualTo("my.counter.99percentile");
+    }
+
+    private SignalFxMeterRegistry registry(int maxRequestSize, MockClock clock) {
+        SignalFxMeterRegistry registry = new SignalFxMeterRegistry(config(maxRequestSize), clock);
+        registry.stop();
+        return registry;
+    }
+
+    private SignalFxConfig config(int maxRequestSize) {
+        return new SignalFxConfig() {
+            @Override
+            public String uri() {
+                return "http://127.0.0.1:" + server.getAddress().getPort();
+            }
+
+            @Override
+            public String accessToken() {
+                return "fake";
+            }
+
+            @Override
+            public int maxRequestSize() {
+                return maxRequestSize;
+            }
+
+            @Override
+            public boolean enabled() {
+                return false;
+            }
+
+            @Override
+            @Nullable
+            public String get(String k) {
+                return null;
+            }
+        };
+    }
+}
@@ -18,6 +18,9 @@ package io.micrometer.statsd;
 import io.micrometer.core.instrument.config.MeterRegistryConfig;
 
 import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author Jon Schneider
@@ -53,6 +56,53 @@ public interface StatsdConfig extends MeterRegistryConfig {
         throw new IllegalArgumentException("Unrecognized statsd flavor '" + v + "' (check property " + prefix() + ".flavor)");
     }
 
+    /**
+     * Choose whether lines are sent as events are recorded, or aggregated locally and sent once per polling interval.
+     */
+    default StatsdPublishingMode publishingMode() {
+        String v = get(prefix() + ".publishingMode");
+
+        if (v == null)
+            return StatsdPublishingMode.Immediate;
+
+        for (StatsdPublishingMode mode : StatsdPublishingMode.values()) {
+            if (mode.toString().equalsIgnoreCase(v))
+                return mode;
+        }
+
+        throw new IllegalArgumentException("Unrecognized statsd publishing mode '" + v + "' (check property " + prefix() + ".publishingMode)");
+    }
+
+    /**
+     * When aggregating, the maximum number of values each timer or distribution summary samples per polling interval.
+     * The default is 32.
+     */
+    default int aggregationSampleSize() {
+        String v = get(prefix() + ".aggregationSampleSize");
+        return v == null ? 32 : Integer.parseInt(v);
+    }
+
+    /**
+     * The fraction of lines to send for counters, timers and distribution summaries, keyed by meter name prefix, e.g.
+     * {@code http.server.requests=0.1,jvm=0.5}. A prefix matches a meter whose name is the prefix or starts with the
+     * prefix followed by a '.', the longest matching prefix wins, and {@code all} matches every meter. Rates apply to
+     * meters as they are registered. The default is to send every line.
+     */
+    default Map<String, Double> sampleRates() {
+        String v = get(prefix() + ".sampleRates");
+        if (v == null || v.trim().isEmpty())
+            return Collections.emptyMap();
+
+        Map<String, Double> rates = new HashMap<>();
+        for (String rate : v.split(",")) {
+            int eq = rate.indexOf('=');
+            if (eq < 0)
+                throw new IllegalArgumentException("Unrecognized statsd sample rate '" + rate.trim() + "' (check property " + prefix() + ".sampleRates)");
+            rates.put(rate.substring(0, eq).trim(), Double.parseDouble(rate.substring(eq + 1).trim()));
+        }
+        return rates;
+    }
+
     /**
      * Returns true if publishing is enabled. Default is {@code true}.
      */
@@ -61,6 +111,32 @@ public interface StatsdConfig extends MeterRegistryConfig {
         return v == null || Boolean.valueOf(v);
     }
 
+    /**
+     * Choose the transport used to reach the StatsD agent. The default is {@link StatsdProtocol#Udp}.
+     */
+    default StatsdProtocol protocol() {
+        String v = get(prefix() + ".protocol");
+
+        if (v == null)
+            return StatsdProtocol.Udp;
+
+        for (StatsdProtocol protocol : StatsdProtocol.values()) {
+            if (protocol.toString().equalsIgnoreCase(v))
+                return protocol;
+        }
+
+        throw new IllegalArgumentException("Unrecognized statsd protocol '" + v + "' (check property " + prefix() + ".protocol)");
+    }
+
+    /**
+     * With {@link StatsdProtocol#UnixStream}, the path of the StatsD agent's Unix domain socket. The default is
+     * {@code /var/run/datadog/dsd.socket}.
+     */
+    default String socketPath() {
+        String v = get(prefix() + ".socketPath");
+        return v == null ? "/var/run/datadog/dsd.socket" : v;
+    }
+
     /**
      * The host name of the StatsD agent.
      */
@@ -83,7 +159,8 @@ public interface StatsdConfig extends MeterRegistryConfig {
      *   2. Gigabit Ethernet (8932) - Jumbo frames can make use of this feature much more efficient.
      *   3. Commodity Internet (512) - If you are routing over the internet a value in this range will be reasonable. You might be able to go higher, but you are at the mercy of all the hops in your route.
      *
-     * FIXME implement packet-limiting the StatsD publisher
+     * Lines are coalesced into packets of up to this many bytes. A single line that exceeds this length is sent
+     * in a packet of its own.
      */
     default int maxPacketLength() {
         String v = get(prefix() + ".maxPacketLength");
@@ -93,6 +170,15 @@ public interface StatsdConfig extends MeterRegistryConfig {
         return (v == null) ? 1400 : Integer.parseInt(v);
     }
 
+    /**
+     * The maximum amount of time a line is held back waiting for a packet to fill up to {@link #maxPacketLength()}
+     * before the partially filled packet is sent anyway. The default is 50 milliseconds.
+     */
+    default Duration linger() {
+        String v = get(prefix() + ".linger");
+        return v == null ? Duration.ofMillis(50) : Duration.parse(v);
+    }
+
     /**
      * Determines how often gauges will be polled. When a gauge is polled, its value is recalculated. If the value has changed,
      * it is sent to the StatsD server.
@@ -103,11 +189,48 @@ public interface StatsdConfig extends MeterRegistryConfig {
     }
 
     /**
-     * Governs the maximum size of the queue of items waiting to be sent to a StatsD agent over UDP.
+     * The number of slices pollable meters are divided into. One slice is polled every {@link #pollingFrequency()}
+     * divided by this number, so that each meter is still polled once per polling interval, but the lines of a large
+     * number of gauges are spread across the interval instead of being sent in a single burst. The default is 1.
+     */
+    default int pollingSlices() {
+        String v = get(prefix() + ".pollingSlices");
+        return v == null ? 1 : Integer.parseInt(v);
+    }
+
+    /**
+     * Governs the maximum size of the queue of items waiting to be sent to a StatsD agent over UDP. The default is 10,000.
+     * Lines recorded while the queue is full are handled according to {@link #queueOverflowPolicy()}.
      */
     default int queueSize() {
         String v = get(prefix() + ".queueSize");
-        return v == null ? Integer.MAX_VALUE : Integer.parseInt(v);
+        return v == null ? 10_000 : Integer.parseInt(v);
+    }
+
+    /**
+     * Choose what happens to lines recorded while the queue is full. The default is {@link StatsdQueueOverflowPolicy#DropNewest}.
+     */
+    default StatsdQueueOverflowPolicy queueOverflowPolicy() {
+        String v = get(prefix() + ".queueOverflowPolicy");
+
+        if (v == null)
+            return StatsdQueueOverflowPolicy.DropNewest;
+
+        for (StatsdQueueOverflowPolicy policy : StatsdQueueOverflowPolicy.values()) {
+            if (policy.toString().equalsIgnoreCase(v))
+                return policy;
+        }
+
+        throw new IllegalArgumentException("Unrecognized statsd queue overflow policy '" + v + "' (check property " + prefix() + ".queueOverflowPolicy)");
+    }
+
+    /**
+     * With {@link StatsdQueueOverflowPolicy#Block}, the maximum amount of time a recording thread waits for room in
+     * the queue before the line is dropped. The default is 100 milliseconds.
+     */
+    default Duration queueOfferTimeout() {
+        String v = get(prefix() + ".queueOfferTimeout");
+        return v == null ? Duration.ofMillis(100) : Duration.parse(v);
     }
 
     /**
@@ -20,27 +20,51 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.util.MeterEquivalence;
 import org.reactivestreams.Subscriber;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.DoubleAdder;
 
 /**
  * @author Jon Schneider
  */
-public class StatsdCounter extends AbstractMeter implements Counter {
+public class StatsdCounter extends AbstractMeter implements Counter, StatsdPollable {
     private DoubleAdder count = new DoubleAdder();
     private final StatsdLineBuilder lineBuilder;
     private final Subscriber<String> publisher;
+    private final boolean aggregated;
+    private final double sampleRate;
+    private final AtomicLong lastPublished = new AtomicLong(0);
 
-    StatsdCounter(Id id, StatsdLineBuilder lineBuilder, Subscriber<String> publisher) {
+    StatsdCounter(Id id, StatsdLineBuilder lineBuilder, Subscriber<String> publisher, StatsdPublishingMode mode,
+                  double sampleRate) {
         super(id);
         this.lineBuilder = lineBuilder;
         this.publisher = publisher;
+        this.aggregated = mode == StatsdPublishingMode.Aggregated;
+        this.sampleRate = sampleRate;
     }
 
     @Override
     public void increment(double amount) {
         if(amount > 0) {
             count.add(amount);
-            publisher.onNext(lineBuilder.count((long) amount));
+            if(!aggregated && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate))
+                publisher.onNext(lineBuilder.count((long) amount, sampleRate));
+        }
+    }
+
+    /**
+     * When aggregating, publishes the whole amount the counter was incremented by since the last poll. Fractional
+     * increments carry over to the next poll rather than being truncated.
+     */
+    @Override
+    public void poll() {
+        if(aggregated) {
+            long current = (long) count.doubleValue();
+            long previous = lastPublished.getAndSet(current);
+            if(current > previous) {
+                publisher.onNext(lineBuilder.count(current - previous));
+            }
         }
     }
 
@@ -24,23 +24,34 @@ import io.micrometer.core.instrument.util.TimeDecayingMax;
 import io.micrometer.core.lang.Nullable;
 import org.reactivestreams.Subscriber;
 
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.DoubleAdder;
 import java.util.concurrent.atomic.LongAdder;
 
-public class StatsdDistributionSummary extends AbstractDistributionSummary {
+public class StatsdDistributionSummary extends AbstractDistributionSummary implements StatsdPollable {
     private final LongAdder count = new LongAdder();
     private final DoubleAdder amount = new DoubleAdder();
     private final TimeDecayingMax max;
 
     private final StatsdLineBuilder lineBuilder;
     private final Subscriber<String> publisher;
+    private final double sampleRate;
+
+    /**
+     * Only present when aggregating.
+     */
+    @Nullable
+    private final StatsdSampleReservoir reservoir;
 
     StatsdDistributionSummary(Meter.Id id, StatsdLineBuilder lineBuilder, Subscriber<String> publisher, Clock clock,
-                              HistogramConfig histogramConfig, long stepMillis) {
+                              HistogramConfig histogramConfig, long stepMillis, StatsdPublishingMode mode, int sampleSize,
+                              double sampleRate) {
         super(id, clock, histogramConfig);
         this.max = new TimeDecayingMax(clock, histogramConfig);
         this.lineBuilder = lineBuilder;
         this.publisher = publisher;
+        this.sampleRate = sampleRate;
+        this.reservoir = mode == StatsdPublishingMode.Aggregated ? new StatsdSampleReservoir(sampleSize) : null;
     }
 
     @Override
@@ -49,10 +60,19 @@ public class StatsdDistributionSummary extends AbstractDistributionSummary {
             count.increment();
             this.amount.add(amount);
             max.record(amount);
-            publisher.onNext(lineBuilder.histogram(amount));
+            if (reservoir != null)
+                reservoir.record(amount);
+            else if (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate)
+                publisher.onNext(lineBuilder.histogram(amount, sampleRate));
         }
     }
 
+    @Override
+    public void poll() {
+        if (reservoir != null)
+            reservoir.drain((amount, sampleRate) -> publisher.onNext(lineBuilder.histogram(amount, sampleRate)));
+    }
+
     @Override
     public long count() {
         return count.longValue();
@@ -28,13 +28,15 @@ public class StatsdFunctionTimer<T> extends CumulativeFunctionTimer<T> implement
     private final Subscriber<String> publisher;
     private final AtomicReference<Long> lastCount = new AtomicReference<>(0L);
     private final AtomicReference<Double> lastTime = new AtomicReference<>(0.0);
+    private final boolean aggregated;
 
     StatsdFunctionTimer(Id id, T obj, ToLongFunction<T> countFunction, ToDoubleFunction<T> totalTimeFunction,
                         TimeUnit totalTimeFunctionUnits, TimeUnit baseTimeUnit,
-                        StatsdLineBuilder lineBuilder, Subscriber<String> publisher) {
+                        StatsdLineBuilder lineBuilder, Subscriber<String> publisher, StatsdPublishingMode mode) {
         super(id, obj, countFunction, totalTimeFunction, totalTimeFunctionUnits, baseTimeUnit);
         this.lineBuilder = lineBuilder;
         this.publisher = publisher;
+        this.aggregated = mode == StatsdPublishingMode.Aggregated;
     }
 
     @Override
@@ -52,8 +54,13 @@ public class StatsdFunctionTimer<T> extends CumulativeFunctionTimer<T> implement
                     // by calculating the average of the sum of all new timings seen by the number of new timing
                     // occurrences.
                     double timingAverage = newTimingsSum / newTimingsCount;
-                    for (int i = 0; i < newTimingsCount; i++) {
-                        publisher.onNext(lineBuilder.timing(timingAverage));
+                    if (aggregated) {
+                        // a single line, which the agent scales back up to the number of new timings
+                        publisher.onNext(lineBuilder.timing(timingAverage, 1.0 / newTimingsCount));
+                    } else {
+                        for (int i = 0; i < newTimingsCount; i++) {
+                            publisher.onNext(lineBuilder.timing(timingAverage));
+                        }
                     }
 
                     return totalTime;
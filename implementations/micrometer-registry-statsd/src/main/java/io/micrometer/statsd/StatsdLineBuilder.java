@@ -18,81 +18,58 @@ package io.micrometer.statsd;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.util.DoubleFormat;
 import io.micrometer.core.instrument.util.HierarchicalNameMapper;
 import io.micrometer.core.lang.Nullable;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.NumberFormat;
-import java.util.Locale;
-import java.util.Objects;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import static io.micrometer.statsd.internal.MemoizingFunction.memoize;
 import static java.beans.Introspector.decapitalize;
-import static java.util.stream.Stream.of;
 
 class StatsdLineBuilder {
+    /**
+     * Lines are assembled in a reused builder, so the only allocation per line is the resulting string.
+     */
+    private static final ThreadLocal<StringBuilder> LINE_BUILDERS = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
     private final Meter.Id id;
     private final StatsdFlavor flavor;
     private final HierarchicalNameMapper nameMapper;
     private final MeterRegistry.Config config;
 
-    private final Function<NamingConvention, String> datadogTagString;
-    private final Function<NamingConvention, String> telegrafTagString;
-
     /**
-     * Because NumberFormat is not thread-safe we cannot share instances across threads.
+     * Everything in a line other than the amount, type and sample rate only depends on the naming convention, so it
+     * is rendered once per convention.
      */
-    private static final ThreadLocal<NumberFormat> NUMBER_FORMATTERS = ThreadLocal.withInitial(() -> {
-        // Always create the formatter for the US locale in order to avoid this bug:
-        // https://github.com/indeedeng/java-dogstatsd-client/issues/3
-        final NumberFormat numberFormatter = NumberFormat.getInstance(Locale.US);
-        numberFormatter.setGroupingUsed(false);
-        numberFormatter.setMaximumFractionDigits(6);
-
-        // We need to specify a value for Double.NaN that is recognizable
-        final DecimalFormat decimalFormat = (DecimalFormat) numberFormatter;
-        final DecimalFormatSymbols symbols = decimalFormat.getDecimalFormatSymbols();
-        symbols.setNaN("NaN");
-        decimalFormat.setDecimalFormatSymbols(symbols);
-
-        return numberFormatter;
-    });
+    private final Function<NamingConvention, RenderedId> rendered;
 
     StatsdLineBuilder(Meter.Id id, StatsdFlavor flavor, HierarchicalNameMapper nameMapper, MeterRegistry.Config config) {
         this.id = id;
         this.flavor = flavor;
         this.nameMapper = nameMapper;
         this.config = config;
-
-        // service:payroll,region:us-west
-        this.datadogTagString = memoize(convention ->
-            id.getTags().iterator().hasNext() ?
-                id.getConventionTags(convention).stream()
-                    .map(t -> t.getKey() + ":" + t.getValue())
-                    .collect(Collectors.joining(","))
-                : null
-        );
-
-        // service=payroll,region=us-west
-        this.telegrafTagString = memoize(convention ->
-            id.getTags().iterator().hasNext() ?
-                id.getConventionTags(convention).stream()
-                    .map(t -> t.getKey() + "=" + t.getValue())
-                    .collect(Collectors.joining(","))
-                : null
-        );
+        this.rendered = memoize(RenderedId::new);
     }
 
     String count(long amount) {
         return count(amount, Statistic.Count);
     }
 
+    String count(long amount, double sampleRate) {
+        return count(amount, Statistic.Count, sampleRate);
+    }
+
     String count(long amount, Statistic stat) {
-        return line(Long.toString(amount), stat, "c");
+        return count(amount, stat, 1);
+    }
+
+    private String count(long amount, Statistic stat, double sampleRate) {
+        RenderedId rendered = rendered();
+        StringBuilder line = start(rendered, stat).append(amount);
+        return end(line, rendered, stat, "c", sampleRate);
     }
 
     String gauge(double amount) {
@@ -100,47 +77,119 @@ class StatsdLineBuilder {
     }
 
     String gauge(double amount, Statistic stat) {
-        return line(NUMBER_FORMATTERS.get().format(amount), stat, "g");
+        return line(amount, stat, "g", 1);
     }
 
     String histogram(double amount) {
-        return line(NUMBER_FORMATTERS.get().format(amount), null, "h");
+        return histogram(amount, 1);
+    }
+
+    String histogram(double amount, double sampleRate) {
+        return line(amount, null, "h", sampleRate);
     }
 
     String timing(double timeMs) {
-        return line(NUMBER_FORMATTERS.get().format(timeMs), null, "ms");
-    }
-
-    private String line(String amount, @Nullable Statistic stat, String type) {
-        switch (flavor) {
-            case Etsy:
-                return metricName(stat) + ":" + amount + "|" + type;
-            case Datadog:
-                return metricName(stat) + ":" + amount + "|" + type + tags(stat, datadogTagString.apply(config.namingConvention()),":", "|#");
-            case Telegraf:
-            default:
-                return metricName(stat) + tags(stat, telegrafTagString.apply(config.namingConvention()),"=", ",") + ":" + amount + "|" + type;
-        }
+        return timing(timeMs, 1);
+    }
+
+    String timing(double timeMs, double sampleRate) {
+        return line(timeMs, null, "ms", sampleRate);
+    }
+
+    private String line(double amount, @Nullable Statistic stat, String type, double sampleRate) {
+        RenderedId rendered = rendered();
+        StringBuilder line = DoubleFormat.append(start(rendered, stat), amount);
+        return end(line, rendered, stat, type, sampleRate);
+    }
+
+    private RenderedId rendered() {
+        return rendered.apply(config.namingConvention());
     }
 
-    private String tags(@Nullable Statistic stat, String otherTags, String keyValueSeparator, String preamble) {
-        String tags = of(stat == null ? null : "statistic" + keyValueSeparator + decapitalize(stat.toString()), otherTags)
-            .filter(Objects::nonNull)
-            .collect(Collectors.joining(","));
+    private static StringBuilder start(RenderedId rendered, @Nullable Statistic stat) {
+        StringBuilder line = LINE_BUILDERS.get();
+        line.setLength(0);
+        return line.append(rendered.prefix(stat));
+    }
 
-        if(!tags.isEmpty())
-            tags = preamble + tags;
-        return tags;
+    private static String end(StringBuilder line, RenderedId rendered, @Nullable Statistic stat, String type, double sampleRate) {
+        line.append('|').append(type);
+        if (sampleRate < 1) {
+            // don't let a tiny rate be formatted as zero, which agents can't scale counts by
+            line.append("|@");
+            DoubleFormat.append(line, Math.max(sampleRate, 0.000001));
+        }
+        return line.append(rendered.suffix(stat)).toString();
     }
 
-    private String metricName(@Nullable Statistic stat) {
-        switch (flavor) {
-            case Etsy:
-                return nameMapper.toHierarchicalName(stat != null ? id.withTag(stat) : id, config.namingConvention());
-            case Datadog:
-            case Telegraf:
-            default:
-                return config.namingConvention().name(id.getName(), id.getType(), id.getBaseUnit());
+    /**
+     * The parts of each line that precede the amount and follow the type and sample rate, for every statistic this
+     * meter is published with.
+     */
+    private class RenderedId {
+        private final NamingConvention convention;
+
+        /**
+         * Indexed by statistic ordinal + 1, with the first entry for lines that don't carry a statistic. Entries are
+         * rendered on first use. A race to render an entry is benign, as both threads produce the same string.
+         */
+        private final String[] prefixes = new String[Statistic.values().length + 1];
+        private final String[] suffixes = new String[Statistic.values().length + 1];
+
+        RenderedId(NamingConvention convention) {
+            this.convention = convention;
+        }
+
+        String prefix(@Nullable Statistic stat) {
+            int i = stat == null ? 0 : stat.ordinal() + 1;
+            String prefix = prefixes[i];
+            if (prefix == null) {
+                switch (flavor) {
+                    case Etsy:
+                        prefix = nameMapper.toHierarchicalName(stat != null ? id.withTag(stat) : id, convention) + ":";
+                        break;
+                    case Telegraf:
+                        prefix = name() + tags(stat, "=", ",") + ":";
+                        break;
+                    case Datadog:
+                    default:
+                        prefix = name() + ":";
+                }
+                prefixes[i] = prefix;
+            }
+            return prefix;
+        }
+
+        String suffix(@Nullable Statistic stat) {
+            int i = stat == null ? 0 : stat.ordinal() + 1;
+            String suffix = suffixes[i];
+            if (suffix == null) {
+                suffix = flavor == StatsdFlavor.Datadog ? tags(stat, ":", "|#") : "";
+                suffixes[i] = suffix;
+            }
+            return suffix;
+        }
+
+        private String name() {
+            return convention.name(id.getName(), id.getType(), id.getBaseUnit());
+        }
+
+        /**
+         * Datadog: |#statistic:count,service:payroll,region:us-west
+         * Telegraf: ,statistic=count,service=payroll,region=us-west
+         */
+        private String tags(@Nullable Statistic stat, String keyValueSeparator, String preamble) {
+            StringBuilder tags = new StringBuilder();
+            if (stat != null) {
+                tags.append("statistic").append(keyValueSeparator).append(decapitalize(stat.toString()));
+            }
+            for (Tag tag : id.getConventionTags(convention)) {
+                if (tags.length() > 0) {
+                    tags.append(',');
+                }
+                tags.append(tag.getKey()).append(keyValueSeparator).append(tag.getValue());
+            }
+            return tags.length() == 0 ? "" : preamble + tags;
         }
     }
 }
@@ -18,24 +18,34 @@ package io.micrometer.statsd;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.config.NamingConvention;
 import io.micrometer.core.instrument.histogram.HistogramConfig;
+import io.micrometer.core.instrument.histogram.HistogramSnapshotCache;
 import io.micrometer.core.instrument.histogram.pause.PauseDetector;
 import io.micrometer.core.instrument.internal.DefaultMeter;
 import io.micrometer.core.instrument.util.HierarchicalNameMapper;
 import io.micrometer.core.instrument.util.TimeUtils;
 import io.micrometer.core.lang.Nullable;
+import io.micrometer.statsd.internal.BoundedLineQueue;
+import io.micrometer.statsd.internal.BufferingFlux;
+import io.micrometer.statsd.internal.UnixStreamClient;
 import reactor.core.Disposable;
 import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.publisher.UnicastProcessor;
 import reactor.ipc.netty.NettyPipeline;
 import reactor.ipc.netty.udp.UdpClient;
-import reactor.util.concurrent.Queues;
+import reactor.util.Logger;
+import reactor.util.Loggers;
 
 import java.text.DecimalFormat;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 import java.util.function.ToDoubleFunction;
 import java.util.function.ToLongFunction;
 
@@ -43,13 +53,19 @@ import java.util.function.ToLongFunction;
  * @author Jon Schneider
  */
 public class StatsdMeterRegistry extends MeterRegistry {
+    private static final Logger logger = Loggers.getLogger(StatsdMeterRegistry.class);
+
     private final StatsdConfig statsdConfig;
     private final HierarchicalNameMapper nameMapper;
-    private final Collection<StatsdPollable> pollableMeters = Collections.synchronizedCollection(new LinkedList<>());
+    private final StatsdPollables pollableMeters;
 
     private volatile UnicastProcessor<String> publisher;
-    private Disposable.Swap udpClient = Disposables.swap();
+    private final LongAdder packetsSent = new LongAdder();
+    private final LongAdder linesSent = new LongAdder();
+    private Disposable.Swap client = Disposables.swap();
     private Disposable.Swap meterPoller = Disposables.swap();
+    private final List<SampleRate> sampleRates = new CopyOnWriteArrayList<>();
+    private final Map<String, Double> configuredSampleRates;
 
     public StatsdMeterRegistry(StatsdConfig config, Clock clock) {
         this(config, HierarchicalNameMapper.DEFAULT, clock);
@@ -60,6 +76,9 @@ public class StatsdMeterRegistry extends MeterRegistry {
 
         this.statsdConfig = config;
         this.nameMapper = nameMapper;
+        this.pollableMeters = new StatsdPollables(config.pollingSlices());
+        this.configuredSampleRates = new HashMap<>(config.sampleRates());
+        configuredSampleRates.values().forEach(StatsdMeterRegistry::checkSampleRate);
 
         switch (statsdConfig.flavor()) {
             case Datadog:
@@ -72,40 +91,110 @@ public class StatsdMeterRegistry extends MeterRegistry {
                 config().namingConvention(NamingConvention.camelCase);
         }
 
-        this.publisher = UnicastProcessor.create(Queues.<String>get(statsdConfig.queueSize()).get());
-        gauge("statsd.queue.size", this.publisher, UnicastProcessor::size);
-        gauge("statsd.queue.capacity", this.publisher, UnicastProcessor::getBufferSize);
+        // meters offer to the queue from whichever thread records to them, so it must tolerate concurrent producers
+        BoundedLineQueue queue = new BoundedLineQueue(statsdConfig.queueSize(), statsdConfig.queueOverflowPolicy(),
+            statsdConfig.queueOfferTimeout());
+        this.publisher = UnicastProcessor.create(queue);
+        gauge("statsd.queue.size", queue, BoundedLineQueue::size);
+        gauge("statsd.queue.capacity", queue, BoundedLineQueue::capacity);
+        more().counter("statsd.queue.dropped", Tags.zip("policy", statsdConfig.queueOverflowPolicy().name()),
+            queue, BoundedLineQueue::dropped);
+
+        // polled rather than updated per packet, so that sending a packet doesn't itself produce more lines to send
+        more().counter("statsd.packets.sent", Collections.emptyList(), packetsSent, LongAdder::doubleValue);
+        more().counter("statsd.lines.sent", Collections.emptyList(), linesSent, LongAdder::doubleValue);
+        gauge("statsd.lines.per.packet", this, r -> {
+            double packets = r.packetsSent.doubleValue();
+            return packets == 0 ? 0 : r.linesSent.doubleValue() / packets;
+        });
 
         if (config.enabled())
             start();
     }
 
     public void start() {
-        UdpClient.create(statsdConfig.host(), statsdConfig.port())
-            .newHandler((in, out) -> out
-                .options(NettyPipeline.SendOptions::flushOnEach)
-                .sendString(publisher)
-                .neverComplete()
-            )
-            .subscribe(client -> {
-                this.udpClient.replace(client);
-
-                // now that we're connected, start polling gauges
-                meterPoller.replace(Flux.interval(statsdConfig.pollingFrequency())
-                    .doOnEach(n -> {
-                        synchronized (pollableMeters) {
-                            pollableMeters.forEach(StatsdPollable::poll);
-                        }
-                    })
-                    .subscribe());
+        Flux<String> packets = BufferingFlux.create(publisher, statsdConfig.maxPacketLength(), statsdConfig.linger())
+            .map(lines -> {
+                packetsSent.increment();
+                linesSent.add(lines.size());
+                return String.join("\n", lines);
             });
+
+        Mono<? extends Disposable> connection;
+        switch (statsdConfig.protocol()) {
+            case UnixStream:
+                connection = UnixStreamClient.connect(statsdConfig.socketPath(), packets,
+                    statsdConfig.flavor() == StatsdFlavor.Datadog);
+                break;
+            case Udp:
+            default:
+                connection = UdpClient.create(statsdConfig.host(), statsdConfig.port())
+                    .newHandler((in, out) -> out
+                        .options(NettyPipeline.SendOptions::flushOnEach)
+                        .sendString(packets)
+                        .neverComplete()
+                    );
+        }
+
+        connection.subscribe(client -> {
+            this.client.replace(client);
+
+            // now that we're connected, start polling gauges, one slice per tick so that each is polled once per interval
+            meterPoller.replace(Flux.interval(statsdConfig.pollingFrequency().dividedBy(pollableMeters.slices()))
+                .doOnNext(pollableMeters::poll)
+                .subscribe());
+        }, e -> logger.warn("Failed to start sending metrics to StatsD", e));
     }
 
     public void stop() {
-        udpClient.dispose();
+        client.dispose();
         meterPoller.dispose();
     }
 
+    /**
+     * Send only a random fraction of the lines recorded to counters, timers and distribution summaries whose ids
+     * match {@code meters}. Lines are annotated with the rate so that the agent can scale counts back up, while the
+     * meters' own counts and totals remain exact. Applies to meters registered after this call. When several rules
+     * match a meter, the one added first wins, and any rule added here wins over {@link StatsdConfig#sampleRates()},
+     * which covers meters registered before user code runs. Has no effect in {@link StatsdPublishingMode#Aggregated} mode, which
+     * samples on its own.
+     *
+     * @param meters     Determines which meters are sampled.
+     * @param sampleRate The fraction of lines to send, greater than 0 and at most 1.
+     * @return This registry.
+     */
+    public StatsdMeterRegistry sampleRate(Predicate<Meter.Id> meters, double sampleRate) {
+        checkSampleRate(sampleRate);
+        sampleRates.add(new SampleRate(meters, sampleRate));
+        return this;
+    }
+
+    private static void checkSampleRate(double sampleRate) {
+        if (!(sampleRate > 0 && sampleRate <= 1))
+            throw new IllegalArgumentException("Sample rate must be greater than 0 and at most 1, but was " + sampleRate);
+    }
+
+    private double sampleRate(Meter.Id id) {
+        for (SampleRate rate : sampleRates) {
+            if (rate.meters.test(id))
+                return rate.sampleRate;
+        }
+
+        if (!configuredSampleRates.isEmpty()) {
+            for (String name = id.getName(); ; name = name.substring(0, name.lastIndexOf('.'))) {
+                Double rate = configuredSampleRates.get(name);
+                if (rate != null)
+                    return rate;
+                if (name.indexOf('.') < 0)
+                    break;
+            }
+            Double all = configuredSampleRates.get("all");
+            if (all != null)
+                return all;
+        }
+        return 1;
+    }
+
     @Override
     protected <T> Gauge newGauge(Meter.Id id, @Nullable T obj, ToDoubleFunction<T> f) {
         StatsdGauge<T> gauge = new StatsdGauge<>(id, lineBuilder(id), publisher, obj, f);
@@ -115,7 +204,10 @@ public class StatsdMeterRegistry extends MeterRegistry {
 
     @Override
     protected Counter newCounter(Meter.Id id) {
-        return new StatsdCounter(id, lineBuilder(id), publisher);
+        StatsdCounter counter = new StatsdCounter(id, lineBuilder(id), publisher, statsdConfig.publishingMode(), sampleRate(id));
+        if (statsdConfig.publishingMode() == StatsdPublishingMode.Aggregated)
+            pollableMeters.add(counter);
+        return counter;
     }
 
     @Override
@@ -130,22 +222,28 @@ public class StatsdMeterRegistry extends MeterRegistry {
     @SuppressWarnings("ConstantConditions")
     @Override
     protected Timer newTimer(Meter.Id id, HistogramConfig histogramConfig, PauseDetector pauseDetector) {
-        Timer timer = new StatsdTimer(id, lineBuilder(id), publisher, clock, histogramConfig, pauseDetector, getBaseTimeUnit(),
-            statsdConfig.step().toMillis());
+        StatsdTimer timer = new StatsdTimer(id, lineBuilder(id), publisher, clock, histogramConfig, pauseDetector, getBaseTimeUnit(),
+            statsdConfig.step().toMillis(), statsdConfig.publishingMode(), statsdConfig.aggregationSampleSize(), sampleRate(id));
+        if (statsdConfig.publishingMode() == StatsdPublishingMode.Aggregated)
+            pollableMeters.add(timer);
+
+        // percentile gauges and bucket counters are polled together, so they can share a snapshot for the interval
+        HistogramSnapshotCache snapshots = new HistogramSnapshotCache(clock, statsdConfig.pollingFrequency(),
+            () -> timer.takeSnapshot(false));
 
         for (double percentile : histogramConfig.getPercentiles()) {
             switch (statsdConfig.flavor()) {
                 case Datadog:
                     gauge(id.getName() + "." + percentileFormat.format(percentile * 100) + "percentile", timer,
-                        t -> t.percentile(percentile, getBaseTimeUnit()));
+                        t -> TimeUtils.nanosToUnit(snapshots.percentile(percentile), getBaseTimeUnit()));
                     break;
                 case Telegraf:
                     gauge(id.getName() + "." + percentileFormat.format(percentile * 100) + ".percentile", timer,
-                        t -> t.percentile(percentile, getBaseTimeUnit()));
+                        t -> TimeUtils.nanosToUnit(snapshots.percentile(percentile), getBaseTimeUnit()));
                     break;
                 case Etsy:
                     gauge(id.getName(), Tags.concat(getConventionTags(id), "percentile", percentileFormat.format(percentile * 100)),
-                        timer, t -> t.percentile(percentile, getBaseTimeUnit()));
+                        timer, t -> TimeUtils.nanosToUnit(snapshots.percentile(percentile), getBaseTimeUnit()));
                     break;
             }
         }
@@ -154,7 +252,7 @@ public class StatsdMeterRegistry extends MeterRegistry {
             for (Long bucket : histogramConfig.getHistogramBuckets(false)) {
                 more().counter(id.getName() + ".histogram", Tags.concat(getConventionTags(id), "bucket",
                     percentileFormat.format(TimeUtils.nanosToUnit(bucket, TimeUnit.MILLISECONDS))),
-                    timer, s -> s.histogramCountAtValue(bucket));
+                    timer, s -> snapshots.histogramCountAtValue(bucket));
             }
         }
 
@@ -164,21 +262,27 @@ public class StatsdMeterRegistry extends MeterRegistry {
     @SuppressWarnings("ConstantConditions")
     @Override
     protected DistributionSummary newDistributionSummary(Meter.Id id, HistogramConfig histogramConfig) {
-        DistributionSummary summary = new StatsdDistributionSummary(id, lineBuilder(id), publisher, clock, histogramConfig, statsdConfig.step().toMillis());
+        StatsdDistributionSummary summary = new StatsdDistributionSummary(id, lineBuilder(id), publisher, clock, histogramConfig,
+            statsdConfig.step().toMillis(), statsdConfig.publishingMode(), statsdConfig.aggregationSampleSize(), sampleRate(id));
+        if (statsdConfig.publishingMode() == StatsdPublishingMode.Aggregated)
+            pollableMeters.add(summary);
+
+        HistogramSnapshotCache snapshots = new HistogramSnapshotCache(clock, statsdConfig.pollingFrequency(),
+            () -> summary.takeSnapshot(false));
 
         for (double percentile : histogramConfig.getPercentiles()) {
             switch (statsdConfig.flavor()) {
                 case Datadog:
                     gauge(id.getName() + "." + percentileFormat.format(percentile * 100) + "percentile", summary,
-                        s -> s.percentile(percentile));
+                        s -> snapshots.percentile(percentile));
                     break;
                 case Telegraf:
                     gauge(id.getName() + "." + percentileFormat.format(percentile * 100) + ".percentile", summary,
-                        s -> s.percentile(percentile));
+                        s -> snapshots.percentile(percentile));
                     break;
                 case Etsy:
                     gauge(id.getName(), Tags.concat(getConventionTags(id), "percentile", percentileFormat.format(percentile * 100)),
-                        summary, s -> s.percentile(percentile));
+                        summary, s -> snapshots.percentile(percentile));
                     break;
             }
         }
@@ -186,7 +290,7 @@ public class StatsdMeterRegistry extends MeterRegistry {
         if (histogramConfig.isPublishingHistogram()) {
             for (Long bucket : histogramConfig.getHistogramBuckets(false)) {
                 more().counter(id.getName() + ".histogram", Tags.concat(getConventionTags(id), "bucket",
-                    Long.toString(bucket)), summary, s -> s.histogramCountAtValue(bucket));
+                    Long.toString(bucket)), summary, s -> snapshots.histogramCountAtValue(bucket));
             }
         }
 
@@ -203,7 +307,7 @@ public class StatsdMeterRegistry extends MeterRegistry {
     @Override
     protected <T> FunctionTimer newFunctionTimer(Meter.Id id, T obj, ToLongFunction<T> countFunction, ToDoubleFunction<T> totalTimeFunction, TimeUnit totalTimeFunctionUnits) {
         StatsdFunctionTimer ft = new StatsdFunctionTimer<>(id, obj, countFunction, totalTimeFunction, totalTimeFunctionUnits,
-            getBaseTimeUnit(), lineBuilder(id), publisher);
+            getBaseTimeUnit(), lineBuilder(id), publisher, statsdConfig.publishingMode());
         pollableMeters.add(ft);
         return ft;
     }
@@ -245,4 +349,14 @@ public class StatsdMeterRegistry extends MeterRegistry {
             .build()
             .merge(HistogramConfig.DEFAULT);
     }
+
+    private static class SampleRate {
+        private final Predicate<Meter.Id> meters;
+        private final double sampleRate;
+
+        SampleRate(Predicate<Meter.Id> meters, double sampleRate) {
+            this.meters = meters;
+            this.sampleRate = sampleRate;
+        }
+    }
 }
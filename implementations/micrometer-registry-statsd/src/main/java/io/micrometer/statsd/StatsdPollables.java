@@ -0,0 +1,58 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The meters a {@link StatsdMeterRegistry} polls, divided round-robin into slices that are polled in turn so that
+ * the lines of a very large set of meters are spread across the polling interval rather than sent in one burst.
+ * Registration and polling never block one another.
+ */
+class StatsdPollables {
+    private final Queue<StatsdPollable>[] slices;
+    private final AtomicInteger registered = new AtomicInteger(0);
+
+    @SuppressWarnings("unchecked")
+    StatsdPollables(int slices) {
+        if (slices < 1)
+            throw new IllegalArgumentException("The number of polling slices must be at least 1, but was " + slices);
+        this.slices = new Queue[slices];
+        for (int i = 0; i < slices; i++) {
+            this.slices[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    void add(StatsdPollable pollable) {
+        slices[Math.floorMod(registered.getAndIncrement(), slices.length)].add(pollable);
+    }
+
+    int slices() {
+        return slices.length;
+    }
+
+    /**
+     * Polls the slice whose turn it is on the {@code tick}-th tick. Meters registered while a slice is being polled
+     * may or may not be polled on this tick.
+     */
+    void poll(long tick) {
+        for (StatsdPollable pollable : slices[(int) (tick % slices.length)]) {
+            pollable.poll();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+/**
+ * The transport used to send lines to the StatsD agent.
+ */
+public enum StatsdProtocol {
+    /**
+     * Datagrams sent to {@link StatsdConfig#host()} and {@link StatsdConfig#port()}.
+     */
+    Udp,
+
+    /**
+     * A stream-oriented Unix domain socket at {@link StatsdConfig#socketPath()}, for agents running on the same host.
+     * Requires Netty's native epoll transport, and so Linux. For the {@link StatsdFlavor#Datadog} flavor, each packet
+     * is prefixed with its length as DogStatsD expects. For the other flavors, each packet is terminated by a newline.
+     */
+    UnixStream
+}
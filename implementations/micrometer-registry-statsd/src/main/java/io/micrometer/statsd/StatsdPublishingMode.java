@@ -0,0 +1,32 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+public enum StatsdPublishingMode {
+    /**
+     * Every counter increment, timing and distribution summary sample is sent to the agent as a line of its own,
+     * as soon as it is recorded.
+     */
+    Immediate,
+
+    /**
+     * Meters are aggregated locally and published once per {@link StatsdConfig#pollingFrequency()}. Counters
+     * send the amount they were incremented by since the last poll. Timers and distribution summaries send a
+     * uniform random sample of at most {@link StatsdConfig#aggregationSampleSize()} of the values recorded since
+     * the last poll, annotated with the rate they were sampled at so that the agent can still derive exact counts.
+     */
+    Aggregated
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+/**
+ * What happens to a line that is recorded while the queue of lines waiting to be sent is full.
+ */
+public enum StatsdQueueOverflowPolicy {
+    /**
+     * The line being recorded is discarded.
+     */
+    DropNewest,
+
+    /**
+     * The oldest line still waiting to be sent is discarded to make room for the line being recorded.
+     */
+    DropOldest,
+
+    /**
+     * The recording thread waits up to {@link StatsdConfig#queueOfferTimeout()} for room in the queue, and discards
+     * the line if none frees up in time. Recording threads only ever wait on the queue, never on network I/O.
+     */
+    Block
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A uniform random sample of fixed size of the values recorded between two polls (Vitter's algorithm R).
+ * <p>
+ * Recording takes no lock: a value claims its position with an atomic counter and is stored as the bits of a double.
+ * Draining swaps in a new sample, so a value recorded while the sample it was counted in is being drained may be
+ * left out of what is sent. Meters keep their own exact counts and totals, so only the sample is affected.
+ */
+class StatsdSampleReservoir {
+    /**
+     * Marks a slot whose value has not been stored yet. Recorded values are never negative, so never have these bits.
+     */
+    private static final long EMPTY = Double.doubleToRawLongBits(-1);
+
+    private final int size;
+    private volatile Sample sample;
+
+    StatsdSampleReservoir(int size) {
+        this.size = size;
+        this.sample = new Sample(size);
+    }
+
+    void record(double value) {
+        Sample s = sample;
+        long n = s.count.getAndIncrement();
+        if (n < size) {
+            s.values.set((int) n, Double.doubleToRawLongBits(value));
+        } else {
+            long i = ThreadLocalRandom.current().nextLong(n + 1);
+            if (i < size)
+                s.values.set((int) i, Double.doubleToRawLongBits(value));
+        }
+    }
+
+    /**
+     * Hands every sampled value to {@code consumer} along with the rate at which values were sampled, and starts
+     * a new sample.
+     */
+    synchronized void drain(SampleConsumer consumer) {
+        Sample s = sample;
+        if (s.count.get() == 0)
+            return;
+        sample = new Sample(size);
+
+        long sampledFrom = s.count.get();
+        int slots = (int) Math.min(sampledFrom, size);
+        double[] sampled = new double[slots];
+        int n = 0;
+        for (int i = 0; i < slots; i++) {
+            long bits = s.values.get(i);
+            if (bits != EMPTY)
+                sampled[n++] = Double.longBitsToDouble(bits);
+        }
+
+        double sampleRate = (double) n / sampledFrom;
+        for (int i = 0; i < n; i++) {
+            consumer.accept(sampled[i], sampleRate);
+        }
+    }
+
+    private static class Sample {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLongArray values;
+
+        Sample(int size) {
+            this.values = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                values.set(i, EMPTY);
+            }
+        }
+    }
+
+    interface SampleConsumer {
+        void accept(double value, double sampleRate);
+    }
+}
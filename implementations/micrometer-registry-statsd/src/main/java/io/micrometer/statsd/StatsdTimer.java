@@ -22,26 +22,38 @@ import io.micrometer.core.instrument.histogram.HistogramConfig;
 import io.micrometer.core.instrument.histogram.pause.PauseDetector;
 import io.micrometer.core.instrument.step.StepDouble;
 import io.micrometer.core.instrument.util.TimeUtils;
+import io.micrometer.core.lang.Nullable;
 import org.reactivestreams.Processor;
 
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.DoubleAdder;
 import java.util.concurrent.atomic.LongAdder;
 
-public class StatsdTimer extends AbstractTimer implements Timer {
+public class StatsdTimer extends AbstractTimer implements Timer, StatsdPollable {
     private final LongAdder count = new LongAdder();
     private final DoubleAdder totalTime = new DoubleAdder();
     private StepDouble max;
 
     private final StatsdLineBuilder lineBuilder;
     private final Processor<String, String> publisher;
+    private final double sampleRate;
+
+    /**
+     * Only present when aggregating.
+     */
+    @Nullable
+    private final StatsdSampleReservoir reservoir;
 
     StatsdTimer(Id id, StatsdLineBuilder lineBuilder, Processor<String, String> publisher, Clock clock,
-                HistogramConfig histogramConfig, PauseDetector pauseDetector, TimeUnit baseTimeUnit, long stepMillis) {
+                HistogramConfig histogramConfig, PauseDetector pauseDetector, TimeUnit baseTimeUnit, long stepMillis,
+                StatsdPublishingMode mode, int sampleSize, double sampleRate) {
         super(id, clock, histogramConfig, pauseDetector, baseTimeUnit);
         this.max = new StepDouble(clock, stepMillis);
         this.lineBuilder = lineBuilder;
         this.publisher = publisher;
+        this.sampleRate = sampleRate;
+        this.reservoir = mode == StatsdPublishingMode.Aggregated ? new StatsdSampleReservoir(sampleSize) : null;
     }
 
     @Override
@@ -55,10 +67,19 @@ public class StatsdTimer extends AbstractTimer implements Timer {
             // not necessary to ship max, as most StatsD agents calculate this themselves
             max.getCurrent().add(Math.max(msAmount - max.getCurrent().doubleValue(), 0));
 
-            publisher.onNext(lineBuilder.timing(msAmount));
+            if (reservoir != null)
+                reservoir.record(msAmount);
+            else if (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate)
+                publisher.onNext(lineBuilder.timing(msAmount, sampleRate));
         }
     }
 
+    @Override
+    public void poll() {
+        if (reservoir != null)
+            reservoir.drain((msAmount, sampleRate) -> publisher.onNext(lineBuilder.timing(msAmount, sampleRate)));
+    }
+
     @Override
     public long count() {
         return count.longValue();
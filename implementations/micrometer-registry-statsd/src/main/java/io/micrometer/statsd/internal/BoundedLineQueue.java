@@ -0,0 +1,189 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd.internal;
+
+import io.micrometer.core.lang.Nullable;
+import io.micrometer.statsd.StatsdQueueOverflowPolicy;
+
+import java.time.Duration;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free queue of lines waiting to be sent, safe for any number of recording threads to offer to concurrently,
+ * that holds at most {@code capacity} lines. Offers never fail: when the queue is full, lines are discarded according
+ * to a {@link StatsdQueueOverflowPolicy} and counted in {@link #dropped()}.
+ */
+public class BoundedLineQueue extends AbstractQueue<String> {
+    private static final long BLOCKED_PARK_NANOS = 50_000;
+
+    private final ConcurrentLinkedQueue<String> lines = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Tracked separately because {@link ConcurrentLinkedQueue#size()} is linear in the size of the queue, and
+     * because reserving a slot here before enqueueing is what keeps the queue bounded without a lock.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder dropped = new LongAdder();
+    private final int capacity;
+    private final StatsdQueueOverflowPolicy overflowPolicy;
+    private final long offerTimeoutNanos;
+
+    public BoundedLineQueue(int capacity, StatsdQueueOverflowPolicy overflowPolicy, Duration offerTimeout) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The queue capacity must be at least 1, but was " + capacity);
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+    }
+
+    /**
+     * @param line The line to enqueue.
+     * @return Always {@code true}, even when the line or another line was discarded to respect the capacity.
+     */
+    @Override
+    public boolean offer(String line) {
+        if (tryOffer(line))
+            return true;
+
+        switch (overflowPolicy) {
+            case DropOldest:
+                do {
+                    if (poll() != null)
+                        dropped.increment();
+                } while (!tryOffer(line));
+                return true;
+            case Block:
+                long deadline = System.nanoTime() + offerTimeoutNanos;
+                do {
+                    if (System.nanoTime() - deadline >= 0) {
+                        dropped.increment();
+                        return true;
+                    }
+                    LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+                } while (!tryOffer(line));
+                return true;
+            case DropNewest:
+            default:
+                dropped.increment();
+                return true;
+        }
+    }
+
+    private boolean tryOffer(String line) {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity)
+                return false;
+        } while (!size.compareAndSet(current, current + 1));
+
+        lines.offer(line);
+        return true;
+    }
+
+    @Override
+    public String poll() {
+        String line = lines.poll();
+        if (line != null)
+            size.decrementAndGet();
+        return line;
+    }
+
+    @Override
+    public String peek() {
+        return lines.peek();
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // discard
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return lines.contains(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (lines.remove(o)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A weakly consistent iterator over the queued lines, whose {@link Iterator#remove()} frees the line's slot.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        Iterator<String> it = lines.iterator();
+        return new Iterator<String>() {
+            @Nullable
+            private String last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public String next() {
+                last = it.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null)
+                    throw new IllegalStateException();
+                // removing by value rather than through the iterator, so a line polled concurrently isn't counted twice
+                BoundedLineQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of lines discarded because the queue was full.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd.internal;
+
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Coalesces individual StatsD lines into newline-delimited packets.
+ */
+public final class BufferingFlux {
+    private BufferingFlux() {
+    }
+
+    /**
+     * @param source          Individual lines. Lines must not be empty.
+     * @param maxPacketLength The maximum size of a packet in bytes. A line that is by itself longer than this is
+     *                        still emitted, as a packet of its own.
+     * @param linger          The maximum amount of time a line waits for a packet to fill up before the partially
+     *                        filled packet is emitted anyway.
+     * @return Packets, each consisting of one or more lines.
+     */
+    public static Flux<List<String>> create(Flux<String> source, int maxPacketLength, Duration linger) {
+        return Flux.defer(() -> {
+            DirectProcessor<Void> sourceEnd = DirectProcessor.create();
+
+            // empty lines never reach the agent, they just give partially filled packets a chance to be emitted
+            // while the source is quiet
+            Flux<String> heartbeat = Flux.interval(linger)
+                .map(n -> "")
+                .takeUntilOther(sourceEnd);
+
+            return source
+                .doOnTerminate(sourceEnd::onComplete)
+                .mergeWith(heartbeat)
+                .bufferUntil(packetBoundary(maxPacketLength), true)
+                .map(lines -> {
+                    lines.removeIf(String::isEmpty);
+                    return lines;
+                })
+                .filter(lines -> !lines.isEmpty());
+        });
+    }
+
+    /**
+     * Tells whether a line starts a new packet. Every empty line does, even when no packet is pending, so that a
+     * quiet source doesn't accumulate heartbeats in the open buffer; buffers holding only a heartbeat are dropped.
+     */
+    static Predicate<String> packetBoundary(int maxPacketLength) {
+        AtomicInteger packetLength = new AtomicInteger(0);
+        return line -> {
+            if (line.isEmpty()) {
+                packetLength.set(0);
+                return true;
+            }
+
+            int current = packetLength.get();
+            int lineLength = utf8Length(line);
+            if (current > 0 && current + 1 + lineLength > maxPacketLength) {
+                packetLength.set(lineLength);
+                return true;
+            }
+
+            packetLength.set(current == 0 ? lineLength : current + 1 + lineLength);
+            return false;
+        };
+    }
+
+    /**
+     * The number of bytes {@code s} occupies when encoded as UTF-8, without encoding it.
+     */
+    static int utf8Length(CharSequence s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
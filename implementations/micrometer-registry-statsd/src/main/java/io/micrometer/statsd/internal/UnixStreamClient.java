@@ -0,0 +1,271 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd.internal;
+
+import io.micrometer.core.lang.Nullable;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes packets to a StatsD agent listening on a stream-oriented Unix domain socket, using Netty's native epoll
+ * transport since reactor-netty has no support for domain sockets. Like the UDP transport, packets are only requested
+ * from the source while the socket is writable, so a slow agent backs lines up into the registry's queue rather than
+ * into unbounded socket buffers.
+ * <p>
+ * The source is subscribed to once, for the lifetime of the client, while the socket underneath it is reconnected
+ * with exponential backoff whenever connecting fails or the agent closes it, e.g. because it restarted. While
+ * disconnected, nothing is requested from the source.
+ */
+public final class UnixStreamClient {
+    private static final Logger logger = Loggers.getLogger(UnixStreamClient.class);
+
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    private UnixStreamClient() {
+    }
+
+    /**
+     * @param path           The path of the agent's socket.
+     * @param packets        Newline-delimited packets to send.
+     * @param lengthPrefixed Whether each packet is framed with a preceding 4-byte little-endian length, as DogStatsD
+     *                       expects, rather than by a trailing newline.
+     * @return A handle, emitted right away rather than once connected, that stops sending and closes the socket when
+     * disposed. Errors only when the native transport is unavailable.
+     */
+    public static Mono<Disposable> connect(String path, Flux<String> packets, boolean lengthPrefixed) {
+        return Mono.fromCallable(() -> {
+            if (!Epoll.isAvailable()) {
+                throw new IllegalStateException("Unix domain sockets require Netty's native epoll transport " +
+                    "(io.netty:netty-transport-native-epoll with the linux-x86_64 classifier)", Epoll.unavailabilityCause());
+            }
+
+            ReconnectingClient client = new ReconnectingClient(path, lengthPrefixed);
+            client.connect();
+            packets.subscribe(client.subscriber);
+            return client;
+        });
+    }
+
+    private static class ReconnectingClient implements Disposable {
+        private final String path;
+        private final EventLoopGroup group = new EpollEventLoopGroup(1, new DefaultThreadFactory("statsd-uds", true));
+        private final PacketSubscriber subscriber;
+        private final Bootstrap bootstrap;
+
+        private volatile boolean disposed;
+
+        /**
+         * Only one connection attempt is in flight at a time, so this is never updated concurrently.
+         */
+        private volatile long backoffMillis = INITIAL_BACKOFF_MILLIS;
+
+        ReconnectingClient(String path, boolean lengthPrefixed) {
+            this.path = path;
+            this.subscriber = new PacketSubscriber(lengthPrefixed, this);
+            this.bootstrap = new Bootstrap()
+                .group(group)
+                .channel(EpollDomainSocketChannel.class)
+                .handler(subscriber.writabilityHandler);
+        }
+
+        void connect() {
+            if (disposed)
+                return;
+
+            bootstrap.connect(new DomainSocketAddress(path)).addListener((ChannelFutureListener) connected -> {
+                if (!connected.isSuccess()) {
+                    logger.warn("Failed to connect to the StatsD agent at {}, retrying in {}ms: {}", path, backoffMillis,
+                        connected.cause().toString());
+                    reconnectLater();
+                    return;
+                }
+
+                Channel channel = connected.channel();
+                if (disposed) {
+                    channel.close();
+                    return;
+                }
+
+                backoffMillis = INITIAL_BACKOFF_MILLIS;
+                channel.closeFuture().addListener(closed -> {
+                    subscriber.disconnected(channel);
+                    if (!disposed) {
+                        logger.warn("Connection to the StatsD agent at {} closed, reconnecting in {}ms", path, backoffMillis);
+                        reconnectLater();
+                    }
+                });
+                subscriber.connected(channel);
+            });
+        }
+
+        private void reconnectLater() {
+            if (disposed)
+                return;
+            try {
+                group.schedule(this::connect, backoffMillis, TimeUnit.MILLISECONDS);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            } catch (RejectedExecutionException ignored) {
+                // shutting down
+            }
+        }
+
+        @Override
+        public void dispose() {
+            if (disposed)
+                return;
+            disposed = true;
+            subscriber.dispose();
+            group.shutdownGracefully();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+    }
+
+    private static class PacketSubscriber extends BaseSubscriber<String> {
+        private final boolean lengthPrefixed;
+        private final Disposable client;
+        private final AtomicBoolean awaitingWritability = new AtomicBoolean(false);
+
+        /**
+         * A packet that arrived while disconnected, written once connected again. There is at most one, since packets
+         * are requested one at a time.
+         */
+        private final AtomicReference<String> pending = new AtomicReference<>();
+
+        @Nullable
+        private volatile Channel channel;
+
+        /**
+         * Shared by every channel connected over the lifetime of the client.
+         */
+        private final ChannelInboundHandlerAdapter writabilityHandler = new WritabilityHandler();
+
+        @ChannelHandler.Sharable
+        private class WritabilityHandler extends ChannelInboundHandlerAdapter {
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+                resume();
+                super.channelWritabilityChanged(ctx);
+            }
+        }
+
+        PacketSubscriber(boolean lengthPrefixed, Disposable client) {
+            this.lengthPrefixed = lengthPrefixed;
+            this.client = client;
+        }
+
+        void connected(Channel channel) {
+            this.channel = channel;
+            resume();
+        }
+
+        void disconnected(Channel channel) {
+            if (this.channel == channel)
+                this.channel = null;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(1);
+        }
+
+        @Override
+        protected void hookOnNext(String packet) {
+            // a packet written to a channel that is closing concurrently is lost, like any other packet in flight
+            // when the agent goes away
+            Channel c = channel;
+            if (c != null)
+                write(c, packet);
+            else
+                pending.set(packet);
+
+            // flag first, so that a writability change racing with the check below still leads to exactly one request
+            awaitingWritability.set(true);
+            resume();
+        }
+
+        /**
+         * Writes any pending packet and requests the next one, if connected and writable.
+         */
+        private void resume() {
+            Channel c = channel;
+            if (c == null || !c.isWritable())
+                return;
+
+            String p = pending.getAndSet(null);
+            if (p != null)
+                write(c, p);
+
+            if (c.isWritable() && awaitingWritability.compareAndSet(true, false))
+                request(1);
+        }
+
+        private void write(Channel c, String packet) {
+            ByteBuf buf = c.alloc().buffer(BufferingFlux.utf8Length(packet) + 4);
+            if (lengthPrefixed) {
+                buf.writeIntLE(0);
+                int length = ByteBufUtil.writeUtf8(buf, packet);
+                buf.setIntLE(0, length);
+            } else {
+                ByteBufUtil.writeUtf8(buf, packet);
+                buf.writeByte('\n');
+            }
+            c.writeAndFlush(buf, c.voidPromise());
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            logger.warn("StatsD lines are no longer being sent to the agent", throwable);
+        }
+
+        @Override
+        protected void hookFinally(SignalType type) {
+            client.dispose();
+            Channel c = channel;
+            if (c != null)
+                c.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.histogram.HistogramConfig;
+import io.micrometer.core.instrument.histogram.pause.NoPauseDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.core.instrument.util.HierarchicalNameMapper;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.UnicastProcessor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsdAggregationTest {
+    private final MockClock clock = new MockClock();
+    private final UnicastProcessor<String> publisher = UnicastProcessor.create();
+
+    @Test
+    void countersPublishOnePerPoll() {
+        Meter.Id id = id("my.counter", Meter.Type.Counter);
+        StatsdCounter counter = new StatsdCounter(id, lineBuilder(id), publisher,
+            StatsdPublishingMode.Aggregated, 1);
+
+        counter.increment();
+        counter.increment(1.5);
+        counter.poll();
+        counter.poll();
+        counter.increment(0.5);
+        counter.poll();
+
+        assertThat(lines()).containsExactly("my.counter:2|c|#statistic:count", "my.counter:1|c|#statistic:count");
+    }
+
+    @Test
+    void timersPublishSampledLinesPerPoll() {
+        Meter.Id id = id("my.timer", Meter.Type.Timer);
+        StatsdTimer timer = new StatsdTimer(id, lineBuilder(id), publisher, clock,
+            HistogramConfig.DEFAULT, new NoPauseDetector(), TimeUnit.MILLISECONDS, 60000, StatsdPublishingMode.Aggregated, 2, 1);
+
+        for (int i = 0; i < 8; i++) {
+            timer.record(1, TimeUnit.MILLISECONDS);
+        }
+        timer.poll();
+        timer.record(1, TimeUnit.MILLISECONDS);
+        timer.poll();
+        timer.poll();
+
+        assertThat(timer.count()).isEqualTo(9);
+        assertThat(lines()).containsExactly("my.timer:1|ms|@0.25", "my.timer:1|ms|@0.25", "my.timer:1|ms");
+    }
+
+    @Test
+    void immediateCountersDoNotPublishOnPoll() {
+        Meter.Id id = id("my.counter", Meter.Type.Counter);
+        StatsdCounter counter = new StatsdCounter(id, lineBuilder(id), publisher,
+            StatsdPublishingMode.Immediate, 1);
+
+        counter.increment();
+        counter.poll();
+
+        assertThat(lines()).containsExactly("my.counter:1|c|#statistic:count");
+    }
+
+    private Meter.Id id(String name, Meter.Type type) {
+        return new Meter.Id(name, Tags.zip(), null, null, type);
+    }
+
+    private StatsdLineBuilder lineBuilder(Meter.Id id) {
+        return new StatsdLineBuilder(id, StatsdFlavor.Datadog, HierarchicalNameMapper.DEFAULT,
+            new SimpleMeterRegistry().config().namingConvention(NamingConvention.dot));
+    }
+
+    private List<String> lines() {
+        publisher.onComplete();
+        return publisher.collectList().block();
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.core.instrument.util.HierarchicalNameMapper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsdLineBuilderTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Meter.Id id = new Meter.Id("my.meter", Tags.zip("my.tag", "val"), null, null, Meter.Type.Other);
+
+    @ParameterizedTest
+    @EnumSource(StatsdFlavor.class)
+    void lines(StatsdFlavor flavor) {
+        registry.config().namingConvention(NamingConvention.dot);
+        StatsdLineBuilder lb = new StatsdLineBuilder(id, flavor, HierarchicalNameMapper.DEFAULT, registry.config());
+
+        switch (flavor) {
+            case Etsy:
+                assertThat(lb.count(2)).isEqualTo("my.meter.my.tag.val.statistic.count:2|c");
+                assertThat(lb.gauge(1.5, Statistic.ActiveTasks)).isEqualTo("my.meter.my.tag.val.statistic.activeTasks:1.5|g");
+                assertThat(lb.timing(0.25, 0.5)).isEqualTo("my.meter.my.tag.val:0.25|ms|@0.5");
+                break;
+            case Datadog:
+                assertThat(lb.count(2)).isEqualTo("my.meter:2|c|#statistic:count,my.tag:val");
+                assertThat(lb.gauge(1.5, Statistic.ActiveTasks)).isEqualTo("my.meter:1.5|g|#statistic:activeTasks,my.tag:val");
+                assertThat(lb.timing(0.25, 0.5)).isEqualTo("my.meter:0.25|ms|@0.5|#my.tag:val");
+                break;
+            case Telegraf:
+                assertThat(lb.count(2)).isEqualTo("my.meter,statistic=count,my.tag=val:2|c");
+                assertThat(lb.gauge(1.5, Statistic.ActiveTasks)).isEqualTo("my.meter,statistic=activeTasks,my.tag=val:1.5|g");
+                assertThat(lb.timing(0.25, 0.5)).isEqualTo("my.meter,my.tag=val:0.25|ms|@0.5");
+                break;
+        }
+    }
+
+    @Test
+    void changingNamingConventionRerendersLines() {
+        registry.config().namingConvention(NamingConvention.dot);
+        StatsdLineBuilder lb = new StatsdLineBuilder(id, StatsdFlavor.Datadog, HierarchicalNameMapper.DEFAULT, registry.config());
+        assertThat(lb.histogram(1)).isEqualTo("my.meter:1|h|#my.tag:val");
+
+        registry.config().namingConvention(NamingConvention.snakeCase);
+        assertThat(lb.histogram(1)).isEqualTo("my_meter:1|h|#my_tag:val");
+    }
+}
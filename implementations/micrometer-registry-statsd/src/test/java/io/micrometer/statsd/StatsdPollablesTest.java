@@ -0,0 +1,61 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsdPollablesTest {
+    @Test
+    void eachPollableIsPolledOncePerRoundOfSlices() {
+        StatsdPollables pollables = new StatsdPollables(3);
+        AtomicInteger[] polls = new AtomicInteger[10];
+        for (int i = 0; i < polls.length; i++) {
+            AtomicInteger p = polls[i] = new AtomicInteger();
+            pollables.add(p::incrementAndGet);
+        }
+
+        AtomicInteger polledOnFirstTick = new AtomicInteger();
+        pollables.poll(0);
+        for (AtomicInteger p : polls) {
+            polledOnFirstTick.addAndGet(p.get());
+        }
+        assertThat(polledOnFirstTick.get()).isEqualTo(4);
+
+        pollables.poll(1);
+        pollables.poll(2);
+        assertThat(polls).allMatch(p -> p.get() == 1);
+    }
+
+    @Test
+    void registrationDuringPollDoesNotBlockOrFail() {
+        StatsdPollables pollables = new StatsdPollables(1);
+        AtomicInteger polled = new AtomicInteger();
+
+        // each poll registers another pollable, as a gauge registered from within another gauge's function would
+        pollables.add(() -> {
+            polled.incrementAndGet();
+            pollables.add(polled::incrementAndGet);
+        });
+
+        pollables.poll(0);
+        pollables.poll(1);
+        assertThat(polled.get()).isGreaterThanOrEqualTo(3);
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.histogram.HistogramConfig;
+import io.micrometer.core.instrument.histogram.pause.NoPauseDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.core.instrument.util.HierarchicalNameMapper;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.UnicastProcessor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsdSampleRateTest {
+    private final UnicastProcessor<String> publisher = UnicastProcessor.create();
+
+    @Test
+    void sampledTimerKeepsExactLocalStatistics() {
+        Meter.Id id = new Meter.Id("my.timer", Tags.zip(), null, null, Meter.Type.Timer);
+        StatsdTimer timer = new StatsdTimer(id, lineBuilder(id), publisher, new MockClock(), HistogramConfig.DEFAULT,
+            new NoPauseDetector(), TimeUnit.MILLISECONDS, 60000, StatsdPublishingMode.Immediate, 0, 0.1);
+
+        for (int i = 0; i < 10_000; i++) {
+            timer.record(1, TimeUnit.MILLISECONDS);
+        }
+
+        assertThat(timer.count()).isEqualTo(10_000);
+        assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(10_000);
+
+        List<String> lines = lines();
+        assertThat(lines).allMatch("my.timer:1|ms|@0.1"::equals);
+        assertThat(lines.size()).isBetween(700, 1300);
+    }
+
+    @Test
+    void sampledCounterAnnotatesRate() {
+        Meter.Id id = new Meter.Id("my.counter", Tags.zip(), null, null, Meter.Type.Counter);
+        StatsdCounter counter = new StatsdCounter(id, lineBuilder(id), publisher, StatsdPublishingMode.Immediate, 0.5);
+
+        for (int i = 0; i < 1000; i++) {
+            counter.increment();
+        }
+
+        assertThat(counter.count()).isEqualTo(1000);
+        assertThat(lines()).isNotEmpty().allMatch("my.counter:1|c|@0.5|#statistic:count"::equals);
+    }
+
+    @Test
+    void sampleRatesAreChosenPerMeter() {
+        StatsdMeterRegistry registry = new StatsdMeterRegistry(k -> "statsd.enabled".equals(k) ? "false" : null, new MockClock());
+        registry.sampleRate(id -> id.getName().startsWith("hot"), 0.01);
+
+        for (int i = 0; i < 100; i++) {
+            registry.counter("hot.counter").increment();
+            registry.counter("cold.counter").increment();
+        }
+
+        assertThat(registry.counter("hot.counter").count()).isEqualTo(100);
+        assertThat(registry.counter("cold.counter").count()).isEqualTo(100);
+
+        // nothing drains the queue while the registry isn't started
+        assertThat(registry.find("statsd.queue.size").gauge().value()).isBetween(100.0, 110.0);
+    }
+
+    @Test
+    void configuredSampleRatesMatchTheLongestNamePrefix() {
+        StatsdMeterRegistry registry = new StatsdMeterRegistry(k -> {
+            switch (k) {
+                case "statsd.enabled":
+                    return "false";
+                case "statsd.sampleRates":
+                    return "hot=0.5, hot.counter=0.01, all=0.9";
+                default:
+                    return null;
+            }
+        }, new MockClock());
+
+        for (int i = 0; i < 1000; i++) {
+            registry.counter("hot.counter").increment();
+            registry.counter("hot.counter.other").increment();
+        }
+
+        // nothing drains the queue while the registry isn't started, and both counters send about 1% of their lines
+        assertThat(registry.find("statsd.queue.size").gauge().value()).isBetween(5.0, 50.0);
+    }
+
+    @Test
+    void configuredSampleRatesMustBeFractions() {
+        assertThatThrownBy(() -> new StatsdMeterRegistry(k -> "statsd.sampleRates".equals(k) ? "hot=2" : null, new MockClock()))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StatsdMeterRegistry(k -> "statsd.sampleRates".equals(k) ? "hot" : null, new MockClock()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void sampleRateMustBeAFraction() {
+        StatsdMeterRegistry registry = new StatsdMeterRegistry(k -> "statsd.enabled".equals(k) ? "false" : null, new MockClock());
+        assertThatThrownBy(() -> registry.sampleRate(id -> true, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> registry.sampleRate(id -> true, 1.5)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private StatsdLineBuilder lineBuilder(Meter.Id id) {
+        return new StatsdLineBuilder(id, StatsdFlavor.Datadog, HierarchicalNameMapper.DEFAULT,
+            new SimpleMeterRegistry().config().namingConvention(NamingConvention.dot));
+    }
+
+    private List<String> lines() {
+        publisher.onComplete();
+        return publisher.collectList().block();
+    }
+}
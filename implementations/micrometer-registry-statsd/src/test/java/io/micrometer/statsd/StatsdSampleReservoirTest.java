@@ -0,0 +1,70 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsdSampleReservoirTest {
+    @Test
+    void keepsEveryValueUntilFull() {
+        StatsdSampleReservoir reservoir = new StatsdSampleReservoir(4);
+        reservoir.record(1);
+        reservoir.record(2);
+
+        List<String> drained = new ArrayList<>();
+        reservoir.drain((value, sampleRate) -> drained.add(value + "@" + sampleRate));
+        assertThat(drained).containsExactly("1.0@1.0", "2.0@1.0");
+
+        drained.clear();
+        reservoir.drain((value, sampleRate) -> drained.add(value + "@" + sampleRate));
+        assertThat(drained).isEmpty();
+    }
+
+    @Test
+    void concurrentRecordingIsScaledBackToTheRecordedCount() throws InterruptedException {
+        StatsdSampleReservoir reservoir = new StatsdSampleReservoir(32);
+        DoubleAdder scaledCount = new DoubleAdder();
+
+        Thread[] recorders = new Thread[4];
+        for (int t = 0; t < recorders.length; t++) {
+            recorders[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    reservoir.record(5);
+                }
+            });
+            recorders[t].start();
+        }
+
+        for (Thread recorder : recorders) {
+            while (recorder.isAlive()) {
+                reservoir.drain((value, sampleRate) -> {
+                    assertThat(value).isEqualTo(5);
+                    scaledCount.add(1 / sampleRate);
+                });
+            }
+        }
+        reservoir.drain((value, sampleRate) -> scaledCount.add(1 / sampleRate));
+
+        // a value recorded while its sample is drained may be left out of it
+        assertThat(scaledCount.sum()).isBetween(390_000.0, 400_000.0);
+    }
+}
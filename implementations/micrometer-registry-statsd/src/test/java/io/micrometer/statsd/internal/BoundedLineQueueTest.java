@@ -0,0 +1,134 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd.internal;
+
+import io.micrometer.statsd.StatsdQueueOverflowPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedLineQueueTest {
+    @Test
+    void dropNewest() {
+        BoundedLineQueue queue = new BoundedLineQueue(2, StatsdQueueOverflowPolicy.DropNewest, Duration.ZERO);
+        assertThat(queue.offer("a")).isTrue();
+        assertThat(queue.offer("b")).isTrue();
+        assertThat(queue.offer("c")).isTrue();
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.dropped()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo("a");
+        assertThat(queue.poll()).isEqualTo("b");
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test
+    void dropOldest() {
+        BoundedLineQueue queue = new BoundedLineQueue(2, StatsdQueueOverflowPolicy.DropOldest, Duration.ZERO);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.dropped()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo("b");
+        assertThat(queue.poll()).isEqualTo("c");
+    }
+
+    @Test
+    void iterateAndRemove() {
+        BoundedLineQueue queue = new BoundedLineQueue(2, StatsdQueueOverflowPolicy.DropNewest, Duration.ZERO);
+        queue.offer("a");
+        queue.offer("b");
+
+        assertThat(queue).containsExactly("a", "b");
+        assertThat(queue.toString()).isEqualTo("[a, b]");
+
+        Iterator<String> it = queue.iterator();
+        it.next();
+        it.remove();
+        assertThat(queue.remove("b")).isTrue();
+        assertThat(queue.size()).isZero();
+
+        queue.offer("c");
+        queue.offer("d");
+        assertThat(queue).containsExactly("c", "d");
+        assertThat(queue.dropped()).isZero();
+    }
+
+    @Test
+    void blockUntilRoomFreesUp() throws InterruptedException {
+        BoundedLineQueue queue = new BoundedLineQueue(1, StatsdQueueOverflowPolicy.Block, Duration.ofSeconds(10));
+        queue.offer("a");
+
+        Thread consumer = new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            queue.poll();
+        });
+        consumer.start();
+
+        queue.offer("b");
+        consumer.join();
+
+        assertThat(queue.dropped()).isZero();
+        assertThat(queue.poll()).isEqualTo("b");
+    }
+
+    @Test
+    void blockDropsAfterTimeout() {
+        BoundedLineQueue queue = new BoundedLineQueue(1, StatsdQueueOverflowPolicy.Block, Duration.ofMillis(10));
+        queue.offer("a");
+        queue.offer("b");
+
+        assertThat(queue.dropped()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo("a");
+    }
+
+    @Test
+    void concurrentProducersNeverExceedCapacity() throws InterruptedException {
+        BoundedLineQueue queue = new BoundedLineQueue(1000, StatsdQueueOverflowPolicy.DropNewest, Duration.ZERO);
+
+        int producers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    queue.offer("line");
+                }
+                done.countDown();
+            });
+        }
+        done.await(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        int drained = 0;
+        while (queue.poll() != null) {
+            drained++;
+        }
+
+        assertThat(drained).isEqualTo(1000);
+        assertThat(queue.dropped()).isEqualTo(40_000 - 1000);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd.internal;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BufferingFluxTest {
+    @Test
+    void packetsAreLimitedToMaxPacketLength() {
+        // "aaa\nbbb" is exactly 7 bytes
+        StepVerifier.create(BufferingFlux.create(Flux.just("aaa", "bbb", "ccc"), 7, Duration.ofMinutes(1)))
+            .expectNext(asList("aaa", "bbb"))
+            .expectNext(singletonList("ccc"))
+            .verifyComplete();
+    }
+
+    @Test
+    void linesLongerThanMaxPacketLengthAreSentAlone() {
+        StepVerifier.create(BufferingFlux.create(Flux.just("a", "bbbbbbbbbb", "c"), 5, Duration.ofMinutes(1)))
+            .expectNext(singletonList("a"))
+            .expectNext(singletonList("bbbbbbbbbb"))
+            .expectNext(singletonList("c"))
+            .verifyComplete();
+    }
+
+    @Test
+    void partiallyFilledPacketsAreSentAfterLingering() {
+        StepVerifier
+            .withVirtualTime(() -> BufferingFlux.create(Flux.just("a", "b").concatWith(Flux.never()), 1400,
+                Duration.ofMillis(50)))
+            .expectSubscription()
+            .expectNoEvent(Duration.ofMillis(49))
+            .thenAwait(Duration.ofMillis(1))
+            .expectNext(asList("a", "b"))
+            .thenAwait(Duration.ofSeconds(1))
+            .expectNoEvent(Duration.ofSeconds(1))
+            .thenCancel()
+            .verify();
+    }
+
+    @Test
+    void linesAfterAnIdlePeriodAreSentOnceLingering() {
+        StepVerifier
+            .withVirtualTime(() -> BufferingFlux.create(Flux.just("a", "b").delaySubscription(Duration.ofMillis(10_025))
+                .concatWith(Flux.never()), 1400, Duration.ofMillis(50)))
+            .expectSubscription()
+            // two hundred heartbeats pass while the source is quiet
+            .expectNoEvent(Duration.ofMillis(10_025))
+            .thenAwait(Duration.ofMillis(25))
+            .expectNext(asList("a", "b"))
+            .thenCancel()
+            .verify();
+    }
+
+    @Test
+    void everyHeartbeatStartsANewPacket() {
+        Predicate<String> boundary = BufferingFlux.packetBoundary(1400);
+
+        // while idle, each heartbeat cuts the buffer so that it never holds more than one of them
+        assertThat(boundary.test("")).isTrue();
+        assertThat(boundary.test("")).isTrue();
+
+        assertThat(boundary.test("a")).isFalse();
+        assertThat(boundary.test("b")).isFalse();
+        assertThat(boundary.test("")).isTrue();
+    }
+}
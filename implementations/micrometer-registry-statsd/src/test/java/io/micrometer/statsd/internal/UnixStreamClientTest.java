@@ -0,0 +1,194 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.statsd.internal;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class UnixStreamClientTest {
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+    private File socket;
+    private EventLoopGroup agentLoop;
+    private Channel agent;
+    private final List<Channel> agentConnections = new CopyOnWriteArrayList<>();
+
+    /**
+     * A stand-in agent that records every byte written to its socket.
+     */
+    @BeforeEach
+    void startAgent() throws IOException, InterruptedException {
+        assumeTrue(Epoll.isAvailable(), "Netty's native epoll transport is not available");
+
+        socket = File.createTempFile("statsd", ".sock");
+        assertThat(socket.delete()).isTrue();
+
+        agentLoop = new EpollEventLoopGroup(1);
+        bindAgent();
+    }
+
+    private void bindAgent() throws InterruptedException {
+        agent = new ServerBootstrap()
+            .group(agentLoop)
+            .channel(EpollServerDomainSocketChannel.class)
+            .childHandler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    agentConnections.add(ch);
+                    ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                            ByteBuf buf = (ByteBuf) msg;
+                            byte[] bytes = new byte[buf.readableBytes()];
+                            buf.readBytes(bytes);
+                            buf.release();
+                            synchronized (received) {
+                                received.write(bytes, 0, bytes.length);
+                            }
+                        }
+                    });
+                }
+            })
+            .bind(new DomainSocketAddress(socket))
+            .sync()
+            .channel();
+    }
+
+    private void stopAgentSocket() throws InterruptedException {
+        agent.close().sync();
+        for (Channel connection : agentConnections) {
+            connection.close().sync();
+        }
+        agentConnections.clear();
+        socket.delete();
+    }
+
+    @AfterEach
+    void stopAgent() {
+        if (agent != null)
+            agent.close();
+        if (agentLoop != null)
+            agentLoop.shutdownGracefully();
+        if (socket != null)
+            socket.delete();
+    }
+
+    @Test
+    void newlineTerminatedPackets() throws InterruptedException {
+        Disposable client = UnixStreamClient.connect(socket.getPath(), Flux.just("a:1|c\nb:2|c", "c:3|c"), false).block();
+
+        assertThat(new String(awaitReceived(18), StandardCharsets.UTF_8)).isEqualTo("a:1|c\nb:2|c\nc:3|c\n");
+        client.dispose();
+    }
+
+    @Test
+    void lengthPrefixedPackets() throws InterruptedException {
+        Disposable client = UnixStreamClient.connect(socket.getPath(), Flux.just("a:1|c\nb:2|c", "c:3|c"), true).block();
+
+        byte[] bytes = awaitReceived(24);
+        assertThat(bytes[0]).isEqualTo((byte) 11);
+        assertThat(new String(bytes, 4, 11, StandardCharsets.UTF_8)).isEqualTo("a:1|c\nb:2|c");
+        assertThat(bytes[15]).isEqualTo((byte) 5);
+        assertThat(new String(bytes, 19, 5, StandardCharsets.UTF_8)).isEqualTo("c:3|c");
+        client.dispose();
+    }
+
+    @Test
+    void reconnectWhenAgentRestarts() throws InterruptedException {
+        DirectProcessor<String> packets = DirectProcessor.create();
+        Disposable client = UnixStreamClient.connect(socket.getPath(), packets.onBackpressureBuffer(), false).block();
+
+        assertThat(new String(awaitConnectedAndSend(packets, "a:1|c", 6), StandardCharsets.UTF_8)).isEqualTo("a:1|c\n");
+
+        stopAgentSocket();
+        bindAgent();
+
+        assertThat(new String(awaitConnectedAndSend(packets, "b:2|c", 12), StandardCharsets.UTF_8)).endsWith("b:2|c\n");
+        client.dispose();
+    }
+
+    @Test
+    void connectOnceAgentIsListening() throws InterruptedException {
+        stopAgentSocket();
+
+        Disposable client = UnixStreamClient.connect(socket.getPath(), Flux.just("a:1|c").concatWith(Flux.never()), false).block();
+        Thread.sleep(200);
+        bindAgent();
+
+        assertThat(new String(awaitReceived(6), StandardCharsets.UTF_8)).isEqualTo("a:1|c\n");
+        client.dispose();
+    }
+
+    /**
+     * Keeps sending {@code packet} until the agent has received {@code length} bytes, since packets sent before the
+     * client notices that the agent went away are lost.
+     */
+    private byte[] awaitConnectedAndSend(DirectProcessor<String> packets, String packet, int length) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        byte[] bytes;
+        do {
+            synchronized (received) {
+                bytes = received.toByteArray();
+            }
+            if (bytes.length >= length)
+                return bytes;
+            if (agentConnections.size() > 0)
+                packets.onNext(packet);
+            Thread.sleep(50);
+        } while (System.nanoTime() < deadline);
+        return bytes;
+    }
+
+    private byte[] awaitReceived(int length) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        byte[] bytes;
+        do {
+            synchronized (received) {
+                bytes = received.toByteArray();
+            }
+            if (bytes.length >= length)
+                return bytes;
+            Thread.sleep(10);
+        } while (System.nanoTime() < deadline);
+        return bytes;
+    }
+}
@@ -20,6 +20,7 @@ import io.micrometer.core.lang.Nullable;
 
 import java.beans.Introspector;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static java.util.stream.StreamSupport.stream;
@@ -64,13 +65,37 @@ public interface Meter {
     }
 
     class Id {
+        /**
+         * The tag added by {@link #withTag(Statistic)}, indexed by statistic ordinal.
+         */
+        private static final Tag[] STATISTIC_TAGS = Arrays.stream(Statistic.values())
+            .map(statistic -> Tag.of("statistic", Introspector.decapitalize(statistic.toString())))
+            .toArray(Tag[]::new);
+
         private final String name;
         private final List<Tag> tags;
         @Nullable
         private final String description;
         @Nullable
-        private String baseUnit;
-        private Type type;
+        private final String baseUnit;
+        private final Type type;
+
+        /**
+         * Ids derived by {@link #withTag(Statistic)} and {@link #withSuffix(String)}, created on first use, so that
+         * exporters that derive them on every publish get the same instances each time. A race to derive an id is
+         * benign, as both threads derive equal ids.
+         */
+        @Nullable
+        private volatile Id[] idsByStatistic;
+        @Nullable
+        private volatile Map<String, Id> idsBySuffix;
+
+        /**
+         * The name and tags under the naming convention they were last asked for with, since a registry asks for
+         * them under the same convention every time it publishes.
+         */
+        @Nullable
+        private volatile ConventionNameAndTags conventionNameAndTags;
 
         public Id(String name, Iterable<Tag> tags, @Nullable String baseUnit, @Nullable String description, Type type) {
             this.name = name;
@@ -91,7 +116,30 @@ public interface Meter {
         }
 
         public Id withTag(Statistic statistic) {
-            return withTag(Tag.of("statistic", Introspector.decapitalize(statistic.toString())));
+            Id[] ids = idsByStatistic;
+            if (ids == null) {
+                ids = new Id[STATISTIC_TAGS.length];
+                idsByStatistic = ids;
+            }
+
+            Id id = ids[statistic.ordinal()];
+            if (id == null) {
+                id = withTag(STATISTIC_TAGS[statistic.ordinal()]);
+                ids[statistic.ordinal()] = id;
+            }
+            return id;
+        }
+
+        /**
+         * @return An id with the same tags, base unit, description and type, named {@code <name>.<suffix>}.
+         */
+        public Id withSuffix(String suffix) {
+            Map<String, Id> ids = idsBySuffix;
+            if (ids == null) {
+                ids = new ConcurrentHashMap<>();
+                idsBySuffix = ids;
+            }
+            return ids.computeIfAbsent(suffix, s -> new Id(name + "." + s, tags, baseUnit, description, type));
         }
 
         public Id withBaseUnit(@Nullable String newBaseUnit) {
@@ -121,7 +169,7 @@ public interface Meter {
         }
 
         public String getConventionName(NamingConvention namingConvention) {
-            return namingConvention.name(name, type, baseUnit);
+            return conventionNameAndTags(namingConvention).name;
         }
 
         @Nullable
@@ -131,11 +179,21 @@ public interface Meter {
 
         /**
          * Tags that are sorted by key and formatted
+         *
+         * @return An unmodifiable list.
          */
         public List<Tag> getConventionTags(NamingConvention namingConvention) {
-            return tags.stream()
-                .map(t -> Tag.of(namingConvention.tagKey(t.getKey()), namingConvention.tagValue(t.getValue())))
-                .collect(Collectors.toList());
+            return conventionNameAndTags(namingConvention).tags;
+        }
+
+        private ConventionNameAndTags conventionNameAndTags(NamingConvention namingConvention) {
+            ConventionNameAndTags nameAndTags = conventionNameAndTags;
+            if (nameAndTags == null || nameAndTags.convention != namingConvention) {
+                // a race to render is benign, as both threads render the same name and tags
+                nameAndTags = new ConventionNameAndTags(namingConvention);
+                conventionNameAndTags = nameAndTags;
+            }
+            return nameAndTags;
         }
 
         @Override
@@ -162,6 +220,23 @@ public interface Meter {
         public Type getType() {
             return type;
         }
+
+        private class ConventionNameAndTags {
+            private final NamingConvention convention;
+            private final String name;
+            private final List<Tag> tags;
+
+            ConventionNameAndTags(NamingConvention convention) {
+                this.convention = convention;
+                this.name = convention.name(Id.this.name, type, baseUnit);
+
+                List<Tag> conventionTags = new ArrayList<>(Id.this.tags.size());
+                for (Tag t : Id.this.tags) {
+                    conventionTags.add(Tag.of(convention.tagKey(t.getKey()), convention.tagValue(t.getValue())));
+                }
+                this.tags = Collections.unmodifiableList(conventionTags);
+            }
+        }
     }
 
     /**
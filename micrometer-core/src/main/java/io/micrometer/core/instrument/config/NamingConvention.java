@@ -18,10 +18,6 @@ package io.micrometer.core.instrument.config;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.lang.Nullable;
 
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.stream.Collectors;
-
 /**
  * Monitoring systems make different recommendations regarding naming convention.
  * <p>
@@ -53,8 +49,14 @@ public interface NamingConvention {
             return toSnakeCase(key);
         }
 
+        /**
+         * Replaces each dot with an underscore, except trailing dots, which are dropped.
+         */
         private String toSnakeCase(String value) {
-            return Arrays.stream(value.split("\\.")).filter(Objects::nonNull).collect(Collectors.joining("_"));
+            int end = value.length();
+            while (end > 0 && value.charAt(end - 1) == '.')
+                end--;
+            return value.substring(0, end).replace('.', '_');
         }
     };
 
@@ -69,23 +71,24 @@ public interface NamingConvention {
             return toCamelCase(key);
         }
 
+        /**
+         * Drops each dot and title-cases the character that follows it.
+         */
         private String toCamelCase(String value) {
-            String[] parts = value.split("\\.");
-            StringBuilder conventionName = new StringBuilder();
-            for (int i = 0; i < parts.length; i++) {
-                String str = parts[i];
-                if (str == null || str.length() == 0)
-                    continue;
-
-                if (i == 0) {
-                    conventionName.append(str);
+            if (value.indexOf('.') < 0)
+                return value;
+
+            StringBuilder conventionName = new StringBuilder(value.length());
+            boolean capitalizeNext = false;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '.') {
+                    capitalizeNext = true;
+                } else if (capitalizeNext) {
+                    conventionName.append(Character.toTitleCase(c));
+                    capitalizeNext = false;
                 } else {
-                    final char firstChar = str.charAt(0);
-                    if (Character.isTitleCase(firstChar)) {
-                        conventionName.append(str); // already capitalized
-                    } else {
-                        conventionName.append(String.valueOf(Character.toTitleCase(firstChar))).append(str.substring(1));
-                    }
+                    conventionName.append(c);
                 }
             }
             return conventionName.toString();
@@ -20,11 +20,13 @@ import com.codahale.metrics.MetricRegistry;
 import io.micrometer.core.instrument.*;
 import io.micrometer.core.instrument.config.NamingConvention;
 import io.micrometer.core.instrument.histogram.HistogramConfig;
+import io.micrometer.core.instrument.histogram.HistogramSnapshotCache;
 import io.micrometer.core.instrument.histogram.pause.PauseDetector;
 import io.micrometer.core.instrument.internal.DefaultLongTaskTimer;
 import io.micrometer.core.instrument.internal.DefaultMeter;
 import io.micrometer.core.instrument.util.DoubleFormat;
 import io.micrometer.core.instrument.util.HierarchicalNameMapper;
+import io.micrometer.core.instrument.util.TimeUtils;
 import io.micrometer.core.lang.Nullable;
 
 import java.lang.ref.WeakReference;
@@ -75,19 +77,20 @@ public class DropwizardMeterRegistry extends MeterRegistry {
     @Override
     protected Timer newTimer(Meter.Id id, HistogramConfig histogramConfig, PauseDetector pauseDetector) {
         DropwizardTimer timer = new DropwizardTimer(id, registry.timer(hierarchicalName(id)), clock, histogramConfig, pauseDetector);
+        HistogramSnapshotCache snapshots = new HistogramSnapshotCache(clock, dropwizardConfig.step(), () -> timer.takeSnapshot(false));
 
         if (histogramConfig.getPercentiles() != null) {
             for (double percentile : histogramConfig.getPercentiles()) {
                 String formattedPercentile = DoubleFormat.toString(percentile * 100) + "percentile";
                 gauge(id.getName(), Tags.concat(getConventionTags(id), "percentile", formattedPercentile),
-                    timer, t -> t.percentile(percentile, getBaseTimeUnit()));
+                    timer, t -> TimeUtils.nanosToUnit(snapshots.percentile(percentile), getBaseTimeUnit()));
             }
         }
 
         if (histogramConfig.isPublishingHistogram()) {
             for (Long bucket : histogramConfig.getHistogramBuckets(false)) {
                 more().counter(getConventionName(id), Tags.concat(getConventionTags(id), "bucket", Long.toString(bucket)),
-                    timer, t -> t.histogramCountAtValue(bucket));
+                    timer, t -> snapshots.histogramCountAtValue(bucket));
             }
         }
 
@@ -97,19 +100,20 @@ public class DropwizardMeterRegistry extends MeterRegistry {
     @Override
     protected DistributionSummary newDistributionSummary(Meter.Id id, HistogramConfig histogramConfig) {
         DropwizardDistributionSummary summary = new DropwizardDistributionSummary(id, clock, registry.histogram(hierarchicalName(id)), histogramConfig);
+        HistogramSnapshotCache snapshots = new HistogramSnapshotCache(clock, dropwizardConfig.step(), () -> summary.takeSnapshot(false));
 
         if (histogramConfig.getPercentiles() != null) {
             for (double percentile : histogramConfig.getPercentiles()) {
                 String formattedPercentile = DoubleFormat.toString(percentile * 100) + "percentile";
                 gauge(id.getName(), Tags.concat(getConventionTags(id), "percentile", formattedPercentile),
-                    summary, s -> summary.percentile(percentile));
+                    summary, s -> snapshots.percentile(percentile));
             }
         }
 
         if (histogramConfig.isPublishingHistogram()) {
             for (Long bucket : histogramConfig.getHistogramBuckets(false)) {
                 more().counter(getConventionName(id), Tags.concat(getConventionTags(id), "bucket", Long.toString(bucket)),
-                    summary, s -> s.histogramCountAtValue(bucket));
+                    summary, s -> snapshots.histogramCountAtValue(bucket));
             }
         }
 
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.instrument.histogram;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.CountAtValue;
+import io.micrometer.core.instrument.HistogramSnapshot;
+import io.micrometer.core.instrument.ValueAtPercentile;
+import io.micrometer.core.lang.Nullable;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Shares one {@link HistogramSnapshot} of a timer or distribution summary among the percentile gauges and histogram
+ * bucket counters a registry derives from it. Reading every derived meter then rotates, locks and accumulates the
+ * histogram once, rather than once per meter. A snapshot is reused for the rest of the step it was taken in, typically
+ * the interval at which the registry's meters are read, so reads in different steps never share a snapshot however
+ * close together they are.
+ */
+public final class HistogramSnapshotCache {
+    private final Clock clock;
+    private final long stepMillis;
+    private final Supplier<HistogramSnapshot> snapshotter;
+
+    @Nullable
+    private volatile TakenSnapshot taken;
+
+    /**
+     * @param clock       The clock whose wall time determines the current step.
+     * @param step        The step within which a snapshot is reused.
+     * @param snapshotter Takes a snapshot of the parent meter, e.g. {@code () -> timer.takeSnapshot(false)}.
+     */
+    public HistogramSnapshotCache(Clock clock, Duration step, Supplier<HistogramSnapshot> snapshotter) {
+        this.clock = clock;
+        this.stepMillis = step.toMillis();
+        this.snapshotter = snapshotter;
+    }
+
+    public HistogramSnapshot snapshot() {
+        long stepIndex = clock.wallTime() / stepMillis;
+        TakenSnapshot current = taken;
+        if (current == null || current.stepIndex != stepIndex) {
+            // two threads racing to replace a stale snapshot both take a fresh one, which is harmless
+            current = new TakenSnapshot(snapshotter.get(), stepIndex);
+            taken = current;
+        }
+        return current.snapshot;
+    }
+
+    /**
+     * @param percentile One of the percentiles the parent meter is configured to compute, in the range [0, 1].
+     * @return The value at that percentile, in the parent meter's base unit (nanoseconds for timers), or
+     * {@link Double#NaN} if the parent doesn't compute this percentile.
+     */
+    public double percentile(double percentile) {
+        for (ValueAtPercentile v : snapshot().percentileValues()) {
+            if (v.percentile() == percentile)
+                return v.value();
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @param value One of the histogram buckets the parent meter publishes.
+     * @return The number of samples less than or equal to {@code value}, or {@link Double#NaN} if the parent doesn't
+     * publish a bucket at this value.
+     */
+    public double histogramCountAtValue(long value) {
+        // buckets are in ascending order of value
+        CountAtValue[] counts = snapshot().histogramCounts();
+        int low = 0;
+        int high = counts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midValue = counts[mid].value();
+            if (midValue < value)
+                low = mid + 1;
+            else if (midValue > value)
+                high = mid - 1;
+            else
+                return counts[mid].count();
+        }
+        return Double.NaN;
+    }
+
+    private static class TakenSnapshot {
+        private final HistogramSnapshot snapshot;
+        private final long stepIndex;
+
+        TakenSnapshot(HistogramSnapshot snapshot, long stepIndex) {
+            this.snapshot = snapshot;
+            this.stepIndex = stepIndex;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import io.micrometer.core.instrument.histogram.pause.PauseDetector;
 import io.micrometer.core.instrument.internal.DefaultGauge;
 import io.micrometer.core.instrument.internal.DefaultLongTaskTimer;
 import io.micrometer.core.instrument.internal.DefaultMeter;
+import io.micrometer.core.ipc.http.HttpSender;
 import io.micrometer.core.lang.Nullable;
 
 import java.util.concurrent.Executors;
@@ -66,6 +67,21 @@ public abstract class StepMeterRegistry extends MeterRegistry {
 
     protected abstract void publish();
 
+    /**
+     * For registries that push to their backend over HTTP, a sender configured with this registry's timeouts,
+     * retries and concurrency, that records its requests as meters named {@code <metricPrefix>.requests}.
+     */
+    protected HttpSender.Builder httpSender(String metricPrefix, ThreadFactory threadFactory) {
+        return HttpSender.builder()
+            .connectTimeout(config.connectTimeout())
+            .readTimeout(config.readTimeout())
+            .maxRetries(config.maxRetries())
+            .retryBackoff(config.retryBackoff())
+            .maxConcurrentRequests(config.numThreads())
+            .threadFactory(threadFactory)
+            .metrics(this, metricPrefix);
+    }
+
     @Override
     protected <T> Gauge newGauge(Meter.Id id, @Nullable T obj, ToDoubleFunction<T> f) {
         return new DefaultGauge<>(id, obj, f);
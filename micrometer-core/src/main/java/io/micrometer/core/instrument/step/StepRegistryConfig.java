@@ -43,8 +43,8 @@ public interface StepRegistryConfig extends MeterRegistryConfig {
     }
 
     /**
-     * Returns the number of threads to use with the scheduler. The default is
-     * 2 threads.
+     * Returns the number of threads to use with the scheduler, which is also the maximum
+     * number of batches sent to the backend concurrently. The default is 2 threads.
      */
     default int numThreads() {
         String v = get(prefix() + ".numThreads");
@@ -69,6 +69,24 @@ public interface StepRegistryConfig extends MeterRegistryConfig {
         return v == null ? Duration.ofSeconds(10) : Duration.parse(v);
     }
 
+    /**
+     * Returns the number of times a request to the backend is retried when it fails
+     * with an I/O error, a 5xx or a 429. The default is 2 retries.
+     */
+    default int maxRetries() {
+        String v = get(prefix() + ".maxRetries");
+        return v == null ? 2 : Integer.parseInt(v);
+    }
+
+    /**
+     * Returns how long to wait before retrying a failed request to the backend. Each
+     * further retry waits twice as long as the previous one. The default is 1 second.
+     */
+    default Duration retryBackoff() {
+        String v = get(prefix() + ".retryBackoff");
+        return v == null ? Duration.ofSeconds(1) : Duration.parse(v);
+    }
+
     /**
      * Returns the number of measurements per request to use for the backend. If more
      * measurements are found, then multiple requests will be made. The default is
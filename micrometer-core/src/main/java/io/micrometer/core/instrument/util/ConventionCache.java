@@ -0,0 +1,74 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.instrument.util;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.lang.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Remembers what a registry derives from each meter's id under its naming convention, e.g. rendered names or
+ * prebuilt fragments of a payload, so that it is built once per meter rather than every time a meter is published.
+ * Everything is forgotten when a different naming convention is asked for.
+ * <p>
+ * The cache is not bounded. It holds one value for each meter a registry publishes, and a registry never lets
+ * go of its meters, so it grows no larger than the registry's own meter map. Ids are matched by name and tags, as
+ * they are within a registry, so a factory whose result depends on anything else about an id shouldn't be cached.
+ *
+ * @param <T> The type derived from each id.
+ */
+public class ConventionCache<T> {
+    private final BiFunction<Meter.Id, NamingConvention, ? extends T> factory;
+
+    @Nullable
+    private volatile Values<T> values;
+
+    public ConventionCache(BiFunction<Meter.Id, NamingConvention, ? extends T> factory) {
+        this.factory = factory;
+    }
+
+    public T get(Meter.Id id, NamingConvention convention) {
+        Values<T> v = values;
+        if (v == null || v.convention != convention) {
+            // values remembered by a thread still holding the old instance are discarded with it
+            v = new Values<>(convention);
+            values = v;
+        }
+
+        T value = v.byId.get(id);
+        if (value == null) {
+            value = factory.apply(id, convention);
+            T raced = v.byId.putIfAbsent(id, value);
+            if (raced != null) {
+                value = raced;
+            }
+        }
+        return value;
+    }
+
+    private static class Values<T> {
+        private final NamingConvention convention;
+        private final Map<Meter.Id, T> byId = new ConcurrentHashMap<>();
+
+        Values(NamingConvention convention) {
+            this.convention = convention;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.micrometer.core.instrument.util;
 
+import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
@@ -52,4 +53,89 @@ public class DoubleFormat {
     public static String toString(double d) {
         return NUMBER_FORMATTERS.get().format(d);
     }
+
+    /**
+     * Appends {@code d} to {@code sb} the way {@link #toString(double)} renders it, but without allocating
+     * intermediate objects. The last fraction digit is rounded half even, as {@link DecimalFormat} does. Values that are not finite or whose
+     * magnitude is 9.2E12 or greater are rare enough that they are delegated to {@link #toString(double)}.
+     *
+     * @param sb The builder to append to.
+     * @param d  The value to append.
+     * @return The builder.
+     */
+    public static StringBuilder append(StringBuilder sb, double d) {
+        return append(sb, d, 6);
+    }
+
+    /**
+     * Like {@link #append(StringBuilder, double)}, but rounding to at most {@code maxFractionDigits} fraction digits.
+     *
+     * @param sb                The builder to append to.
+     * @param d                 The value to append.
+     * @param maxFractionDigits The maximum number of fraction digits, between 0 and 6.
+     * @return The builder.
+     */
+    public static StringBuilder append(StringBuilder sb, double d, int maxFractionDigits) {
+        if (maxFractionDigits < 0 || maxFractionDigits > 6) {
+            throw new IllegalArgumentException("maxFractionDigits must be between 0 and 6, but was " + maxFractionDigits);
+        }
+
+        if (Double.isNaN(d) || Double.isInfinite(d) || Math.abs(d) >= 9.2e12) {
+            return sb.append(toString(d));
+        }
+
+        long unit = pow10(maxFractionDigits);
+        long scaled = roundHalfEven(Math.abs(d), unit);
+        if (d < 0 || (d == 0 && 1 / d < 0)) {
+            sb.append('-');
+        }
+
+        sb.append(scaled / unit);
+        long fraction = scaled % unit;
+        if (fraction > 0) {
+            int digits = maxFractionDigits;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+
+            sb.append('.');
+            for (long leading = pow10(digits - 1); fraction < leading; leading /= 10) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+
+        return sb;
+    }
+
+    /**
+     * Rounds {@code abs * unit} to the nearest whole number, and ties to the even one. A scaled value that looks like
+     * a tie may only be one because multiplying rounded it, so the rare apparent tie is settled on the exact value.
+     */
+    private static long roundHalfEven(double abs, long unit) {
+        double scaled = abs * unit;
+        double floor = Math.floor(scaled);
+        double diff = scaled - floor;
+        if (diff != 0.5) {
+            return diff < 0.5 ? (long) floor : (long) floor + 1;
+        }
+
+        int cmp = new BigDecimal(abs).multiply(BigDecimal.valueOf(unit)).compareTo(BigDecimal.valueOf(floor + 0.5));
+        long down = (long) floor;
+        if (cmp < 0) {
+            return down;
+        } else if (cmp > 0) {
+            return down + 1;
+        }
+        return (down & 1) == 0 ? down : down + 1;
+    }
+
+    private static long pow10(int exponent) {
+        long p = 1;
+        for (int i = 0; i < exponent; i++) {
+            p *= 10;
+        }
+        return p;
+    }
 }
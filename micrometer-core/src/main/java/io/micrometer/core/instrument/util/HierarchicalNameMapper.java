@@ -16,10 +16,9 @@
 package io.micrometer.core.instrument.util;
 
 import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.config.NamingConvention;
 
-import java.util.stream.Collectors;
-
 /**
  * Defines the mapping between a combination of name + dimensional tags and a hierarchical name.
  *
@@ -31,16 +30,16 @@ public interface HierarchicalNameMapper {
      * {@code http_server_requests.response.200.method.GET}
      */
     HierarchicalNameMapper DEFAULT = (id, convention) -> {
-        String tags = "";
+        StringBuilder name = new StringBuilder(id.getConventionName(convention));
 
         if (id.getTags().iterator().hasNext()) {
-            tags = "." + id.getConventionTags(convention).stream()
-                .map(t -> t.getKey() + "." + t.getValue())
-                .map(nameSegment -> nameSegment.replace(" ", "_"))
-                .collect(Collectors.joining("."));
+            for (Tag tag : id.getConventionTags(convention)) {
+                name.append('.').append(tag.getKey().replace(' ', '_'))
+                    .append('.').append(tag.getValue().replace(' ', '_'));
+            }
         }
 
-        return id.getConventionName(convention) + tags;
+        return name.toString();
     };
 
     String toHierarchicalName(Meter.Id id, NamingConvention convention);
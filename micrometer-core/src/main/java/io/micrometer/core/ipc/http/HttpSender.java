@@ -0,0 +1,466 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.ipc.http;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.lang.Nullable;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Sends requests on behalf of registries that push to a backend over HTTP.
+ * <p>
+ * Connections are kept alive and reused between requests, which the JDK does as long as every response is read to
+ * completion and the connection isn't explicitly disconnected. Request bodies are streamed to the connection in chunks
+ * as they are written, rather than being rendered to a string first, and are optionally gzip-compressed. Requests that
+ * fail with an I/O error, a 5xx or a 429 are retried a bounded number of times with exponential backoff, or after
+ * the delay asked for by the response's {@code Retry-After} header, which is never longer than the longest backoff
+ * of the last retry. Batches sent with {@link #sendAll(List)} are sent with bounded concurrency.
+ */
+public final class HttpSender {
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final int maxConcurrentRequests;
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Created when requests are first sent concurrently, and again after {@link #close()}.
+     */
+    @Nullable
+    private ThreadPoolExecutor executor;
+
+    @Nullable
+    private final MeterRegistry registry;
+    private final String metricPrefix;
+
+    private HttpSender(Builder builder) {
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoff = builder.retryBackoff;
+        this.registry = builder.registry;
+        this.metricPrefix = builder.metricPrefix;
+        this.maxConcurrentRequests = builder.maxConcurrentRequests;
+        this.threadFactory = builder.threadFactory;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Sends a request, retrying it if necessary.
+     *
+     * @param request The request to send. Its body may be written several times if the request is retried.
+     * @return The last response received.
+     * @throws IOException if the last attempt failed with an I/O error.
+     */
+    public Response send(Request request) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            boolean lastAttempt = attempt >= maxRetries;
+            long backoffMillis = backoffMillis(attempt);
+            try {
+                Response response = sendOnce(request);
+                if (lastAttempt || !response.isRetryable())
+                    return response;
+                if (response.retryAfter != null)
+                    backoffMillis = Math.min(response.retryAfter.toMillis(), backoffMillis(maxRetries - 1));
+            } catch (IOException e) {
+                if (lastAttempt)
+                    throw e;
+            }
+
+            if (registry != null)
+                registry.counter(metricPrefix + ".retries").increment();
+
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry a request to " + request.url);
+            }
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        return retryBackoff.toMillis() << Math.min(attempt, 16);
+    }
+
+    /**
+     * Sends several requests concurrently, up to the sender's maximum number of concurrent requests, and waits for
+     * all of them to complete.
+     *
+     * @param requests The requests to send.
+     * @return One outcome per request, in the same order.
+     */
+    public List<Outcome> sendAll(List<Request> requests) {
+        List<Future<Response>> responses;
+        synchronized (this) {
+            if (executor == null) {
+                executor = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests,
+                    1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), threadFactory);
+                executor.allowCoreThreadTimeOut(true);
+            }
+            ExecutorService submitTo = executor;
+            responses = requests.stream()
+                .map(request -> submitTo.submit(() -> send(request)))
+                .collect(toList());
+        }
+
+        return responses.stream().map(future -> {
+            try {
+                return new Outcome(future.get(), null);
+            } catch (ExecutionException e) {
+                return new Outcome(null, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Outcome(null, e);
+            }
+        }).collect(toList());
+    }
+
+    /**
+     * Stops the threads used to send requests concurrently, once the requests already submitted complete. A closed
+     * sender can still be used, and starts new threads the next time it sends requests concurrently, so that the
+     * registry that owns it can be stopped and started again.
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private Response sendOnce(Request request) throws IOException {
+        long start = System.nanoTime();
+        HttpURLConnection con = (HttpURLConnection) request.url.openConnection();
+        try {
+            con.setConnectTimeout((int) connectTimeout.toMillis());
+            con.setReadTimeout((int) readTimeout.toMillis());
+            con.setRequestMethod(request.method);
+            request.headers.forEach(con::setRequestProperty);
+
+            long requestBytes = 0;
+            if (request.body != null) {
+                if (request.gzip)
+                    con.setRequestProperty("Content-Encoding", "gzip");
+                con.setDoOutput(true);
+                con.setChunkedStreamingMode(0);
+
+                CountingOutputStream counting = new CountingOutputStream(con.getOutputStream());
+                try (OutputStream os = request.gzip ? new GZIPOutputStream(counting, 8192) : new BufferedOutputStream(counting, 8192)) {
+                    request.body.writeTo(os);
+                }
+                requestBytes = counting.count;
+            }
+
+            int status = con.getResponseCode();
+
+            // reading the whole response is what allows the connection to be reused
+            String body;
+            try (InputStream in = status >= 400 ? con.getErrorStream() : con.getInputStream()) {
+                body = in == null ? "" : readFully(in);
+            }
+
+            record(request, Integer.toString(status), start, requestBytes);
+            return new Response(status, body, retryAfter(con.getHeaderField("Retry-After")));
+        } catch (IOException e) {
+            con.disconnect();
+            record(request, "IO_ERROR", start, 0);
+            throw e;
+        } catch (RuntimeException e) {
+            // e.g. thrown by the body writer, which is a bug rather than a transient failure, so it isn't retried
+            con.disconnect();
+            record(request, "CLIENT_ERROR", start, 0);
+            throw e;
+        }
+    }
+
+    private void record(Request request, String status, long startNanos, long requestBytes) {
+        if (registry == null)
+            return;
+
+        Timer.builder(metricPrefix + ".requests")
+            .tags("method", request.method, "status", status)
+            .register(registry)
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+        if (requestBytes > 0) {
+            DistributionSummary.builder(metricPrefix + ".request.size")
+                .baseUnit("bytes")
+                .register(registry)
+                .record(requestBytes);
+        }
+    }
+
+    /**
+     * @param header Either a number of seconds or an HTTP date.
+     * @return How long to wait, or {@code null} if there is no header or it can't be parsed.
+     */
+    @Nullable
+    static Duration retryAfter(@Nullable String header) {
+        if (header == null)
+            return null;
+
+        String value = header.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException ignored) {
+            // not a number of seconds, so it may be a date
+        }
+
+        try {
+            long millis = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() -
+                System.currentTimeMillis();
+            return Duration.ofMillis(Math.max(0, millis));
+        } catch (DateTimeParseException ignored) {
+            return null;
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a request body. Invoked once per attempt to send the request, so a writer that reads meters as it writes
+     * reads them again when the request is retried.
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public static final class Request {
+        private final URL url;
+        private final String method;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+
+        @Nullable
+        private BodyWriter body;
+
+        private boolean gzip;
+
+        private Request(URL url, String method) {
+            this.url = url;
+            this.method = method;
+        }
+
+        public static Request post(URL url) {
+            return new Request(url, "POST");
+        }
+
+        public static Request put(URL url) {
+            return new Request(url, "PUT");
+        }
+
+        public Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        /**
+         * @param body Writes the body. The stream must not be closed by the writer.
+         */
+        public Request body(BodyWriter body) {
+            this.body = body;
+            return this;
+        }
+
+        public Request body(String body) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            return body(out -> out.write(bytes));
+        }
+
+        public Request gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+    }
+
+    public static final class Response {
+        private final int code;
+        private final String body;
+
+        @Nullable
+        private final Duration retryAfter;
+
+        Response(int code, String body, @Nullable Duration retryAfter) {
+            this.code = code;
+            this.body = body;
+            this.retryAfter = retryAfter;
+        }
+
+        public int code() {
+            return code;
+        }
+
+        public String body() {
+            return body;
+        }
+
+        public boolean isSuccessful() {
+            return code >= 200 && code < 300;
+        }
+
+        boolean isRetryable() {
+            return code == 429 || code >= 500;
+        }
+    }
+
+    /**
+     * Either the response to a request sent with {@link #sendAll(List)}, or the error that prevented it from being sent.
+     */
+    public static final class Outcome {
+        @Nullable
+        private final Response response;
+
+        @Nullable
+        private final Throwable error;
+
+        Outcome(@Nullable Response response, @Nullable Throwable error) {
+            this.response = response;
+            this.error = error;
+        }
+
+        @Nullable
+        public Response response() {
+            return response;
+        }
+
+        @Nullable
+        public Throwable error() {
+            return error;
+        }
+    }
+
+    public static class Builder {
+        private Duration connectTimeout = Duration.ofSeconds(1);
+        private Duration readTimeout = Duration.ofSeconds(10);
+        private int maxRetries = 0;
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private int maxConcurrentRequests = 1;
+        private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+        @Nullable
+        private MeterRegistry registry;
+        private String metricPrefix = "http.sender";
+
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder readTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * @param maxRetries The number of times a request is retried after the initial attempt fails.
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * @param retryBackoff How long to wait before the first retry. Each further retry waits twice as long as the
+         *                     previous one. A response's {@code Retry-After} is honoured instead, up to the wait before
+         *                     the last retry.
+         */
+        public Builder retryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+            return this;
+        }
+
+        public Builder maxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        public Builder threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Record request latencies by method and status as {@code <prefix>.requests}, request body sizes as
+         * {@code <prefix>.request.size} and retries as {@code <prefix>.retries}.
+         */
+        public Builder metrics(MeterRegistry registry, String prefix) {
+            this.registry = registry;
+            this.metricPrefix = prefix;
+            return this;
+        }
+
+        public HttpSender build() {
+            if (maxConcurrentRequests < 1)
+                throw new IllegalArgumentException("maxConcurrentRequests must be at least 1, but was " + maxConcurrentRequests);
+            if (maxRetries < 0)
+                throw new IllegalArgumentException("maxRetries must not be negative, but was " + maxRetries);
+            return new HttpSender(this);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.ipc.udp;
+
+import io.micrometer.core.lang.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends lines of a text protocol, such as Influx's line protocol or Graphite's plaintext protocol, on behalf of
+ * registries that push to a UDP listener. Each line is terminated by a newline, and lines are packed into datagrams
+ * of up to a maximum size, a line that is longer on its own being sent alone. Lines are encoded into reused buffers,
+ * so writing a line doesn't allocate.
+ * <p>
+ * The listener's host is resolved when the first datagram after a {@link #flush()} is sent rather than up front, so
+ * a host that doesn't resolve yet, or whose address changes, is picked up on a later publish.
+ */
+public final class UdpLineSender implements Closeable {
+    private final String host;
+    private final int port;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer packet;
+    private ByteBuffer encoded;
+
+    @Nullable
+    private DatagramChannel channel;
+
+    /**
+     * Resolved once per publish, and again after a failed send.
+     */
+    @Nullable
+    private InetSocketAddress address;
+
+    /**
+     * @param packetSize The maximum size of a datagram, in bytes.
+     */
+    public UdpLineSender(String host, int port, int packetSize) {
+        this.host = host;
+        this.port = port;
+        this.packet = ByteBuffer.allocate(packetSize);
+        this.encoded = ByteBuffer.allocate(packetSize);
+    }
+
+    /**
+     * Adds a line, without its terminating newline, to the datagram being filled, sending the datagram first if the
+     * line doesn't fit in it.
+     *
+     * @throws UnknownHostException If the listener's host doesn't resolve.
+     */
+    public synchronized void write(CharSequence line) throws IOException {
+        encode(line);
+
+        if (encoded.remaining() > packet.remaining())
+            sendPacket();
+
+        if (encoded.remaining() > packet.capacity()) {
+            // too long to share a datagram with anything else
+            send(encoded);
+            return;
+        }
+
+        packet.put(encoded);
+    }
+
+    /**
+     * Sends the partially filled datagram, if any, at the end of a publish.
+     *
+     * @throws UnknownHostException If the listener's host doesn't resolve.
+     */
+    public synchronized void flush() throws IOException {
+        try {
+            sendPacket();
+        } finally {
+            // resolved again on the next publish, subject to the JVM's own DNS cache
+            address = null;
+        }
+    }
+
+    /**
+     * Discards a partially filled datagram left over from a publish that failed, so that it isn't sent along with
+     * the next one.
+     */
+    public synchronized void discard() {
+        packet.clear();
+        address = null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        discard();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void sendPacket() throws IOException {
+        if (packet.position() > 0) {
+            packet.flip();
+            send(packet);
+            packet.clear();
+        }
+    }
+
+    private void send(ByteBuffer datagram) throws IOException {
+        try {
+            if (channel == null)
+                channel = DatagramChannel.open();
+            channel.send(datagram, resolve());
+        } catch (IOException e) {
+            datagram.clear();
+            address = null;
+            throw e;
+        }
+    }
+
+    private InetSocketAddress resolve() throws UnknownHostException {
+        InetSocketAddress resolved = address;
+        if (resolved == null) {
+            resolved = new InetSocketAddress(host, port);
+            // an unresolved address would make DatagramChannel#send throw an unchecked UnresolvedAddressException
+            if (resolved.isUnresolved())
+                throw new UnknownHostException(host);
+            address = resolved;
+        }
+        return resolved;
+    }
+
+    private void encode(CharSequence line) {
+        encoder.reset();
+        encoded.clear();
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (encoder.encode(chars, encoded, true).isOverflow()) {
+            grow();
+        }
+        encoder.flush(encoded);
+        if (!encoded.hasRemaining())
+            grow();
+        encoded.put((byte) '\n');
+        encoded.flip();
+    }
+
+    private void grow() {
+        ByteBuffer larger = ByteBuffer.allocate(encoded.capacity() * 2);
+        encoded.flip();
+        larger.put(encoded);
+        encoded = larger;
+    }
+}
@@ -15,9 +15,13 @@
  */
 package io.micrometer.core.instrument;
 
+import io.micrometer.core.instrument.config.NamingConvention;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 class MeterIdTest {
@@ -27,6 +31,23 @@ class MeterIdTest {
         assertThat(id.withTag(Statistic.TotalTime).getTags()).contains(Tag.of("statistic", "totalTime"));
     }
 
+    @Test
+    void derivedIdsAreReused() {
+        Meter.Id id = new Meter.Id("my.id", singletonList(Tag.of("k", "v")), "bytes", "desc", Meter.Type.Timer);
+
+        Meter.Id withStatistic = id.withTag(Statistic.Count);
+        assertThat(withStatistic.getTags()).containsExactly(Tag.of("k", "v"), Tag.of("statistic", "count"));
+        assertThat(id.withTag(Statistic.Count)).isSameAs(withStatistic);
+
+        Meter.Id withSuffix = id.withSuffix("max");
+        assertThat(withSuffix.getName()).isEqualTo("my.id.max");
+        assertThat(withSuffix.getTags()).containsExactly(Tag.of("k", "v"));
+        assertThat(withSuffix.getBaseUnit()).isEqualTo("bytes");
+        assertThat(withSuffix.getDescription()).isEqualTo("desc");
+        assertThat(withSuffix.getType()).isEqualTo(Meter.Type.Timer);
+        assertThat(id.withSuffix("max")).isSameAs(withSuffix);
+    }
+
     @Test
     void equalsAndHashCode() {
         Meter.Id id = new Meter.Id("my.id", emptyList(), null, null, Meter.Type.Counter);
@@ -35,4 +56,23 @@ class MeterIdTest {
         assertThat(id).isEqualTo(id2);
         assertThat(id.hashCode()).isEqualTo(id2.hashCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    void conventionNameAndTagsAreRenderedOncePerConvention() {
+        AtomicInteger rendered = new AtomicInteger();
+        NamingConvention counting = (name, type, baseUnit) -> {
+            rendered.incrementAndGet();
+            return NamingConvention.snakeCase.name(name, type, baseUnit);
+        };
+
+        Meter.Id id = new Meter.Id("my.id", singletonList(Tag.of("k", "v")), null, null, Meter.Type.Counter);
+        assertThat(id.getConventionName(counting)).isEqualTo("my_id");
+        assertThat(id.getConventionName(counting)).isEqualTo("my_id");
+        assertThat(id.getConventionTags(counting)).containsExactly(Tag.of("k", "v"));
+        assertThat(rendered.get()).isEqualTo(1);
+
+        assertThat(id.getConventionName(NamingConvention.camelCase)).isEqualTo("myId");
+        assertThat(id.getConventionName(counting)).isEqualTo("my_id");
+        assertThat(rendered.get()).isEqualTo(2);
+    }
+}
@@ -38,4 +38,11 @@ class NamingConventionTest {
         String name = NamingConvention.upperCamelCase.name("a.name.with.words", Meter.Type.Counter);
         assertThat(name).isEqualTo("ANameWithWords");
     }
-}
\ No newline at end of file
+
+    @Test
+    void emptyAndTrailingSegmentsAreDropped() {
+        assertThat(NamingConvention.camelCase.name(".a..name.", Meter.Type.Counter)).isEqualTo("AName");
+        assertThat(NamingConvention.snakeCase.name(".a..name..", Meter.Type.Counter)).isEqualTo("_a__name");
+        assertThat(NamingConvention.snakeCase.name("...", Meter.Type.Counter)).isEqualTo("");
+    }
+}
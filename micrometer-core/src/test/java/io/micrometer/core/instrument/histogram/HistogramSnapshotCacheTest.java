@@ -0,0 +1,70 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.instrument.histogram;
+
+import io.micrometer.core.instrument.CountAtValue;
+import io.micrometer.core.instrument.HistogramSnapshot;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.ValueAtPercentile;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistogramSnapshotCacheTest {
+    private final MockClock clock = new MockClock();
+    private final AtomicInteger snapshotsTaken = new AtomicInteger();
+
+    private final HistogramSnapshotCache snapshots = new HistogramSnapshotCache(clock, Duration.ofSeconds(10), () ->
+        HistogramSnapshot.of(snapshotsTaken.incrementAndGet(), 0, 0,
+            new ValueAtPercentile[]{ValueAtPercentile.of(0.5, 5), ValueAtPercentile.of(0.95, 9)},
+            new CountAtValue[]{CountAtValue.of(1, 1), CountAtValue.of(10, 3), CountAtValue.of(100, 7)}));
+
+    @Test
+    void derivedValuesShareOneSnapshotWithinAStep() {
+        assertThat(snapshots.percentile(0.5)).isEqualTo(5);
+        assertThat(snapshots.percentile(0.95)).isEqualTo(9);
+        assertThat(snapshots.histogramCountAtValue(1)).isEqualTo(1);
+        assertThat(snapshots.histogramCountAtValue(10)).isEqualTo(3);
+        assertThat(snapshots.histogramCountAtValue(100)).isEqualTo(7);
+        assertThat(snapshotsTaken.get()).isEqualTo(1);
+
+        clock.add(9, TimeUnit.SECONDS);
+        assertThat(snapshots.snapshot().count()).isEqualTo(1);
+
+        clock.add(1, TimeUnit.SECONDS);
+        assertThat(snapshots.snapshot().count()).isEqualTo(2);
+    }
+
+    @Test
+    void snapshotTakenLateInAStepIsNotReusedInTheNext() {
+        clock.add(9999, TimeUnit.MILLISECONDS);
+        assertThat(snapshots.snapshot().count()).isEqualTo(1);
+
+        clock.add(1, TimeUnit.MILLISECONDS);
+        assertThat(snapshots.snapshot().count()).isEqualTo(2);
+        assertThat(snapshots.snapshot().count()).isEqualTo(2);
+    }
+
+    @Test
+    void valuesNotInTheSnapshotAreNaN() {
+        assertThat(snapshots.percentile(0.99)).isNaN();
+        assertThat(snapshots.histogramCountAtValue(50)).isNaN();
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.instrument.util;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConventionCacheTest {
+    private final AtomicInteger built = new AtomicInteger();
+    private final ConventionCache<String> cache = new ConventionCache<>((id, convention) -> {
+        built.incrementAndGet();
+        return id.getConventionName(convention);
+    });
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void builtOncePerId() {
+        Meter.Id id = registry.counter("my.counter", "region", "us-west").getId();
+
+        assertThat(cache.get(id, NamingConvention.camelCase)).isEqualTo("myCounter");
+        assertThat(cache.get(id, NamingConvention.camelCase)).isEqualTo("myCounter");
+        assertThat(built.get()).isEqualTo(1);
+
+        assertThat(cache.get(registry.counter("other").getId(), NamingConvention.camelCase)).isEqualTo("other");
+        assertThat(built.get()).isEqualTo(2);
+    }
+
+    @Test
+    void rebuiltWhenTheConventionChanges() {
+        Meter.Id id = registry.counter("my.counter").getId();
+
+        assertThat(cache.get(id, NamingConvention.camelCase)).isEqualTo("myCounter");
+        assertThat(cache.get(id, NamingConvention.snakeCase)).isEqualTo("my_counter");
+        assertThat(cache.get(id, NamingConvention.snakeCase)).isEqualTo("my_counter");
+        assertThat(built.get()).isEqualTo(2);
+    }
+}
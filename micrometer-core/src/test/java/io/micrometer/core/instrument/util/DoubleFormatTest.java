@@ -0,0 +1,41 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.instrument.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DoubleFormatTest {
+    @ParameterizedTest
+    @ValueSource(doubles = {0, -0.0, 1, -1, 2.5, -2.5, 0.1, 0.000001, 0.0000004, 0.0000006, 123456.789, 1e-7, -1e-7,
+        1.0000001, 0.010203, 42.000009, 0.0078125, -0.0078125, 0.0000025, 0.0000035, 1e12, 9.1e12, 1e13, Double.NaN, Double.POSITIVE_INFINITY})
+    void appendMatchesToString(double d) {
+        assertThat(DoubleFormat.append(new StringBuilder(), d).toString()).isEqualTo(DoubleFormat.toString(d));
+    }
+
+    @Test
+    void appendWithFewerFractionDigits() {
+        assertThat(DoubleFormat.append(new StringBuilder(), 0.00009, 4).toString()).isEqualTo("0.0001");
+        assertThat(DoubleFormat.append(new StringBuilder(), 0.01, 4).toString()).isEqualTo("0.01");
+        assertThat(DoubleFormat.append(new StringBuilder(), -2.00004, 4).toString()).isEqualTo("-2");
+        assertThat(DoubleFormat.append(new StringBuilder(), 99.5, 0).toString()).isEqualTo("100");
+        assertThat(DoubleFormat.append(new StringBuilder(), 98.5, 0).toString()).isEqualTo("98");
+        assertThat(DoubleFormat.append(new StringBuilder(), 0.03125, 4).toString()).isEqualTo("0.0312");
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.ipc.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.core.lang.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpSenderTest {
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final Set<Integer> remotePorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger failuresBeforeSuccess = new AtomicInteger();
+
+    @Nullable
+    private volatile String retryAfter;
+
+    private SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private HttpServer server;
+    private URL url;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            remotePorts.add(exchange.getRemoteAddress().getPort());
+
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+                in = new GZIPInputStream(in);
+            String requestBody = read(in);
+            received.add(requestBody);
+
+            boolean fail = failuresBeforeSuccess.getAndDecrement() > 0;
+            byte[] body = (fail ? "try again" : requestBody).getBytes(StandardCharsets.UTF_8);
+            if (fail && retryAfter != null)
+                exchange.getResponseHeaders().set("Retry-After", retryAfter);
+            exchange.sendResponseHeaders(fail ? 503 : 200, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private HttpSender.Builder sender() {
+        return HttpSender.builder()
+            .retryBackoff(Duration.ofMillis(1))
+            .metrics(registry, "test.http");
+    }
+
+    @Test
+    void streamsBody() throws IOException {
+        HttpSender.Response response = sender().build().send(HttpSender.Request.post(url)
+            .body(out -> {
+                out.write("hello ".getBytes(StandardCharsets.UTF_8));
+                out.write("world".getBytes(StandardCharsets.UTF_8));
+            }));
+
+        assertThat(response.isSuccessful()).isTrue();
+        assertThat(received).containsExactly("hello world");
+        assertThat(registry.mustFind("test.http.requests").tags("method", "POST", "status", "200").timer().count()).isEqualTo(1);
+        assertThat(registry.mustFind("test.http.request.size").summary().totalAmount()).isEqualTo(11);
+    }
+
+    @Test
+    void gzipBody() throws IOException {
+        sender().build().send(HttpSender.Request.post(url).gzip(true).body("compressed"));
+        assertThat(received).containsExactly("compressed");
+    }
+
+    @Test
+    void retryServerErrors() throws IOException {
+        failuresBeforeSuccess.set(2);
+
+        HttpSender.Response response = sender().maxRetries(2).build().send(HttpSender.Request.post(url).body("retried"));
+
+        assertThat(response.code()).isEqualTo(200);
+        assertThat(received).containsExactly("retried", "retried", "retried");
+        assertThat(registry.mustFind("test.http.retries").counter().count()).isEqualTo(2);
+        assertThat(registry.mustFind("test.http.requests").tags("status", "503").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void giveUpAfterMaxRetries() throws IOException {
+        failuresBeforeSuccess.set(5);
+
+        HttpSender.Response response = sender().maxRetries(1).build().send(HttpSender.Request.post(url).body("retried"));
+
+        assertThat(response.code()).isEqualTo(503);
+        assertThat(response.body()).isEqualTo("try again");
+        assertThat(received).hasSize(2);
+    }
+
+    @Test
+    void retryAfterIsHonoured() throws IOException {
+        failuresBeforeSuccess.set(1);
+        retryAfter = "0";
+
+        long start = System.nanoTime();
+        HttpSender.Response response = sender().maxRetries(1).retryBackoff(Duration.ofSeconds(5)).build()
+            .send(HttpSender.Request.post(url).body("retried"));
+
+        assertThat(response.code()).isEqualTo(200);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void retryAfterIsCappedByTheBackoffOfTheLastRetry() throws IOException {
+        failuresBeforeSuccess.set(2);
+        retryAfter = "3600";
+
+        long start = System.nanoTime();
+        HttpSender.Response response = sender().maxRetries(2).build().send(HttpSender.Request.post(url).body("retried"));
+
+        assertThat(response.code()).isEqualTo(200);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(60));
+    }
+
+    @Test
+    void parseRetryAfter() {
+        assertThat(HttpSender.retryAfter(null)).isNull();
+        assertThat(HttpSender.retryAfter(" 120 ")).isEqualTo(Duration.ofSeconds(120));
+        assertThat(HttpSender.retryAfter("-1")).isEqualTo(Duration.ZERO);
+        assertThat(HttpSender.retryAfter("soon")).isNull();
+        assertThat(HttpSender.retryAfter("Wed, 21 Oct 2015 07:28:00 GMT")).isEqualTo(Duration.ZERO);
+
+        Duration untilDate = HttpSender.retryAfter(DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusMinutes(10)));
+        assertThat(untilDate).isBetween(Duration.ofMinutes(9), Duration.ofMinutes(10));
+    }
+
+    @Test
+    void connectionsAreReused() throws IOException {
+        HttpSender sender = sender().build();
+        for (int i = 0; i < 5; i++) {
+            sender.send(HttpSender.Request.post(url).body("request " + i));
+        }
+
+        assertThat(received).hasSize(5);
+        assertThat(remotePorts).hasSize(1);
+    }
+
+    @Test
+    void sendAllPreservesRequestOrder() {
+        HttpSender sender = sender().maxConcurrentRequests(3).build();
+        try {
+            List<HttpSender.Outcome> outcomes = sender.sendAll(IntStream.range(0, 10)
+                .mapToObj(i -> HttpSender.Request.post(url).body("batch " + i))
+                .collect(toList()));
+
+            assertThat(outcomes).extracting(outcome -> outcome.response().body())
+                .containsExactly(IntStream.range(0, 10).mapToObj(i -> "batch " + i).toArray(String[]::new));
+        } finally {
+            sender.close();
+        }
+    }
+
+    @Test
+    void sendAllReportsIoErrors() {
+        server.stop(0);
+
+        List<HttpSender.Outcome> outcomes = sender().build().sendAll(singletonList(
+            HttpSender.Request.post(url).body("unreachable")));
+
+        assertThat(outcomes.get(0).response()).isNull();
+        assertThat(outcomes.get(0).error()).isInstanceOf(IOException.class);
+        assertThat(registry.mustFind("test.http.requests").tags("status", "IO_ERROR").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void bodyWriterFailuresAreRecordedAndNotRetried() throws IOException {
+        HttpSender sender = sender().maxRetries(2).build();
+
+        assertThatThrownBy(() -> sender.send(HttpSender.Request.post(url).body(out -> {
+            out.write("partial".getBytes(StandardCharsets.UTF_8));
+            throw new IllegalStateException("broken writer");
+        }))).isInstanceOf(IllegalStateException.class);
+
+        assertThat(registry.mustFind("test.http.requests").tags("status", "CLIENT_ERROR").timer().count()).isEqualTo(1);
+        assertThat(registry.find("test.http.retries").counter()).isNull();
+
+        assertThat(sender.send(HttpSender.Request.post(url).body("next")).isSuccessful()).isTrue();
+    }
+
+    @Test
+    void sendAllAfterClose() {
+        HttpSender sender = sender().build();
+        sender.close();
+
+        List<HttpSender.Outcome> outcomes = sender.sendAll(singletonList(HttpSender.Request.post(url).body("reopened")));
+
+        assertThat(outcomes.get(0).response().body()).isEqualTo("reopened");
+        sender.close();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
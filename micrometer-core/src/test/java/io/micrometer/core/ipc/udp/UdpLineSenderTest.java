@@ -0,0 +1,111 @@
+/**
+ * Copyright 2017 Pivotal Software, Inc.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.micrometer.core.ipc.udp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UdpLineSenderTest {
+    private DatagramSocket listener;
+    private UdpLineSender sender;
+
+    @BeforeEach
+    void start() throws IOException {
+        listener = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        listener.setSoTimeout(5000);
+        sender = new UdpLineSender(InetAddress.getLoopbackAddress().getHostAddress(), listener.getLocalPort(), 32);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        sender.close();
+        listener.close();
+    }
+
+    @Test
+    void linesArePackedIntoDatagrams() throws IOException {
+        sender.write("a value=1 1");
+        sender.write("b value=2 1");
+        sender.write("c value=3 1");
+        sender.flush();
+
+        assertThat(receive()).isEqualTo("a value=1 1\nb value=2 1\n");
+        assertThat(receive()).isEqualTo("c value=3 1\n");
+    }
+
+    @Test
+    void lineLongerThanPacketIsSentAlone() throws IOException {
+        sender.write("a value=1 1");
+        sender.write("a_very_long_measurement_name value=1 1");
+        sender.write("b value=2 1");
+        sender.flush();
+
+        assertThat(receive()).isEqualTo("a value=1 1\n");
+        assertThat(receive()).isEqualTo("a_very_long_measurement_name value=1 1\n");
+        assertThat(receive()).isEqualTo("b value=2 1\n");
+    }
+
+    @Test
+    void multiByteCharactersAreCountedInBytes() throws IOException {
+        // each 'é' is two bytes, so both lines together are longer than a packet
+        sender.write("éééééé value=1 1");
+        sender.write("éééééé value=2 1");
+        sender.flush();
+
+        assertThat(receive()).isEqualTo("éééééé value=1 1\n");
+        assertThat(receive()).isEqualTo("éééééé value=2 1\n");
+    }
+
+    @Test
+    void lineFillingTheEncodingBufferStillGetsItsNewline() throws IOException {
+        String line = "abcdefghijklmnopqrstuvwxyz value=1";
+        sender.write(line.substring(0, 32));
+        sender.flush();
+
+        assertThat(receive()).isEqualTo(line.substring(0, 32) + "\n");
+    }
+
+    @Test
+    void unresolvedHostFailsWithCheckedException() throws IOException {
+        UdpLineSender unresolved = new UdpLineSender("udp.invalid", listener.getLocalPort(), 32);
+        try {
+            unresolved.write("a value=1 1");
+            assertThatThrownBy(unresolved::flush).isInstanceOf(UnknownHostException.class);
+
+            // the failed datagram is discarded rather than sent along with the next publish
+            unresolved.flush();
+        } finally {
+            unresolved.close();
+        }
+    }
+
+    private String receive() throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+        listener.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+    }
+}
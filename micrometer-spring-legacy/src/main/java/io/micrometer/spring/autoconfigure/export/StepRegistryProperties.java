@@ -51,6 +51,18 @@ public abstract class StepRegistryProperties {
      */
     private Integer numThreads;
 
+    /**
+     * Number of times a request to this backend is retried when it fails with an I/O
+     * error, a 5xx or a 429.
+     */
+    private Integer maxRetries;
+
+    /**
+     * How long to wait before retrying a failed request to this backend. Each further
+     * retry waits twice as long as the previous one.
+     */
+    private Duration retryBackoff;
+
     /**
      * Number of measurements per request to use for this backend. If more measurements
      * are found, then multiple requests will be made.
@@ -97,6 +109,22 @@ public abstract class StepRegistryProperties {
         this.numThreads = numThreads;
     }
 
+    public Integer getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    public void setMaxRetries(Integer maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public Duration getRetryBackoff() {
+        return this.retryBackoff;
+    }
+
+    public void setRetryBackoff(Duration retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
     public Integer getBatchSize() {
         return this.batchSize;
     }
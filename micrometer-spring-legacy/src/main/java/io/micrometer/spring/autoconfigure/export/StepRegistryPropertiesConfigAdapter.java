@@ -68,6 +68,16 @@ public abstract class StepRegistryPropertiesConfigAdapter<T extends StepRegistry
         return get(T::getNumThreads, StepRegistryConfig.super::numThreads);
     }
 
+    @Override
+    public int maxRetries() {
+        return get(T::getMaxRetries, StepRegistryConfig.super::maxRetries);
+    }
+
+    @Override
+    public Duration retryBackoff() {
+        return get(T::getRetryBackoff, StepRegistryConfig.super::retryBackoff);
+    }
+
     @Override
     public int batchSize() {
         return get(T::getBatchSize, StepRegistryConfig.super::batchSize);
@@ -18,6 +18,8 @@ package io.micrometer.spring.autoconfigure.export.cloudwatch;
 import io.micrometer.spring.autoconfigure.export.StepRegistryProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 /**
  * {@link ConfigurationProperties} for configuring CloudWatch metrics export.
  *
@@ -27,6 +29,28 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class CloudWatchProperties extends StepRegistryProperties {
     private String namespace;
 
+    /**
+     * Maximum size in bytes of a single PutMetricData request.
+     */
+    private Integer maxRequestSize;
+
+    /**
+     * Maximum number of PutMetricData requests in flight at once.
+     */
+    private Integer maxInFlightRequests;
+
+    /**
+     * How long a publish may take to send all of its requests before it gives up on the
+     * rest.
+     */
+    private Duration publishTimeout;
+
+    /**
+     * Whether to publish timers and distribution summaries as statistic sets, whose
+     * minimum is the mean since the real minimum isn't tracked.
+     */
+    private Boolean statisticSets;
+
     public String getNamespace() {
         return namespace;
     }
@@ -34,4 +58,36 @@ public class CloudWatchProperties extends StepRegistryProperties {
     public void setNamespace(String namespace) {
         this.namespace = namespace;
     }
+
+    public Integer getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public void setMaxRequestSize(Integer maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    public Integer getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(Integer maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public Duration getPublishTimeout() {
+        return publishTimeout;
+    }
+
+    public void setPublishTimeout(Duration publishTimeout) {
+        this.publishTimeout = publishTimeout;
+    }
+
+    public Boolean getStatisticSets() {
+        return statisticSets;
+    }
+
+    public void setStatisticSets(Boolean statisticSets) {
+        this.statisticSets = statisticSets;
+    }
 }
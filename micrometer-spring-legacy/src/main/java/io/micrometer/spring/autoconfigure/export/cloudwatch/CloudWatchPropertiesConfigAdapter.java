@@ -18,6 +18,8 @@ package io.micrometer.spring.autoconfigure.export.cloudwatch;
 import io.micrometer.cloudwatch.CloudWatchConfig;
 import io.micrometer.spring.autoconfigure.export.StepRegistryPropertiesConfigAdapter;
 
+import java.time.Duration;
+
 /**
  * Adapter to convert {@link CloudWatchProperties} to a {@link CloudWatchConfig}.
  *
@@ -33,4 +35,24 @@ class CloudWatchPropertiesConfigAdapter extends StepRegistryPropertiesConfigAdap
     public String namespace() {
         return get(CloudWatchProperties::getNamespace, CloudWatchConfig.super::namespace);
     }
+
+    @Override
+    public int maxRequestSize() {
+        return get(CloudWatchProperties::getMaxRequestSize, CloudWatchConfig.super::maxRequestSize);
+    }
+
+    @Override
+    public int maxInFlightRequests() {
+        return get(CloudWatchProperties::getMaxInFlightRequests, CloudWatchConfig.super::maxInFlightRequests);
+    }
+
+    @Override
+    public Duration publishTimeout() {
+        return get(CloudWatchProperties::getPublishTimeout, CloudWatchConfig.super::publishTimeout);
+    }
+
+    @Override
+    public boolean statisticSets() {
+        return get(CloudWatchProperties::getStatisticSets, CloudWatchConfig.super::statisticSets);
+    }
 }
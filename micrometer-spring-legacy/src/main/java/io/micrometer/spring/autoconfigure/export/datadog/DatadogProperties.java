@@ -18,6 +18,8 @@ package io.micrometer.spring.autoconfigure.export.datadog;
 import io.micrometer.spring.autoconfigure.export.StepRegistryProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 /**
  * {@link ConfigurationProperties} for configuring Datadog metrics export.
  *
@@ -55,6 +57,17 @@ public class DatadogProperties extends StepRegistryProperties {
      */
     private String uri;
 
+    /**
+     * Maximum number of metric metadata updates sent to Datadog per second.
+     */
+    private Integer metadataRequestsPerSecond;
+
+    /**
+     * How long to wait before retrying a metadata update for a metric that Datadog has
+     * not created yet.
+     */
+    private Duration metadataRetryDelay;
+
     public String getApiKey() {
         return this.apiKey;
     }
@@ -94,4 +107,20 @@ public class DatadogProperties extends StepRegistryProperties {
     public void setUri(String uri) {
         this.uri = uri;
     }
+
+    public Integer getMetadataRequestsPerSecond() {
+        return this.metadataRequestsPerSecond;
+    }
+
+    public void setMetadataRequestsPerSecond(Integer metadataRequestsPerSecond) {
+        this.metadataRequestsPerSecond = metadataRequestsPerSecond;
+    }
+
+    public Duration getMetadataRetryDelay() {
+        return this.metadataRetryDelay;
+    }
+
+    public void setMetadataRetryDelay(Duration metadataRetryDelay) {
+        this.metadataRetryDelay = metadataRetryDelay;
+    }
 }
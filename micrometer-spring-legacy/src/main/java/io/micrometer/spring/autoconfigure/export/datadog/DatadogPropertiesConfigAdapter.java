@@ -18,6 +18,8 @@ package io.micrometer.spring.autoconfigure.export.datadog;
 import io.micrometer.datadog.DatadogConfig;
 import io.micrometer.spring.autoconfigure.export.StepRegistryPropertiesConfigAdapter;
 
+import java.time.Duration;
+
 /**
  * Adapter to convert {@link DatadogProperties} to a {@link DatadogConfig}.
  *
@@ -55,4 +57,14 @@ class DatadogPropertiesConfigAdapter extends StepRegistryPropertiesConfigAdapter
         return get(DatadogProperties::getDescriptions, DatadogConfig.super::descriptions);
     }
 
+    @Override
+    public int metadataRequestsPerSecond() {
+        return get(DatadogProperties::getMetadataRequestsPerSecond, DatadogConfig.super::metadataRequestsPerSecond);
+    }
+
+    @Override
+    public Duration metadataRetryDelay() {
+        return get(DatadogProperties::getMetadataRetryDelay, DatadogConfig.super::metadataRetryDelay);
+    }
+
 }
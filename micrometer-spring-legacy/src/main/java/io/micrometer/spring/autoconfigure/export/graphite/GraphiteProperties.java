@@ -16,9 +16,9 @@
 package io.micrometer.spring.autoconfigure.export.graphite;
 
 import io.micrometer.graphite.GraphiteProtocol;
+import io.micrometer.spring.autoconfigure.export.StepRegistryProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
-import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -27,17 +27,7 @@ import java.util.concurrent.TimeUnit;
  * @author Jon Schneider
  */
 @ConfigurationProperties(prefix = "management.metrics.export.graphite")
-public class GraphiteProperties {
-
-    /**
-     * Enable publishing to Graphite.
-     */
-    private Boolean enabled;
-
-    /**
-     * Step size (i.e. reporting frequency) to use.
-     */
-    private Duration step;
+public class GraphiteProperties extends StepRegistryProperties {
 
     /**
      * Base time unit used to report rates.
@@ -70,21 +60,10 @@ public class GraphiteProperties {
      */
     private GraphiteProtocol protocol;
 
-    public Boolean getEnabled() {
-        return this.enabled;
-    }
-
-    public void setEnabled(Boolean enabled) {
-        this.enabled = enabled;
-    }
-
-    public Duration getStep() {
-        return this.step;
-    }
-
-    public void setStep(Duration step) {
-        this.step = step;
-    }
+    /**
+     * Maximum size in bytes of a datagram when shipping over UDP.
+     */
+    private Integer udpPacketSize;
 
     public TimeUnit getRateUnits() {
         return this.rateUnits;
@@ -126,6 +105,14 @@ public class GraphiteProperties {
         this.protocol = protocol;
     }
 
+    public Integer getUdpPacketSize() {
+        return this.udpPacketSize;
+    }
+
+    public void setUdpPacketSize(Integer udpPacketSize) {
+        this.udpPacketSize = udpPacketSize;
+    }
+
     public String[] getTagsAsPrefix() {
         return tagsAsPrefix;
     }
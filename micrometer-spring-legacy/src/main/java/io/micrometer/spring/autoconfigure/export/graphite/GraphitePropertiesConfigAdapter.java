@@ -17,9 +17,8 @@ package io.micrometer.spring.autoconfigure.export.graphite;
 
 import io.micrometer.graphite.GraphiteConfig;
 import io.micrometer.graphite.GraphiteProtocol;
-import io.micrometer.spring.autoconfigure.export.PropertiesConfigAdapter;
+import io.micrometer.spring.autoconfigure.export.StepRegistryPropertiesConfigAdapter;
 
-import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,7 +27,7 @@ import java.util.concurrent.TimeUnit;
  * @author Jon Schneider
  * @author Phillip Webb
  */
-class GraphitePropertiesConfigAdapter extends PropertiesConfigAdapter<GraphiteProperties>
+class GraphitePropertiesConfigAdapter extends StepRegistryPropertiesConfigAdapter<GraphiteProperties>
     implements GraphiteConfig {
 
     GraphitePropertiesConfigAdapter(GraphiteProperties properties) {
@@ -36,18 +35,8 @@ class GraphitePropertiesConfigAdapter extends PropertiesConfigAdapter<GraphitePr
     }
 
     @Override
-    public String get(String k) {
-        return null;
-    }
-
-    @Override
-    public boolean enabled() {
-        return get(GraphiteProperties::getEnabled, GraphiteConfig.super::enabled);
-    }
-
-    @Override
-    public Duration step() {
-        return get(GraphiteProperties::getStep, GraphiteConfig.super::step);
+    public int batchSize() {
+        return get(GraphiteProperties::getBatchSize, GraphiteConfig.super::batchSize);
     }
 
     @Override
@@ -76,6 +65,11 @@ class GraphitePropertiesConfigAdapter extends PropertiesConfigAdapter<GraphitePr
         return get(GraphiteProperties::getProtocol, GraphiteConfig.super::protocol);
     }
 
+    @Override
+    public int udpPacketSize() {
+        return get(GraphiteProperties::getUdpPacketSize, GraphiteConfig.super::udpPacketSize);
+    }
+
     @Override
     public String[] tagsAsPrefix() {
         return get(GraphiteProperties::getTagsAsPrefix, GraphiteConfig.super::tagsAsPrefix);
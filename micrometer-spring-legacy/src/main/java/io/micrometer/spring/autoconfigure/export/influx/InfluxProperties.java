@@ -16,6 +16,7 @@
 package io.micrometer.spring.autoconfigure.export.influx;
 
 import io.micrometer.influx.InfluxConsistency;
+import io.micrometer.influx.InfluxProtocol;
 import io.micrometer.spring.autoconfigure.export.StepRegistryProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -64,6 +65,26 @@ public class InfluxProperties extends StepRegistryProperties {
      */
     private Boolean compressed;
 
+    /**
+     * Transport used to write to Influx, either HTTP or UDP.
+     */
+    private InfluxProtocol protocol;
+
+    /**
+     * Host of the UDP listener to write to when the protocol is UDP.
+     */
+    private String udpHost;
+
+    /**
+     * Port of the UDP listener to write to when the protocol is UDP.
+     */
+    private Integer udpPort;
+
+    /**
+     * Maximum size in bytes of a datagram when the protocol is UDP.
+     */
+    private Integer udpPacketSize;
+
     public String getDb() {
         return this.db;
     }
@@ -120,4 +141,36 @@ public class InfluxProperties extends StepRegistryProperties {
         this.compressed = compressed;
     }
 
+    public InfluxProtocol getProtocol() {
+        return this.protocol;
+    }
+
+    public void setProtocol(InfluxProtocol protocol) {
+        this.protocol = protocol;
+    }
+
+    public String getUdpHost() {
+        return this.udpHost;
+    }
+
+    public void setUdpHost(String udpHost) {
+        this.udpHost = udpHost;
+    }
+
+    public Integer getUdpPort() {
+        return this.udpPort;
+    }
+
+    public void setUdpPort(Integer udpPort) {
+        this.udpPort = udpPort;
+    }
+
+    public Integer getUdpPacketSize() {
+        return this.udpPacketSize;
+    }
+
+    public void setUdpPacketSize(Integer udpPacketSize) {
+        this.udpPacketSize = udpPacketSize;
+    }
+
 }
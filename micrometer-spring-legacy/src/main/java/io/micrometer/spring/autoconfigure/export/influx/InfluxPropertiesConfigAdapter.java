@@ -17,6 +17,7 @@ package io.micrometer.spring.autoconfigure.export.influx;
 
 import io.micrometer.influx.InfluxConfig;
 import io.micrometer.influx.InfluxConsistency;
+import io.micrometer.influx.InfluxProtocol;
 import io.micrometer.spring.autoconfigure.export.StepRegistryPropertiesConfigAdapter;
 
 /**
@@ -67,4 +68,24 @@ class InfluxPropertiesConfigAdapter extends StepRegistryPropertiesConfigAdapter<
         return get(InfluxProperties::getCompressed, InfluxConfig.super::compressed);
     }
 
+    @Override
+    public InfluxProtocol protocol() {
+        return get(InfluxProperties::getProtocol, InfluxConfig.super::protocol);
+    }
+
+    @Override
+    public String udpHost() {
+        return get(InfluxProperties::getUdpHost, InfluxConfig.super::udpHost);
+    }
+
+    @Override
+    public int udpPort() {
+        return get(InfluxProperties::getUdpPort, InfluxConfig.super::udpPort);
+    }
+
+    @Override
+    public int udpPacketSize() {
+        return get(InfluxProperties::getUdpPacketSize, InfluxConfig.super::udpPacketSize);
+    }
+
 }
@@ -34,6 +34,11 @@ public class NewRelicProperties extends StepRegistryProperties {
 
     private String uri;
 
+    /**
+     * Enable GZIP compression of metrics batches published to New Relic.
+     */
+    private Boolean compressed;
+
     public String getApiKey() {
         return apiKey;
     }
@@ -57,4 +62,12 @@ public class NewRelicProperties extends StepRegistryProperties {
     public void setUri(String uri) {
         this.uri = uri;
     }
+
+    public Boolean getCompressed() {
+        return compressed;
+    }
+
+    public void setCompressed(Boolean compressed) {
+        this.compressed = compressed;
+    }
 }
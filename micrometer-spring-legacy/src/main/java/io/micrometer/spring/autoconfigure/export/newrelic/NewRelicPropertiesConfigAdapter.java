@@ -44,4 +44,9 @@ public class NewRelicPropertiesConfigAdapter extends StepRegistryPropertiesConfi
     public String uri() {
         return get(NewRelicProperties::getUri, NewRelicConfig.super::uri);
     }
+
+    @Override
+    public boolean compressed() {
+        return get(NewRelicProperties::getCompressed, NewRelicConfig.super::compressed);
+    }
 }
@@ -36,6 +36,11 @@ public class SignalFxProperties extends StepRegistryProperties {
      */
     private String uri;
 
+    /**
+     * Maximum size in bytes of the data points sent in a single request.
+     */
+    private Integer maxRequestSize;
+
     public String getAccessToken() {
         return accessToken;
     }
@@ -51,4 +56,12 @@ public class SignalFxProperties extends StepRegistryProperties {
     public void setUri(String uri) {
         this.uri = uri;
     }
-}
\ No newline at end of file
+
+    public Integer getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public void setMaxRequestSize(Integer maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+    }
+}
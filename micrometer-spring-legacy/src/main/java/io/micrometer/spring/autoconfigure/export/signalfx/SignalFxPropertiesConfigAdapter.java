@@ -39,4 +39,9 @@ public class SignalFxPropertiesConfigAdapter extends StepRegistryPropertiesConfi
     public String uri() {
         return get(SignalFxProperties::getUri, SignalFxConfig.super::uri);
     }
+
+    @Override
+    public int maxRequestSize() {
+        return get(SignalFxProperties::getMaxRequestSize, SignalFxConfig.super::maxRequestSize);
+    }
 }
@@ -16,9 +16,14 @@
 package io.micrometer.spring.autoconfigure.export.statsd;
 
 import io.micrometer.statsd.StatsdFlavor;
+import io.micrometer.statsd.StatsdProtocol;
+import io.micrometer.statsd.StatsdPublishingMode;
+import io.micrometer.statsd.StatsdQueueOverflowPolicy;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * {@link ConfigurationProperties} for configuring StatsD metrics export.
@@ -39,6 +44,32 @@ public class StatsdProperties {
      */
     private StatsdFlavor flavor = StatsdFlavor.Datadog;
 
+    /**
+     * Whether lines are sent as events are recorded, or aggregated locally and sent once per polling interval.
+     */
+    private StatsdPublishingMode publishingMode = StatsdPublishingMode.Immediate;
+
+    /**
+     * When aggregating, the maximum number of values each timer or distribution summary samples per polling interval.
+     */
+    private Integer aggregationSampleSize = 32;
+
+    /**
+     * Transport used to reach the StatsD server.
+     */
+    private StatsdProtocol protocol = StatsdProtocol.Udp;
+
+    /**
+     * Path of the StatsD server's Unix domain socket, when using the UnixStream protocol.
+     */
+    private String socketPath = "/var/run/datadog/dsd.socket";
+
+    /**
+     * Fraction of lines to send for counters, timers and distribution summaries, keyed by meter name prefix. The
+     * longest matching prefix wins, and 'all' matches every meter.
+     */
+    private Map<String, Double> sampleRates = new HashMap<>();
+
     /**
      * Host of the StatsD server to receive exported metrics.
      */
@@ -54,16 +85,36 @@ public class StatsdProperties {
      */
     private Integer maxPacketLength = 1400;
 
+    /**
+     * How long a line is held back waiting for a packet to fill up before the partially filled packet is sent anyway.
+     */
+    private Duration linger = Duration.ofMillis(50);
+
     /**
      * How often gauges will be polled. When a gauge is polled, its value is
      * recalculated and if the value has changed, it is sent to the StatsD server.
      */
     private Duration pollingFrequency = Duration.ofSeconds(10);
 
+    /**
+     * Number of slices gauges are divided into, so that their lines are spread across the polling interval.
+     */
+    private Integer pollingSlices = 1;
+
     /**
      * Maximum size of the queue of items waiting to be sent to the StatsD server.
      */
-    private Integer queueSize = Integer.MAX_VALUE;
+    private Integer queueSize = 10_000;
+
+    /**
+     * What happens to items recorded while the queue is full.
+     */
+    private StatsdQueueOverflowPolicy queueOverflowPolicy = StatsdQueueOverflowPolicy.DropNewest;
+
+    /**
+     * With the block overflow policy, how long a recording thread waits for room in the queue before the item is dropped.
+     */
+    private Duration queueOfferTimeout = Duration.ofMillis(100);
 
     public Boolean getEnabled() {
         return this.enabled;
@@ -81,6 +132,46 @@ public class StatsdProperties {
         this.flavor = flavor;
     }
 
+    public StatsdPublishingMode getPublishingMode() {
+        return this.publishingMode;
+    }
+
+    public void setPublishingMode(StatsdPublishingMode publishingMode) {
+        this.publishingMode = publishingMode;
+    }
+
+    public Integer getAggregationSampleSize() {
+        return this.aggregationSampleSize;
+    }
+
+    public void setAggregationSampleSize(Integer aggregationSampleSize) {
+        this.aggregationSampleSize = aggregationSampleSize;
+    }
+
+    public StatsdProtocol getProtocol() {
+        return this.protocol;
+    }
+
+    public void setProtocol(StatsdProtocol protocol) {
+        this.protocol = protocol;
+    }
+
+    public String getSocketPath() {
+        return this.socketPath;
+    }
+
+    public void setSocketPath(String socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    public Map<String, Double> getSampleRates() {
+        return this.sampleRates;
+    }
+
+    public void setSampleRates(Map<String, Double> sampleRates) {
+        this.sampleRates = sampleRates;
+    }
+
     public String getHost() {
         return this.host;
     }
@@ -105,6 +196,14 @@ public class StatsdProperties {
         this.maxPacketLength = maxPacketLength;
     }
 
+    public Duration getLinger() {
+        return this.linger;
+    }
+
+    public void setLinger(Duration linger) {
+        this.linger = linger;
+    }
+
     public Duration getPollingFrequency() {
         return this.pollingFrequency;
     }
@@ -113,6 +212,14 @@ public class StatsdProperties {
         this.pollingFrequency = pollingFrequency;
     }
 
+    public Integer getPollingSlices() {
+        return this.pollingSlices;
+    }
+
+    public void setPollingSlices(Integer pollingSlices) {
+        this.pollingSlices = pollingSlices;
+    }
+
     public Integer getQueueSize() {
         return this.queueSize;
     }
@@ -121,4 +228,20 @@ public class StatsdProperties {
         this.queueSize = queueSize;
     }
 
+    public StatsdQueueOverflowPolicy getQueueOverflowPolicy() {
+        return this.queueOverflowPolicy;
+    }
+
+    public void setQueueOverflowPolicy(StatsdQueueOverflowPolicy queueOverflowPolicy) {
+        this.queueOverflowPolicy = queueOverflowPolicy;
+    }
+
+    public Duration getQueueOfferTimeout() {
+        return this.queueOfferTimeout;
+    }
+
+    public void setQueueOfferTimeout(Duration queueOfferTimeout) {
+        this.queueOfferTimeout = queueOfferTimeout;
+    }
+
 }
@@ -18,8 +18,12 @@ package io.micrometer.spring.autoconfigure.export.statsd;
 import io.micrometer.spring.autoconfigure.export.PropertiesConfigAdapter;
 import io.micrometer.statsd.StatsdConfig;
 import io.micrometer.statsd.StatsdFlavor;
+import io.micrometer.statsd.StatsdProtocol;
+import io.micrometer.statsd.StatsdPublishingMode;
+import io.micrometer.statsd.StatsdQueueOverflowPolicy;
 
 import java.time.Duration;
+import java.util.Map;
 
 /**
  * Adapter to convert {@link StatsdProperties} to a {@link StatsdConfig}.
@@ -42,11 +46,36 @@ public class StatsdPropertiesConfigAdapter extends PropertiesConfigAdapter<Stats
         return get(StatsdProperties::getFlavor, StatsdConfig.super::flavor);
     }
 
+    @Override
+    public StatsdPublishingMode publishingMode() {
+        return get(StatsdProperties::getPublishingMode, StatsdConfig.super::publishingMode);
+    }
+
+    @Override
+    public int aggregationSampleSize() {
+        return get(StatsdProperties::getAggregationSampleSize, StatsdConfig.super::aggregationSampleSize);
+    }
+
     @Override
     public boolean enabled() {
         return get(StatsdProperties::getEnabled, StatsdConfig.super::enabled);
     }
 
+    @Override
+    public StatsdProtocol protocol() {
+        return get(StatsdProperties::getProtocol, StatsdConfig.super::protocol);
+    }
+
+    @Override
+    public String socketPath() {
+        return get(StatsdProperties::getSocketPath, StatsdConfig.super::socketPath);
+    }
+
+    @Override
+    public Map<String, Double> sampleRates() {
+        return get(StatsdProperties::getSampleRates, StatsdConfig.super::sampleRates);
+    }
+
     @Override
     public String host() {
         return get(StatsdProperties::getHost, StatsdConfig.super::host);
@@ -63,15 +92,35 @@ public class StatsdPropertiesConfigAdapter extends PropertiesConfigAdapter<Stats
             StatsdConfig.super::maxPacketLength);
     }
 
+    @Override
+    public Duration linger() {
+        return get(StatsdProperties::getLinger, StatsdConfig.super::linger);
+    }
+
     @Override
     public Duration pollingFrequency() {
         return get(StatsdProperties::getPollingFrequency,
             StatsdConfig.super::pollingFrequency);
     }
 
+    @Override
+    public int pollingSlices() {
+        return get(StatsdProperties::getPollingSlices, StatsdConfig.super::pollingSlices);
+    }
+
     @Override
     public int queueSize() {
         return get(StatsdProperties::getQueueSize, StatsdConfig.super::queueSize);
     }
 
+    @Override
+    public StatsdQueueOverflowPolicy queueOverflowPolicy() {
+        return get(StatsdProperties::getQueueOverflowPolicy, StatsdConfig.super::queueOverflowPolicy);
+    }
+
+    @Override
+    public Duration queueOfferTimeout() {
+        return get(StatsdProperties::getQueueOfferTimeout, StatsdConfig.super::queueOfferTimeout);
+    }
+
 }